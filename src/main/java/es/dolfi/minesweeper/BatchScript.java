@@ -0,0 +1,304 @@
+package es.dolfi.minesweeper;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import javax.swing.SwingUtilities;
+
+import es.dolfi.minesweeper.enums.Difficulty;
+import es.dolfi.minesweeper.metrics.Benchmark;
+
+/**
+ * A script of debug console commands, run unattended with every result written as CSV
+ * Benchmarks run on the script's thread, any other command goes through the debug console on the EDT
+ * gen, bench and flood time a standalone board rather than the game on screen, so the logic thread, deltas and
+ * board layer aren't in their timings
+ * Console commands are timed on the EDT until the events they posted have run, moves and background work they
+ * start aren't either
+ *
+ * <pre>
+ * # Reveal the largest opening on a new board a hundred times
+ * repeat 100
+ *   gen 2000 2000 400000
+ *   bench opening 1
+ *   assert max &lt; 250
+ * end
+ * </pre>
+ */
+public class BatchScript {
+    public static final String CSV_HEADER = "line,iteration,command,runs,mean_ms,p50_ms,p99_ms,max_ms,status";
+    private static final String[] statistics = { "mean", "p50", "p99", "max" };
+
+    private final List<Step> steps;
+
+    // Only touched on the thread running the script
+    private Benchmark benchmark;
+    private Benchmark.Result last;
+    private int failures;
+
+    /**
+     * Parse a script
+     *
+     * @param lines The lines of the script
+     * @throws IllegalArgumentException If a loop isn't closed, or closed without being opened
+     */
+    public BatchScript(List<String> lines) {
+        List<Step> steps = new ArrayList<>();
+        int end = parse(lines, 0, steps);
+        if (end < lines.size()) {
+            throw new IllegalArgumentException("Line " + (end + 1) + ": end without repeat");
+        }
+        this.steps = steps;
+    }
+
+    /**
+     * Load a script from a file
+     *
+     * @param path The path of the script
+     * @return The script
+     * @throws IOException If the file can't be read
+     * @throws IllegalArgumentException If the script is invalid
+     */
+    public static BatchScript load(Path path) throws IOException {
+        return new BatchScript(Files.readAllLines(path, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parse lines into steps, until the end of a loop or the script
+     *
+     * @param lines The lines of the script
+     * @param from  The index of the first line to parse
+     * @param steps The steps to add to
+     * @return The index of the end closing the loop, or the number of lines if there was none
+     */
+    private static int parse(List<String> lines, int from, List<Step> steps) {
+        int i = from;
+        while (i < lines.size()) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                i++;
+                continue;
+            }
+            String[] args = line.toLowerCase().split("\\s+");
+            if (args[0].equals("end")) {
+                return i;
+            }
+            if (args[0].equals("repeat")) {
+                int count;
+                try {
+                    count = Integer.parseInt(args[1]);
+                } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                    throw new IllegalArgumentException("Line " + (i + 1) + ": usage is repeat <count>");
+                }
+                List<Step> body = new ArrayList<>();
+                int end = parse(lines, i + 1, body);
+                if (end >= lines.size()) {
+                    throw new IllegalArgumentException("Line " + (i + 1) + ": repeat without end");
+                }
+                steps.add(new Step(i + 1, line, count, body));
+                i = end + 1;
+            } else {
+                steps.add(new Step(i + 1, line, 0, null));
+                i++;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Run the script, failed assertions are recorded and the script carries on
+     *
+     * @param console The console to run other commands through, or null to skip them
+     * @param csv     Where to write the results, starting with the header
+     * @return The number of failed assertions and commands
+     */
+    public int run(DebugConsole console, PrintWriter csv) {
+        this.benchmark = null;
+        this.last = null;
+        this.failures = 0;
+        csv.println(CSV_HEADER);
+        this.run(this.steps, "", console, csv);
+        csv.flush();
+        return this.failures;
+    }
+
+    /**
+     * Run a list of steps
+     *
+     * @param steps     The steps
+     * @param iteration The iteration of every loop the steps are in, outermost first
+     * @param console   The console to run other commands through, or null to skip them
+     * @param csv       Where to write the results
+     */
+    private void run(List<Step> steps, String iteration, DebugConsole console, PrintWriter csv) {
+        for (Step step : steps) {
+            if (step.body != null) {
+                for (int i = 0; i < step.count; i++) {
+                    this.run(step.body, iteration.isEmpty() ? String.valueOf(i) : iteration + "/" + i, console,
+                            csv);
+                }
+                continue;
+            }
+
+            String status;
+            try {
+                status = this.execute(step.text, console);
+            } catch (Exception e) {
+                this.last = null;
+                status = "error: " + e.getMessage();
+                this.failures++;
+            }
+            Benchmark.Result result = this.last;
+            if (result == null) {
+                csv.format(Locale.ROOT, "%d,%s,%s,,,,,,%s%n", step.line, iteration, quote(step.text), quote(status));
+            } else {
+                csv.format(Locale.ROOT, "%d,%s,%s,%d,%.3f,%.3f,%.3f,%.3f,%s%n", step.line, iteration,
+                        quote(step.text), result.getRuns(), result.getMean() / 1e6, result.getPercentile(50) / 1e6,
+                        result.getPercentile(99) / 1e6, result.getPercentile(100) / 1e6, quote(status));
+            }
+            csv.flush();
+        }
+    }
+
+    /**
+     * Run one command
+     *
+     * @param command The command
+     * @param console The console to run other commands through, or null to skip them
+     * @return The status to record
+     * @throws Exception If the command fails
+     */
+    private String execute(String command, DebugConsole console) throws Exception {
+        String[] args = command.toLowerCase().split("\\s+");
+        switch (args[0]) {
+            case "gen":
+                this.benchmark = new Benchmark(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                        Integer.parseInt(args[3]), args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime());
+                this.last = null;
+                return "ok";
+            case "bench":
+                this.last = this.getBenchmark(console).run(args[1], Integer.parseInt(args[2]));
+                return "ok";
+            case "flood":
+                this.last = this.getBenchmark(console).flood();
+                return "ok";
+            case "sleep":
+                Thread.sleep(Long.parseLong(args[1]));
+                this.last = null;
+                return "ok";
+            case "assert":
+                return this.check(args);
+            default:
+                if (console == null) {
+                    this.last = null;
+                    return "skipped";
+                }
+                long start = System.nanoTime();
+                try {
+                    SwingUtilities.invokeAndWait(() -> console.execute(command));
+                    // Queued behind whatever the command posted, so that's timed as well
+                    SwingUtilities.invokeAndWait(() -> {
+                    });
+                } catch (InvocationTargetException e) {
+                    throw new IllegalStateException(e.getCause().toString(), e);
+                }
+                this.last = new Benchmark.Result(command, new long[] { System.nanoTime() - start });
+                return "ok";
+        }
+    }
+
+    /**
+     * Check a statistic of the last timed command, like assert p99 &lt; 20
+     *
+     * @param args The assertion, split into words
+     * @return Whether it passed, with the value
+     * @throws IllegalArgumentException If the assertion is invalid, or there is nothing timed to check
+     */
+    private String check(String[] args) {
+        if (args.length != 4 || !args[2].equals("<")) {
+            throw new IllegalArgumentException("usage is assert mean|p50|p99|max < <ms>");
+        }
+        if (this.last == null) {
+            throw new IllegalArgumentException("nothing timed to assert on");
+        }
+        double value;
+        switch (args[1]) {
+            case "mean":
+                value = this.last.getMean() / 1e6;
+                break;
+            case "p50":
+                value = this.last.getPercentile(50) / 1e6;
+                break;
+            case "p99":
+                value = this.last.getPercentile(99) / 1e6;
+                break;
+            case "max":
+                value = this.last.getPercentile(100) / 1e6;
+                break;
+            default:
+                throw new IllegalArgumentException("can only assert on " + String.join(", ", statistics));
+        }
+        double limit = Double.parseDouble(args[3]);
+        if (value < limit) {
+            return String.format("pass %s %.3fms", args[1], value);
+        }
+        this.failures++;
+        return String.format("fail %s %.3fms", args[1], value);
+    }
+
+    /**
+     * Get the board benchmarks run on, the one generated last or else the current difficulty's
+     *
+     * @param console The console whose game the difficulty comes from, or null for the easiest
+     * @return The benchmark
+     */
+    private Benchmark getBenchmark(DebugConsole console) {
+        if (this.benchmark == null) {
+            Difficulty difficulty = console == null ? Difficulty.EASY : console.getGame().getDifficulty();
+            this.benchmark = new Benchmark(difficulty.getWidth(), difficulty.getHeight(), difficulty.getMines(),
+                    System.nanoTime());
+        }
+        return this.benchmark;
+    }
+
+    /**
+     * Quote a CSV field
+     *
+     * @param field The field
+     * @return The field in quotes, with any quotes inside doubled
+     */
+    private static String quote(String field) {
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * A command, or a loop of commands
+     */
+    private static class Step {
+        private final int line;
+        private final String text;
+        private final int count;
+        private final List<Step> body;
+
+        /**
+         * Create a new step
+         *
+         * @param line  The line number, counting from 1
+         * @param text  The text of the line
+         * @param count The number of times to repeat the body
+         * @param body  The steps to repeat, or null if this is a command
+         */
+        Step(int line, String text, int count, List<Step> body) {
+            this.line = line;
+            this.text = text;
+            this.count = count;
+            this.body = body;
+        }
+    }
+}
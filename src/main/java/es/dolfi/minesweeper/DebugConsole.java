@@ -2,17 +2,43 @@ package es.dolfi.minesweeper;
 
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.Callable;
 import javax.swing.*;
+import javax.swing.text.BadLocationException;
 
-import es.dolfi.minesweeper.components.Cell;
 import es.dolfi.minesweeper.enums.*;
+import es.dolfi.minesweeper.metrics.AllocationCheck;
+import es.dolfi.minesweeper.metrics.Benchmark;
+import es.dolfi.minesweeper.metrics.Metrics;
 import es.dolfi.minesweeper.screens.GameBoard;
+import es.dolfi.minesweeper.server.Protocol;
+import es.dolfi.minesweeper.server.SpectatorFeed;
+import es.dolfi.minesweeper.stats.GameRecord;
+import es.dolfi.minesweeper.stats.StatsStore;
+import es.dolfi.minesweeper.util.RenderCache;
+import es.dolfi.minesweeper.util.StartupTimer;
 
 /**
  * Debug console for the game
  */
 public class DebugConsole extends JFrame {
+    private static final Font titleFont = RenderCache.font("Arial", Font.BOLD, 48);
+    // Older output is dropped past this many lines
+    private static final int MAX_LINES = 1000;
     private Game game;
+    // The board benchmarks run on, set by gen, otherwise the current difficulty's
+    private Benchmark benchmark;
     private JTextField console = new JTextField();
     private JTextArea output = new JTextArea();
     private JScrollPane scroll = new JScrollPane(this.output);
@@ -77,19 +103,31 @@ public class DebugConsole extends JFrame {
     public void paint(Graphics g) {
         super.paint(g);
         g.setColor(Color.WHITE);
-        g.setFont(new Font("Arial", Font.BOLD, 48));
+        g.setFont(titleFont);
         g.drawString("Debug Console", 135, 100);
         // Draw a > before the console
         g.drawString(">", 20, 180);
     }
 
+    /**
+     * Get the game the console controls
+     *
+     * @return The game
+     */
+    public Game getGame() {
+        return this.game;
+    }
+
     /**
      * Execute a command
      *
      * @param command The command to execute
      */
     public void execute(String command) {
+        // File paths keep their case
+        String[] original = command.trim().split("\\s+");
         command = command.toLowerCase();
+        this.print("> " + command);
 
         if (command.equals("exit")) {
             System.exit(0);
@@ -97,76 +135,323 @@ public class DebugConsole extends JFrame {
             this.setVisible(false);
         } else if (command.equals("reveal")) {
             if (this.game.getGameState() != GameState.PLAYING) {
-                this.output.setText("You can only reveal mines while playing");
+                this.print("You can only reveal mines while playing");
                 return;
             }
 
             GameBoard board = (GameBoard) this.game.getScreen();
-            for (Cell cell : board.getMines()) {
-                cell.setRevealed(true, false);
+            board.revealMines();
+
+            this.print("Revealed all mines");
+        } else if (command.equals("undo") || command.equals("redo")) {
+            if (this.game.getGameState() != GameState.PLAYING) {
+                this.print("You can only " + command + " while playing");
+                return;
             }
 
-            this.output.setText("Revealed all mines");
+            GameBoard board = (GameBoard) this.game.getScreen();
+            if (command.equals("undo")) {
+                board.undo();
+                this.print("Took back the last move");
+            } else {
+                board.redo();
+                this.print("Made the last undone move again");
+            }
         } else if (command.equals("win")) {
             this.game.switchState(GameState.PLAYING);
             GameBoard board = (GameBoard) this.game.getScreen();
-            board.generateMines(null);
             board.win();
 
-            this.output.setText("Played win animation");
+            this.print("Played win animation");
         } else if (command.equals("lose")) {
             this.game.switchState(GameState.PLAYING);
             GameBoard board = (GameBoard) this.game.getScreen();
-            board.generateMines(null);
             board.lose();
 
-            this.output.setText("Played lose animation");
+            this.print("Played lose animation");
         } else if (command.equals("state get")) {
-            this.output.setText("Current game state: " + this.game.getGameState());
+            this.print("Current game state: " + this.game.getGameState());
         } else if (command.startsWith("state set")) {
             try {
                 String[] args = command.split(" ");
                 GameState state = GameState.valueOf(args[2].toUpperCase());
                 this.game.switchState(state);
 
-                this.output.setText("Set game state to: " + state);
+                this.print("Set game state to: " + state);
             } catch (Exception e) {
-                this.output.setText("Invalid state");
+                this.print("Invalid state");
             }
         } else if (command.equals("difficulty get")) {
-            this.output.setText("Current game difficulty: " + this.game.getDifficulty());
+            this.print("Current game difficulty: " + this.game.getDifficulty());
         } else if (command.startsWith("difficulty set")) {
             try {
                 String[] args = command.split(" ");
                 Difficulty difficulty = Difficulty.valueOf(args[2].toUpperCase());
                 this.game.setDifficulty(difficulty);
 
-                this.output.setText("Set game difficulty to: " + difficulty);
+                this.print("Set game difficulty to: " + difficulty);
+            } catch (Exception e) {
+                this.print("Invalid difficulty");
+            }
+        } else if (command.equals("server get")) {
+            InetSocketAddress server = this.game.getServer();
+            this.print(server == null ? "Playing locally" : "Playing on " + Protocol.formatAddress(server));
+        } else if (command.startsWith("server set")) {
+            try {
+                String address = command.split(" ")[2];
+                this.game.setServer(address.equals("off") ? null : Protocol.parseAddress(address));
+
+                this.print("New games will be played " + (this.game.getServer() == null ? "locally"
+                        : "on " + Protocol.formatAddress(this.game.getServer())));
+            } catch (Exception e) {
+                this.print("Invalid server address");
+            }
+        } else if (command.startsWith("spectate start")) {
+            try {
+                String[] args = command.split(" ");
+                int port = args.length > 2 ? Integer.parseInt(args[2]) : SpectatorFeed.DEFAULT_PORT;
+                SpectatorFeed feed = new SpectatorFeed(new InetSocketAddress(port));
+                feed.start();
+                this.game.setSpectatorFeed(feed);
+
+                this.print("Broadcasting to spectators on port " + feed.getPort());
+            } catch (Exception e) {
+                this.print("Couldn't start broadcasting: " + e.getMessage());
+            }
+        } else if (command.equals("spectate stop")) {
+            this.game.setSpectatorFeed(null);
+            this.print("Stopped broadcasting");
+        } else if (command.equals("spectate status")) {
+            SpectatorFeed feed = this.game.getSpectatorFeed();
+            this.print(feed == null ? "Not broadcasting"
+                    : "Broadcasting on port " + feed.getPort() + " to " + feed.getSpectators() + " spectators");
+        } else if (command.startsWith("leaderboard")) {
+            try {
+                String[] args = command.split(" ");
+                Difficulty difficulty = args.length > 1 ? Difficulty.valueOf(args[1].toUpperCase())
+                        : this.game.getDifficulty();
+                StatsStore stats = this.game.getStats();
+                StringBuilder builder = new StringBuilder();
+                builder.append(String.format("%s: won %d of %d, %.2fs on average%n", difficulty,
+                        stats.getWon(difficulty), stats.getPlayed(difficulty),
+                        stats.getAverageTime(difficulty) / 1000.0));
+                List<GameRecord> leaderboard = stats.getLeaderboard(difficulty);
+                for (int i = 0; i < leaderboard.size(); i++) {
+                    builder.append(i + 1).append(". ").append(leaderboard.get(i)).append('\n');
+                }
+                this.print(builder.toString());
+            } catch (Exception e) {
+                this.print("Invalid difficulty");
+            }
+        } else if (command.equals("overlay on") || command.equals("overlay off")) {
+            this.game.setPerformanceOverlay(command.endsWith("on"));
+            this.print((this.game.isPerformanceOverlay() ? "Showing" : "Hid") + " the performance overlay");
+        } else if (command.equals("metrics")) {
+            this.print(Metrics.dump());
+        } else if (command.equals("metrics on") || command.equals("metrics off")) {
+            Metrics.setEnabled(command.endsWith("on"));
+            this.print((Metrics.isEnabled() ? "Enabled" : "Disabled") + " metrics");
+        } else if (command.equals("metrics reset")) {
+            Metrics.reset();
+            this.print("Reset metrics");
+        } else if (command.equals("alloc")) {
+            this.print("Measuring allocation, this takes a few seconds...");
+            this.runInBackground("AllocationCheck", "Couldn't measure allocation", () -> {
+                StringBuilder builder = new StringBuilder();
+                for (AllocationCheck.Result result : new AllocationCheck().run()) {
+                    builder.append(result).append('\n');
+                }
+                return builder.toString();
+            });
+        } else if (command.startsWith("gen ")) {
+            try {
+                String[] args = command.split(" ");
+                long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+                Benchmark benchmark = new Benchmark(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                        Integer.parseInt(args[3]), seed);
+                this.benchmark = benchmark;
+                this.runInBackground("ConsoleBenchmark", "Couldn't generate the board",
+                        () -> benchmark.describe() + ", seed " + seed + "\nBenchmarks will run on this board");
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                this.print("Usage: gen <width> <height> <mines> [seed]");
+            }
+        } else if (command.startsWith("bench ")) {
+            try {
+                String[] args = command.split(" ");
+                String operation = args[1];
+                int runs = Integer.parseInt(args[2]);
+                Benchmark benchmark = this.getBenchmark();
+                this.print("Timing " + runs + " runs of " + operation + " on " + benchmark + "...");
+                this.runInBackground("ConsoleBenchmark", "Couldn't run the benchmark",
+                        () -> benchmark.run(operation, runs).toString());
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                this.print("Usage: bench " + String.join("|", Benchmark.OPERATIONS) + " <runs>");
+            }
+        } else if (command.equals("flood")) {
+            Benchmark benchmark = this.getBenchmark();
+            this.runInBackground("ConsoleBenchmark", "Couldn't flood the board",
+                    () -> benchmark.flood().toString());
+        } else if (command.startsWith("script ")) {
+            try {
+                BatchScript script = BatchScript.load(Paths.get(original[1]));
+                Path csv = original.length > 2 ? Paths.get(original[2]) : null;
+                this.print("Running " + original[1] + "...");
+                this.runInBackground("BatchScript", "Couldn't run the script", () -> {
+                    if (csv == null) {
+                        StringWriter results = new StringWriter();
+                        int failures = script.run(this, new PrintWriter(results));
+                        return results + "Finished with " + failures + " failures";
+                    }
+                    try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(csv, StandardCharsets.UTF_8))) {
+                        int failures = script.run(this, writer);
+                        return "Finished with " + failures + " failures, results written to " + csv;
+                    }
+                });
+            } catch (IndexOutOfBoundsException e) {
+                this.print("Usage: script <file> [csv file]");
             } catch (Exception e) {
-                this.output.setText("Invalid difficulty");
+                this.print("Couldn't load the script: " + e.getMessage());
             }
+        } else if (command.equals("stats")) {
+            this.print(Metrics.dump());
+        } else if (command.equals("gc")) {
+            this.print(describeMemory());
+        } else if (command.equals("clear")) {
+            this.output.setText("");
         } else if (command.equals("mute")) {
             this.game.getSoundManager().setMuted(true);
-            this.output.setText("Muted the game");
+            this.print("Muted the game");
         } else if (command.equals("unmute")) {
             this.game.getSoundManager().setMuted(false);
-            this.output.setText("Unmuted the game");
+            this.print("Unmuted the game");
+        } else if (command.equals("render active")) {
+            this.game.setActiveRendering(true);
+            this.print("Enabled active rendering");
+        } else if (command.equals("render passive")) {
+            this.game.setActiveRendering(false);
+            this.print("Disabled active rendering");
+        } else if (command.equals("render stats")) {
+            this.print("Active rendering: " + (this.game.isActiveRendering() ? "on" : "off") + "\n"
+                    + this.game.getRenderStats());
+        } else if (command.equals("render reset")) {
+            this.game.getRenderStats().reset();
+            this.print("Reset render stats");
+        } else if (command.equals("startup")) {
+            this.print(StartupTimer.report());
         } else if (command.equals("help")) {
-            this.output.setText("Available commands:\n" +
+            this.print("Available commands:\n" +
                     "reveal - Reveal all mines without losing\n" +
+                    "undo - Take back the last move\n" +
+                    "redo - Make the last undone move again\n" +
                     "win - Play the win animation\n" +
                     "lose - Play the lose animation\n" +
                     "state get - Get the game state\n" +
                     "state set <state> - Set the game state\n" +
                     "difficulty get - Get the game difficulty\n" +
                     "difficulty set <difficulty> - Set the game difficulty\n" +
+                    "server get - Get the server new games are played on\n" +
+                    "server set <host:port>|off - Play new games on a server, or locally\n" +
+                    "spectate start [port] - Broadcast games to spectators\n" +
+                    "spectate stop|status - Stop broadcasting, or show who is watching\n" +
+                    "leaderboard [difficulty] - Show the fastest wins\n" +
+                    "overlay on|off - Show the performance overlay, also toggled with F3\n" +
+                    "metrics [on|off|reset] - Show, toggle or reset the metrics\n" +
+                    "alloc - Measure how much the hot paths allocate, against their budgets\n" +
+                    "gen <width> <height> <mines> [seed] - Generate a custom board for the benchmarks\n" +
+                    "bench generate|reveal|opening|paint <runs> - Time an operation on the benchmark board\n" +
+                    "flood - Time revealing the benchmark board with no mines, the worst flood\n" +
+                    "script <file> [csv file] - Run a script of commands, writing the results as CSV\n" +
+                    "stats - Show the metrics\n" +
+                    "gc - Show the heap and how often it has been collected\n" +
                     "mute - Mute the game\n" +
                     "unmute - Unmute the game\n" +
+                    "render active|passive - Toggle active rendering\n" +
+                    "render stats|reset - Show or reset render metrics\n" +
+                    "startup - Show how long each startup phase took\n" +
                     "help - Show this help message\n" +
+                    "clear - Clear the output\n" +
                     "close - Close the debug console\n" +
                     "exit - Exit the game\n");
         } else {
-            this.output.setText("Unknown command: " + command);
+            this.print("Unknown command: " + command);
+        }
+    }
+
+    /**
+     * Add text to the end of the output, dropping the oldest lines once there are too many
+     * Safe to call from any thread
+     *
+     * @param text The text to add
+     */
+    private void print(String text) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> this.print(text));
+            return;
+        }
+
+        this.output.append(text.endsWith("\n") ? text : text + "\n");
+        // The text always ends with a newline, which leaves an empty last line
+        int excess = this.output.getLineCount() - 1 - MAX_LINES;
+        if (excess > 0) {
+            try {
+                this.output.replaceRange(null, 0, this.output.getLineStartOffset(excess));
+            } catch (BadLocationException e) {
+                // The lines were just counted, so they exist
+            }
+        }
+        this.output.setCaretPosition(this.output.getDocument().getLength());
+    }
+
+    /**
+     * Run a slow command on its own thread, so the console stays responsive, then print what it returns
+     *
+     * @param name    The name of the thread
+     * @param failure What to print before the error, if it fails
+     * @param task    The command
+     */
+    private void runInBackground(String name, String failure, Callable<String> task) {
+        Thread thread = new Thread(() -> {
+            try {
+                this.print(task.call());
+            } catch (Exception e) {
+                this.print(failure + ": " + e.getMessage());
+            } catch (Error e) {
+                // A benchmark can run out of memory on a huge board, which would otherwise end the thread silently
+                System.out.println("[CONSOLE] " + failure + ": " + e);
+                this.print(failure + ": " + e);
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Get the board benchmarks run on, the one generated last or else the current difficulty's
+     *
+     * @return The benchmark
+     */
+    private Benchmark getBenchmark() {
+        if (this.benchmark != null) {
+            return this.benchmark;
+        }
+        Difficulty difficulty = this.game.getDifficulty();
+        return new Benchmark(difficulty.getWidth(), difficulty.getHeight(), difficulty.getMines(), System.nanoTime());
+    }
+
+    /**
+     * Describe the heap and every garbage collector
+     *
+     * @return The description
+     */
+    private static String describeMemory() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("Heap: %dMB used, %dMB committed, %s max%n", heap.getUsed() >> 20,
+                heap.getCommitted() >> 20, heap.getMax() < 0 ? "no" : (heap.getMax() >> 20) + "MB"));
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            builder.append(String.format("%s: %d collections, %dms%n", collector.getName(),
+                    collector.getCollectionCount(), collector.getCollectionTime()));
         }
+        return builder.toString();
     }
 }
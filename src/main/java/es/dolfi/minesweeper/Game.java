@@ -1,13 +1,30 @@
 package es.dolfi.minesweeper;
 
+import java.awt.BorderLayout;
+import java.awt.Image;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import javax.swing.*;
 
 import com.formdev.flatlaf.FlatLightLaf;
 
+import es.dolfi.minesweeper.components.ActiveCanvas;
 import es.dolfi.minesweeper.enums.*;
+import es.dolfi.minesweeper.metrics.Probe;
 import es.dolfi.minesweeper.screens.*;
+import es.dolfi.minesweeper.server.Protocol;
+import es.dolfi.minesweeper.server.SpectatorFeed;
+import es.dolfi.minesweeper.stats.StatsStore;
 import es.dolfi.minesweeper.util.*;
 
 /**
@@ -16,27 +33,127 @@ import es.dolfi.minesweeper.util.*;
  * @version 0.1
  */
 public class Game extends JFrame {
-    public static final ImageIcon icon = new ImageIcon("res/bomb.png");
+    public static final ImageIcon icon = loadIcon();
     private GameState state;
     private Screen screen;
     private Difficulty difficulty = Difficulty.EASY;
     private final SoundManager soundManager = new SoundManager();
+    private final Scheduler scheduler = new Scheduler();
+    private Scheduler.Task transition;
+    private final FrameStats renderStats = new FrameStats();
+    private ActiveCanvas canvas;
+    private boolean activeRendering = false;
+    private boolean performanceOverlay = false;
+    // Where new games are played, or null to play them locally
+    private InetSocketAddress server;
+    private SpectatorFeed spectatorFeed;
+    private final StatsStore stats = new StatsStore(StatsStore.defaultPath());
 
     private JMenuBar menuBar = new JMenuBar();
     private JMenu gameMenu = new JMenu("Game");
     private JMenu helpMenu = new JMenu("Help");
-    private JMenuItem newGame, exit, help, debug;
+    private JMenuItem newGame, undo, redo, connect, exit, help, debug;
+    private JCheckBoxMenuItem activeRender;
 
     public static void main(String[] args) {
+        StartupTimer.start();
+
+        // A script given with --script runs once the window is up, then the game exits
+        BatchScript script = null;
+        Path csv = null;
+        for (int i = 0; i < args.length; i++) {
+            try {
+                if (args[i].equals("--script")) {
+                    script = BatchScript.load(Paths.get(args[++i]));
+                } else if (args[i].equals("--csv")) {
+                    csv = Paths.get(args[++i]);
+                } else {
+                    System.out.println("[GAME] Ignoring unknown argument " + args[i]);
+                }
+            } catch (IndexOutOfBoundsException e) {
+                System.out.println("[GAME] Missing a file after " + args[i - 1]);
+                System.exit(1);
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("[GAME] Couldn't load the script: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        BatchScript batch = script;
+        Path results = csv;
+
+        // Decode the shared assets in the background while the UI is set up
+        Thread preloader = new Thread(Game::preloadAssets, "AssetPreloader");
+        preloader.start();
+
         // Don't block the main thread
         SwingUtilities.invokeLater(() -> {
             setLookAndFeel();
+            StartupTimer.mark("look and feel");
+            try {
+                preloader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            StartupTimer.mark("asset decode");
+
             Game game = new Game();
             game.switchState(GameState.MENU);
             game.setVisible(true);
+            StartupTimer.mark("window");
+
+            if (batch != null) {
+                DebugConsole console = new DebugConsole(game);
+                new Thread(() -> runScript(game, console, batch, results), "BatchScript").start();
+            }
         });
     }
 
+    /**
+     * Run a script through the debug console, then exit with whether it passed
+     *
+     * @param game    The game
+     * @param console The debug console to run the script's commands through
+     * @param script  The script
+     * @param csv     Where to write the results, or null to print them
+     */
+    private static void runScript(Game game, DebugConsole console, BatchScript script, Path csv) {
+        int failures;
+        if (csv == null) {
+            // Only flushed, closing it would close stdout for the rest of the run
+            PrintWriter writer = new PrintWriter(System.out);
+            failures = script.run(console, writer);
+            writer.flush();
+        } else {
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(csv, StandardCharsets.UTF_8))) {
+                failures = script.run(console, writer);
+            } catch (IOException e) {
+                System.out.println("[SCRIPT] Couldn't write the results: " + e.getMessage());
+                failures = 1;
+            }
+        }
+        System.out.println("[SCRIPT] Finished with " + failures + " failures");
+        int status = failures == 0 ? 0 : 1;
+        SwingUtilities.invokeLater(() -> game.close(status));
+    }
+
+    /**
+     * Load the window icon, preferring the pre-decoded copy in the asset pack
+     *
+     * @return The icon
+     */
+    private static ImageIcon loadIcon() {
+        AssetPack pack = AssetPack.get();
+        Image image = pack == null ? null : pack.getImage("bomb.png");
+        return image != null ? new ImageIcon(image) : new ImageIcon(Resources.get("bomb.png"));
+    }
+
+    /**
+     * Decode the assets every screen needs
+     */
+    private static void preloadAssets() {
+        SpriteSheet.load("spritesheet.png", 32);
+    }
+
     /**
      * Set the UI theme of the game
      */
@@ -60,20 +177,68 @@ public class Game extends JFrame {
         this.setLocationRelativeTo(null);
         this.setIconImage(icon.getImage());
 
-        // Cleanup resources on close
+        // Cleanup resources on close, pause the clock while minimized
         this.addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
                 close();
             }
+
+            @Override
+            public void windowIconified(WindowEvent e) {
+                if (screen instanceof GameBoard) {
+                    ((GameBoard) screen).getTicker().pause();
+                }
+            }
+
+            @Override
+            public void windowDeiconified(WindowEvent e) {
+                if (screen instanceof GameBoard) {
+                    ((GameBoard) screen).getTicker().resume();
+                }
+            }
         });
 
         // Simple menu bar
         this.newGame = new JMenuItem("New Game");
         this.newGame.addActionListener(e -> this.switchState(GameState.MENU));
+        this.undo = new JMenuItem("Undo");
+        this.undo.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));
+        this.undo.addActionListener(e -> {
+            if (this.screen instanceof GameBoard) {
+                ((GameBoard) this.screen).undo();
+            }
+        });
+        this.redo = new JMenuItem("Redo");
+        this.redo.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK));
+        this.redo.addActionListener(e -> {
+            if (this.screen instanceof GameBoard) {
+                ((GameBoard) this.screen).redo();
+            }
+        });
+        this.activeRender = new JCheckBoxMenuItem("Active Rendering");
+        this.activeRender.addActionListener(e -> this.setActiveRendering(this.activeRender.isSelected()));
+        this.connect = new JMenuItem("Connect to Server...");
+        this.connect.addActionListener(e -> {
+            String address = JOptionPane.showInputDialog(this,
+                    "Server address (host:port), leave empty to play locally",
+                    this.server == null ? "" : Protocol.formatAddress(this.server));
+            if (address != null) {
+                try {
+                    this.setServer(address.trim().isEmpty() ? null : Protocol.parseAddress(address.trim()));
+                } catch (IllegalArgumentException ex) {
+                    JOptionPane.showMessageDialog(this, ex.getMessage(), "Connect to Server",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
         this.exit = new JMenuItem("Exit");
         this.exit.addActionListener(e -> this.close());
         this.gameMenu.add(this.newGame);
+        this.gameMenu.add(this.undo);
+        this.gameMenu.add(this.redo);
+        this.gameMenu.add(this.activeRender);
+        this.gameMenu.add(this.connect);
         this.gameMenu.add(this.exit);
 
         this.help = new JMenuItem("How to Play");
@@ -92,14 +257,35 @@ public class Game extends JFrame {
         this.menuBar.add(this.gameMenu);
         this.menuBar.add(this.helpMenu);
         this.setJMenuBar(this.menuBar);
+
+        // F3 is bound on the root pane, which stays shown while active rendering hides the screen
+        this.getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+                .put(KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0), "togglePerformanceOverlay");
+        this.getRootPane().getActionMap().put("togglePerformanceOverlay", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                setPerformanceOverlay(!isPerformanceOverlay());
+            }
+        });
     }
 
     /**
      * Close the game and cleanup resources
      */
     public void close() {
+        this.close(0);
+    }
+
+    /**
+     * Close the game and cleanup resources, exiting with a status
+     *
+     * @param status The exit status, 0 if everything went well
+     */
+    public void close(int status) {
+        this.setSpectatorFeed(null);
+        this.stats.close();
         this.soundManager.close();
-        System.exit(0);
+        System.exit(status);
     }
 
     /**
@@ -111,15 +297,39 @@ public class Game extends JFrame {
         return this.state;
     }
 
+    /**
+     * Switch the current game state after a delay, without blocking the UI
+     * Any previously queued switch is replaced
+     *
+     * @param state The new game state
+     * @param delay The delay before switching, in milliseconds
+     * @return The queued switch, which further steps can be chained onto
+     */
+    public Scheduler.Task queueState(GameState state, int delay) {
+        if (this.transition != null) {
+            this.transition.cancel();
+        }
+        Scheduler.Task transition = this.scheduler.after(delay, () -> this.switchState(state));
+        this.transition = transition;
+        return transition;
+    }
+
     /**
      * Switch the current game state
+     * Any queued switch is cancelled
      *
      * @param state The new game state
      */
     public void switchState(GameState state) {
+        if (this.transition != null && this.transition.isPending()) {
+            this.transition.cancel();
+        }
+        this.transition = null;
         if (this.state == state) {
             return;
         }
+        long start = Probe.SCREEN.start();
+        this.detachCanvas();
         if (this.screen != null) {
             this.remove(this.screen);
         }
@@ -140,9 +350,100 @@ public class Game extends JFrame {
         }
 
         this.add(this.screen);
+        this.attachCanvas();
         this.state = state;
         this.pack();
         this.repaint();
+        Probe.SCREEN.end(start, 0, state.toString());
+    }
+
+    /**
+     * Render the current screen through an active canvas, if enabled and supported
+     */
+    private void attachCanvas() {
+        if (!this.activeRendering || !this.screen.supportsActiveRendering()) {
+            return;
+        }
+
+        // The screen stays in the window hidden, so it keeps its game and layout
+        this.screen.setVisible(false);
+        this.canvas = new ActiveCanvas(this.screen, this.renderStats);
+        // Keys have to reach a Swing component for the root pane's bindings to run, the canvas would take them
+        this.canvas.setFocusable(false);
+        this.add(this.canvas);
+        this.getRootPane().requestFocusInWindow();
+    }
+
+    /**
+     * Go back to passively rendering the current screen
+     */
+    private void detachCanvas() {
+        if (this.canvas == null) {
+            return;
+        }
+
+        this.remove(this.canvas);
+        this.canvas = null;
+
+        // Removing the screen would stop its timers, so only lay it out again
+        BorderLayout layout = (BorderLayout) this.getContentPane().getLayout();
+        layout.addLayoutComponent(this.screen, BorderLayout.CENTER);
+        this.screen.setVisible(true);
+    }
+
+    /**
+     * Check if screens are actively rendered
+     *
+     * @return Whether active rendering is enabled
+     */
+    public boolean isActiveRendering() {
+        return this.activeRendering;
+    }
+
+    /**
+     * Set whether screens that support it are actively rendered
+     *
+     * @param activeRendering Whether to enable active rendering
+     */
+    public void setActiveRendering(boolean activeRendering) {
+        this.activeRendering = activeRendering;
+        this.activeRender.setSelected(activeRendering);
+        if (this.screen != null) {
+            this.detachCanvas();
+            this.attachCanvas();
+            this.revalidate();
+            this.repaint();
+        }
+    }
+
+    /**
+     * Check if the performance overlay is shown over the board
+     *
+     * @return Whether the overlay is shown
+     */
+    public boolean isPerformanceOverlay() {
+        return this.performanceOverlay;
+    }
+
+    /**
+     * Set whether the performance overlay is shown over the board, in this game and the next ones
+     *
+     * @param performanceOverlay Whether to show the overlay
+     */
+    public void setPerformanceOverlay(boolean performanceOverlay) {
+        this.performanceOverlay = performanceOverlay;
+        if (this.screen instanceof GameBoard) {
+            ((GameBoard) this.screen).getPerformanceOverlay().setVisible(performanceOverlay);
+        }
+    }
+
+    /**
+     * Get the active rendering metrics
+     *
+     * @return The render metrics
+     */
+    public FrameStats getRenderStats() {
+        return this.renderStats;
     }
 
     /**
@@ -173,6 +474,15 @@ public class Game extends JFrame {
         this.difficulty = difficulty;
     }
 
+    /**
+     * Get the game scheduler
+     *
+     * @return The game scheduler
+     */
+    public Scheduler getScheduler() {
+        return this.scheduler;
+    }
+
     /**
      * Get the game sound manager
      *
@@ -181,4 +491,59 @@ public class Game extends JFrame {
     public SoundManager getSoundManager() {
         return this.soundManager;
     }
+
+    /**
+     * Get the stats of every finished game
+     *
+     * @return The stats
+     */
+    public StatsStore getStats() {
+        return this.stats;
+    }
+
+    /**
+     * Get the server new games are played on
+     *
+     * @return The server's address, or null when playing locally
+     */
+    public InetSocketAddress getServer() {
+        return this.server;
+    }
+
+    /**
+     * Set the server new games are played on, from the next game onwards
+     *
+     * @param server The server's address, or null to play locally
+     */
+    public void setServer(InetSocketAddress server) {
+        this.server = server;
+        System.out.println("[GAME] Playing " + (server == null ? "locally" : "on " + Protocol.formatAddress(server)));
+    }
+
+    /**
+     * Get the feed games are broadcast to spectators on
+     *
+     * @return The spectator feed, or null if not broadcasting
+     */
+    public SpectatorFeed getSpectatorFeed() {
+        return this.spectatorFeed;
+    }
+
+    /**
+     * Set the feed games are broadcast to spectators on, including the one being played
+     *
+     * @param spectatorFeed The spectator feed, or null to stop broadcasting
+     */
+    public void setSpectatorFeed(SpectatorFeed spectatorFeed) {
+        if (this.spectatorFeed != null) {
+            if (this.screen instanceof GameBoard) {
+                ((GameBoard) this.screen).removeCellListener(this.spectatorFeed);
+            }
+            this.spectatorFeed.close();
+        }
+        this.spectatorFeed = spectatorFeed;
+        if (spectatorFeed != null && this.screen instanceof GameBoard) {
+            ((GameBoard) this.screen).broadcastTo(spectatorFeed);
+        }
+    }
 }
@@ -33,6 +33,10 @@ public class Help extends JFrame {
                 "If you think you have flagged all surrounding mines of a cell, " +
                 "you can middle click on it to uncover all surrounding cells.\n\n" +
                 "When you have uncovered all the cells that are not mines, you win!\n\n" +
+                "If the board doesn't fit the window, drag it or scroll to move around. " +
+                "Hold control while scrolling to zoom in and out.\n\n" +
+                "Made a mistake? Press Ctrl+Z to take back a move, and Ctrl+Y to make it again. " +
+                "Once the game is over, it can't be undone.\n\n" +
                 "If you want to start a new game, click on Game -> New Game in the menu bar. " +
                 "From there, you can adjust the difficulty to your choosing.\n\n" +
                 "Good luck!");
@@ -0,0 +1,214 @@
+package es.dolfi.minesweeper.components;
+
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.image.BufferStrategy;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import javax.swing.SwingUtilities;
+
+import es.dolfi.minesweeper.screens.Screen;
+import es.dolfi.minesweeper.util.FrameStats;
+
+/**
+ * Actively renders a screen at a fixed rate through a buffer strategy
+ * The screen itself stays hidden, and receives all input forwarded from here
+ */
+public class ActiveCanvas extends Canvas {
+    public static final int FRAME_RATE = 60;
+    private static final long FRAME_TIME = TimeUnit.SECONDS.toNanos(1) / FRAME_RATE;
+    // Sleeping is coarse, so spin for the last stretch before a frame is due
+    private static final long SPIN_TIME = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private final Screen screen;
+    private final FrameStats stats;
+    private volatile Thread loop;
+    private long paintTime = 0;
+
+    /**
+     * Create a new active canvas
+     *
+     * @param screen The screen to render
+     * @param stats  The metrics to record frames into
+     */
+    public ActiveCanvas(Screen screen, FrameStats stats) {
+        this.screen = screen;
+        this.stats = stats;
+        this.setIgnoreRepaint(true);
+
+        MouseForwarder forwarder = new MouseForwarder();
+        this.addMouseListener(forwarder);
+        this.addMouseMotionListener(forwarder);
+        this.addMouseWheelListener(forwarder);
+        this.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                screen.setBounds(getBounds());
+                screen.validate();
+            }
+        });
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return this.screen.getPreferredSize();
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        this.createBufferStrategy(2);
+
+        Thread loop = new Thread(this::run, "RenderLoop");
+        loop.setDaemon(true);
+        this.loop = loop;
+        loop.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        Thread loop = this.loop;
+        this.loop = null;
+        if (loop != null) {
+            loop.interrupt();
+        }
+        super.removeNotify();
+    }
+
+    /**
+     * Get the screen being rendered
+     *
+     * @return The screen
+     */
+    public Screen getScreen() {
+        return this.screen;
+    }
+
+    /**
+     * Run the render loop, pacing frames to a fixed rate
+     */
+    private void run() {
+        Thread self = Thread.currentThread();
+        long deadline = System.nanoTime();
+        long lastFrame = deadline;
+
+        while (this.loop == self) {
+            // Wait until the frame is due
+            long remaining = deadline - System.nanoTime();
+            while (remaining > 0) {
+                if (remaining > SPIN_TIME) {
+                    LockSupport.parkNanos(remaining - SPIN_TIME);
+                } else {
+                    Thread.yield();
+                }
+                remaining = deadline - System.nanoTime();
+            }
+            if (self.isInterrupted()) {
+                break;
+            }
+
+            // Painting Swing components must still happen on the EDT
+            try {
+                SwingUtilities.invokeAndWait(this::render);
+            } catch (InterruptedException e) {
+                break;
+            } catch (InvocationTargetException e) {
+                e.printStackTrace();
+            }
+
+            long now = System.nanoTime();
+            this.stats.frame(now - lastFrame, this.paintTime);
+            lastFrame = now;
+
+            // If we fell behind, skip the frames we missed instead of bursting
+            deadline += FRAME_TIME;
+            if (now - deadline > FRAME_TIME) {
+                long missed = (now - deadline) / FRAME_TIME;
+                this.stats.drop(missed);
+                deadline += missed * FRAME_TIME;
+            }
+        }
+    }
+
+    /**
+     * Paint the screen into the back buffer and show it
+     */
+    private void render() {
+        BufferStrategy strategy = this.getBufferStrategy();
+        if (strategy == null || this.loop == null) {
+            this.paintTime = 0;
+            return;
+        }
+
+        long start = System.nanoTime();
+        do {
+            do {
+                Graphics g = strategy.getDrawGraphics();
+                try {
+                    this.screen.paint(g);
+                } finally {
+                    g.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+        this.paintTime = System.nanoTime() - start;
+    }
+
+    /**
+     * Forwards mouse input to the component of the screen under the cursor
+     */
+    private class MouseForwarder extends MouseAdapter {
+        /**
+         * Dispatch a copy of the event to the deepest listening component
+         *
+         * @param e The event
+         */
+        private void forward(MouseEvent e) {
+            Component target = SwingUtilities.getDeepestComponentAt(screen, e.getX(), e.getY());
+            if (target == null) {
+                target = screen;
+            }
+
+            // Like Swing, skip over components that don't listen for mouse input
+            while (target != screen && target.getMouseListeners().length == 0
+                    && target.getMouseMotionListeners().length == 0 && target.getMouseWheelListeners().length == 0) {
+                target = target.getParent();
+            }
+
+            target.dispatchEvent(SwingUtilities.convertMouseEvent(screen, e, target));
+        }
+
+        @Override
+        public void mouseClicked(MouseEvent e) {
+            this.forward(e);
+        }
+
+        @Override
+        public void mousePressed(MouseEvent e) {
+            this.forward(e);
+        }
+
+        @Override
+        public void mouseReleased(MouseEvent e) {
+            this.forward(e);
+        }
+
+        @Override
+        public void mouseDragged(MouseEvent e) {
+            this.forward(e);
+        }
+
+        @Override
+        public void mouseMoved(MouseEvent e) {
+            this.forward(e);
+        }
+
+        @Override
+        public void mouseWheelMoved(MouseWheelEvent e) {
+            this.forward(e);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package es.dolfi.minesweeper.components;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.swing.SwingUtilities;
+
+import es.dolfi.minesweeper.metrics.Probe;
+import es.dolfi.minesweeper.screens.GameBoard;
+import es.dolfi.minesweeper.util.Camera;
+
+/**
+ * Keeps the visible part of the board pre-rendered in an offscreen image
+ * Changed cells are drawn into it as they change, so painting is a single blit
+ */
+public class BoardLayer implements CellListener {
+    // Past this many changes at once, the whole layer is composed in the background
+    private static final int COMPOSE_THRESHOLD = 512;
+    private static final ExecutorService composer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "BoardComposer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final GameBoard board;
+    private final Rectangle area = new Rectangle();
+    private final Rectangle cellArea = new Rectangle();
+    private VolatileImage volatileImage;
+    private BufferedImage bufferedImage;
+    private boolean valid = false;
+    // Bumped whenever the layer is invalidated, so stale compositions are dropped
+    private int version = 0;
+
+    // Indices of the changed cells, row-major like the board
+    private final int[] pending = new int[COMPOSE_THRESHOLD];
+    private int pendingCount = 0;
+    private boolean overflow = false;
+    private boolean flushPending = false;
+    private boolean composing = false;
+
+    /**
+     * Create a new board layer
+     *
+     * @param board The game board
+     */
+    public BoardLayer(GameBoard board) {
+        this.board = board;
+    }
+
+    /**
+     * Paint the layer over the visible part of the board
+     *
+     * @param g The graphics to paint with
+     */
+    public void paint(Graphics g) {
+        Rectangle area = this.board.getCamera().getBoardArea(this.area);
+        if (area.width <= 0 || area.height <= 0) {
+            return;
+        }
+
+        // Volatile images can lose their contents at any time, so retry a few times
+        for (int attempt = 0; attempt < 3; attempt++) {
+            Image image = this.validateImage(area.width, area.height);
+            g.drawImage(image, area.x, area.y, null);
+            if (this.volatileImage == null || !this.volatileImage.contentsLost()) {
+                break;
+            }
+            this.valid = false;
+        }
+    }
+
+    /**
+     * Redraw the whole layer on the next paint, such as after the camera moved
+     */
+    public void invalidate() {
+        this.valid = false;
+        this.version++;
+    }
+
+    @Override
+    public void cellChanged(int column, int row, int state) {
+        if (!this.overflow) {
+            if (this.pendingCount < COMPOSE_THRESHOLD) {
+                this.pending[this.pendingCount++] = row * this.board.getColumns() + column;
+            } else {
+                this.pendingCount = 0;
+                this.overflow = true;
+            }
+        }
+
+        // Handle everything that changed before the next event at once
+        if (!this.flushPending) {
+            this.flushPending = true;
+            SwingUtilities.invokeLater(this::flush);
+        }
+    }
+
+    /**
+     * Draw the pending changes into the layer, or compose it anew if there are many
+     */
+    private void flush() {
+        this.flushPending = false;
+        if (this.composing) {
+            // Picked up once the composition finishes
+            return;
+        }
+        if (!this.valid) {
+            this.pendingCount = 0;
+            this.overflow = false;
+            this.board.repaint();
+            return;
+        }
+        if (this.overflow) {
+            this.overflow = false;
+            this.compose();
+            return;
+        }
+
+        Camera camera = this.board.getCamera();
+        Rectangle area = camera.getBoardArea(this.area);
+        long start = Probe.REDRAW.start();
+        Graphics g = this.getImage().getGraphics();
+        int columns = this.board.getColumns();
+        for (int i = 0; i < this.pendingCount; i++) {
+            int column = this.pending[i] % columns, row = this.pending[i] / columns;
+            Rectangle cellArea = camera.getCellArea(column, row, this.cellArea);
+            if (!cellArea.intersects(area)) {
+                continue;
+            }
+
+            g.setClip(cellArea.x - area.x, cellArea.y - area.y, cellArea.width, cellArea.height);
+            Cell.paint(g, this.board.getState(column, row), cellArea.x - area.x, cellArea.y - area.y,
+                    cellArea.width, cellArea.height);
+            this.board.repaint(cellArea);
+        }
+        g.dispose();
+        Probe.REDRAW.end(start, this.pendingCount);
+        this.pendingCount = 0;
+    }
+
+    /**
+     * Compose the whole layer on a background thread
+     * The cell sprites are captured first, so the board's state is never read off the EDT
+     */
+    private void compose() {
+        Camera camera = this.board.getCamera();
+        Rectangle area = new Rectangle(camera.getBoardArea(this.area));
+        int firstColumn = camera.firstColumn(area.x), lastColumn = camera.lastColumn(area.x + area.width);
+        int firstRow = camera.firstRow(area.y), lastRow = camera.lastRow(area.y + area.height);
+        int columns = lastColumn - firstColumn + 1, rows = lastRow - firstRow + 1;
+        if (columns <= 0 || rows <= 0) {
+            return;
+        }
+
+        int[] xs = new int[columns + 1];
+        int[] ys = new int[rows + 1];
+        for (int i = 0; i <= columns; i++) {
+            xs[i] = camera.columnX(firstColumn + i) - area.x;
+        }
+        for (int j = 0; j <= rows; j++) {
+            ys[j] = camera.rowY(firstRow + j) - area.y;
+        }
+        BufferedImage[] sprites = new BufferedImage[columns * rows];
+        for (int i = 0; i < columns; i++) {
+            for (int j = 0; j < rows; j++) {
+                int size = Math.min(xs[i + 1] - xs[i], ys[j + 1] - ys[j]);
+                sprites[j * columns + i] = Cell.getSprite(this.board.getState(firstColumn + i, firstRow + j), size);
+            }
+        }
+
+        this.composing = true;
+        int version = this.version;
+        composer.execute(() -> {
+            long start = Probe.REDRAW.start();
+            BufferedImage composed = new BufferedImage(area.width, area.height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = composed.createGraphics();
+            for (int j = 0; j < rows; j++) {
+                for (int i = 0; i < columns; i++) {
+                    g.drawImage(sprites[j * columns + i], xs[i], ys[j], xs[i + 1] - xs[i], ys[j + 1] - ys[j], null);
+                }
+            }
+            g.dispose();
+            Probe.REDRAW.end(start, sprites.length);
+
+            SwingUtilities.invokeLater(() -> {
+                this.composing = false;
+                if (version == this.version && this.valid) {
+                    Graphics layer = this.getImage().getGraphics();
+                    layer.drawImage(composed, 0, 0, null);
+                    layer.dispose();
+                    this.board.repaint(area);
+                }
+
+                // Apply anything that changed while composing
+                this.flush();
+            });
+        });
+    }
+
+    /**
+     * Get the current offscreen image
+     *
+     * @return The image
+     */
+    private Image getImage() {
+        return this.volatileImage != null ? this.volatileImage : this.bufferedImage;
+    }
+
+    /**
+     * Make sure the offscreen image exists, fits and holds the visible cells
+     *
+     * @param width  The width of the visible board
+     * @param height The height of the visible board
+     * @return The image
+     */
+    private Image validateImage(int width, int height) {
+        Image image = this.getImage();
+        if (image != null && (image.getWidth(null) != width || image.getHeight(null) != height)) {
+            this.dispose();
+            image = null;
+        }
+
+        if (this.volatileImage != null) {
+            GraphicsConfiguration config = this.board.getGraphicsConfiguration();
+            int status = config == null ? VolatileImage.IMAGE_OK : this.volatileImage.validate(config);
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                this.dispose();
+                image = null;
+            } else if (status == VolatileImage.IMAGE_RESTORED) {
+                this.valid = false;
+            }
+        }
+
+        if (image == null) {
+            // Volatile images need a displayable component, otherwise fall back
+            this.volatileImage = this.board.createVolatileImage(width, height);
+            if (this.volatileImage == null) {
+                this.bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            }
+            this.valid = false;
+        }
+
+        if (!this.valid) {
+            this.redraw();
+        }
+        return this.getImage();
+    }
+
+    /**
+     * Draw all the visible cells into the layer
+     */
+    private void redraw() {
+        Camera camera = this.board.getCamera();
+        Rectangle area = camera.getBoardArea(this.area);
+        int firstColumn = camera.firstColumn(area.x), lastColumn = camera.lastColumn(area.x + area.width);
+        int firstRow = camera.firstRow(area.y), lastRow = camera.lastRow(area.y + area.height);
+
+        long start = Probe.REDRAW.start();
+        Graphics g = this.getImage().getGraphics();
+        g.translate(-area.x, -area.y);
+        for (int i = firstColumn; i <= lastColumn; i++) {
+            int x = camera.columnX(i), width = camera.columnX(i + 1) - x;
+            for (int j = firstRow; j <= lastRow; j++) {
+                int y = camera.rowY(j), height = camera.rowY(j + 1) - y;
+                Cell.paint(g, this.board.getState(i, j), x, y, width, height);
+            }
+        }
+        g.dispose();
+        Probe.REDRAW.end(start, (long) (lastColumn - firstColumn + 1) * (lastRow - firstRow + 1));
+
+        this.valid = true;
+        this.pendingCount = 0;
+        this.overflow = false;
+    }
+
+    /**
+     * Release the offscreen image
+     */
+    public void dispose() {
+        if (this.volatileImage != null) {
+            this.volatileImage.flush();
+            this.volatileImage = null;
+        }
+        this.bufferedImage = null;
+        this.valid = false;
+    }
+}
@@ -1,277 +1,58 @@
 package es.dolfi.minesweeper.components;
 
-import java.awt.*;
+import java.awt.Graphics;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
 
-import javax.swing.JComponent;
-
-import es.dolfi.minesweeper.enums.Difficulty;
-import es.dolfi.minesweeper.screens.GameBoard;
-import es.dolfi.minesweeper.util.SoundManager;
+import es.dolfi.minesweeper.logic.Minefield;
 import es.dolfi.minesweeper.util.SpriteSheet;
 
 /**
- * Represents a single cell on the game board
+ * Paints single cells on the game board
+ * Cells are only state bits, kept by the board and changed through its logic thread
  */
-public class Cell extends JComponent {
-    public static final SpriteSheet minesweeps = SpriteSheet.load("spritresheet.png", 32);
-    private final GameBoard board;
-    private final int column;
-    private final int row;
-    private boolean flagged = false;
-    private boolean revealed = false;
-    private boolean mine;
-
-    /**
-     * Create a new cell
-     *
-     * @param board      The game board
-     * @param difficulty The game difficulty
-     * @param column     The column of the cell
-     * @param row        The row of the cell
-     * @param mine       Whether the cell is a mine
-     */
-    public Cell(GameBoard board, Difficulty difficulty, int column, int row, boolean mine) {
-        this.board = board;
-        this.column = column;
-        this.row = row;
-        this.mine = mine;
-
-        int cellSize = difficulty.getCellSize();
-        this.setPreferredSize(new Dimension(cellSize, cellSize));
-
-        GridBagConstraints constraints = new GridBagConstraints();
-        constraints.gridx = column;
-        constraints.gridy = row;
-        constraints.insets = new Insets(0, 0, 0, 0);
-
-        this.board.add(this, constraints);
-        this.setVisible(true);
-    }
-
-    @Override
-    protected void paintComponent(Graphics g) {
-        Difficulty difficulty = this.board.getGame().getDifficulty();
-        int cellSize = difficulty.getCellSize();
-
-        BufferedImage sprite;
-        if (this.revealed) {
-            if (this.mine) {
-                sprite = minesweeps.getSprite(0, 1);
-                if (this.flagged) {
-                    sprite = minesweeps.getSprite(5, 1);
-                }
-            } else {
-                int surroundingMineCount = this.getSurroundingMineCount();
-                if (surroundingMineCount == 0) {
-                    sprite = minesweeps.getSprite(1, 1);
-                } else {
-                    sprite = minesweeps.getSprite(surroundingMineCount - 1, 0);
-                }
-            }
-        } else {
-            sprite = minesweeps.getSprite(2, 1);
-            if (this.flagged) {
-                sprite = minesweeps.getSprite(3, 1);
-            }
-        }
-
-        g.drawImage(sprite, 0, 0, cellSize, cellSize, null);
-    }
-
-    /**
-     * Get the number of mines surrounding the cell
-     *
-     * @return The number of mines
-     */
-    private int getSurroundingMineCount() {
-        Difficulty difficulty = this.board.getGame().getDifficulty();
-
-        // Find the cells that are one above, below, to the left, to the right, diagonal
-        int count = 0;
-        Cell cell;
-        for (int i = Math.max(0, this.column - 1); i <= Math.min(difficulty.getWidth() - 1, this.column + 1); i++) {
-            for (int j = Math.max(0, this.row - 1); j <= Math.min(difficulty.getHeight() - 1, this.row + 1); j++) {
-                cell = this.board.getCell(i, j).get();
-                if (cell.isMine()) {
-                    count++;
-                }
-            }
-        }
-        return count;
-    }
-
-    /**
-     * Reveal all surrounding cells that are eligible to be revealed
-     */
-    private void revealEligibleCells() {
-        Difficulty difficulty = this.board.getGame().getDifficulty();
-
-        // Find the cells that are one above, below, to the left, to the right, diagonal
-        Cell cell;
-        for (int i = Math.max(0, this.column - 1); i <= Math.min(difficulty.getWidth() - 1, this.column + 1); i++) {
-            for (int j = Math.max(0, this.row - 1); j <= Math.min(difficulty.getHeight() - 1, this.row + 1); j++) {
-                cell = this.board.getCell(i, j).get();
-                if (!cell.isRevealed() && !cell.isMine()) {
-                    cell.setRevealed(true);
-                }
-            }
-        }
-    }
-
-    /**
-     * Check if a cell is a neighbor of this cell
-     *
-     * @param cell The cell to check
-     * @return Whether the cell is a neighbor
-     */
-    public boolean isNeighbor(Cell cell) {
-        // Check if the cell is one above, below, to the left, to the right, diagonal
-        return Math.abs(this.column - cell.getColumn()) <= 1 && Math.abs(this.row - cell.getRow()) <= 1;
-    }
-
-    /**
-     * Reveal the neighbors of this cell if the mine count is satisfied
-     */
-    public void revealNeighbors() {
-        Difficulty difficulty = this.board.getGame().getDifficulty();
-
-        // Find the cells that are one above, below, to the left, to the right, diagonal
-        ArrayList<Cell> neighbors = new ArrayList<>();
-        int flagged = 0;
-        Cell cell;
-        for (int i = Math.max(0, this.column - 1); i <= Math.min(difficulty.getWidth() - 1, this.column + 1); i++) {
-            for (int j = Math.max(0, this.row - 1); j <= Math.min(difficulty.getHeight() - 1, this.row + 1); j++) {
-                cell = this.board.getCell(i, j).get();
-                if (cell.isFlagged()) {
-                    flagged++;
-                }
-                if (!cell.isRevealed() && !cell.isFlagged()) {
-                    neighbors.add(cell);
-                }
-            }
-        }
-
-        // If the mine count is satisfied, reveal the neighbors
-        int mineCount = this.getSurroundingMineCount();
-        if (neighbors.size() > 0 && flagged == mineCount) {
-            for (Cell neighbor : neighbors) {
-                neighbor.setRevealed(true);
-            }
-            SoundManager soundManager = this.board.getGame().getSoundManager();
-            SoundManager.Sound sound = soundManager.get("sweep" + this.board.getRandom(1, 5));
-            sound.play();
-        }
-    }
-
-    /**
-     * Get the column of the cell on the board
-     *
-     * @return The column
-     */
-    public int getColumn() {
-        return this.column;
-    }
+public class Cell {
+    private static final SpriteSheet minesweeps = SpriteSheet.load("spritesheet.png", 32);
 
     /**
-     * Get the row of the cell on the board
-     *
-     * @return The row
+     * Static helpers only
      */
-    public int getRow() {
-        return this.row;
+    private Cell() {
     }
 
     /**
-     * Get whether the cell is flagged
+     * Paint a cell
      *
-     * @return Whether the cell is flagged
+     * @param g      The graphics to paint with
+     * @param state  The state bits of the cell
+     * @param x      The x position to paint at
+     * @param y      The y position to paint at
+     * @param width  The width to paint at
+     * @param height The height to paint at
      */
-    public boolean isFlagged() {
-        return this.flagged;
+    public static void paint(Graphics g, int state, int x, int y, int width, int height) {
+        g.drawImage(getSprite(state, width), x, y, width, height, null);
     }
 
     /**
-     * Set whether the cell is flagged
+     * Get the sprite showing a cell's state
      *
-     * @param flagged Whether the cell is flagged
+     * @param state The state bits of the cell
+     * @param size  The size the sprite will be drawn at
+     * @return The sprite
      */
-    public void setFlagged(boolean flagged) {
-        if (flagged == this.flagged) {
-            return;
+    public static BufferedImage getSprite(int state, int size) {
+        boolean flagged = (state & Minefield.FLAGGED) != 0;
+        if ((state & Minefield.REVEALED) == 0) {
+            return minesweeps.getSprite(flagged ? 3 : 2, 1, size);
         }
-
-        this.flagged = flagged;
-        this.board.updateFlagCount(flagged ? -1 : 1);
-        this.board.repaint();
-        this.repaint();
-        System.out.printf("[CELL] %slagged (%d, %d)%n", flagged ? "F" : "Unf", this.column, this.row);
-
-        SoundManager soundManager = this.board.getGame().getSoundManager();
-        SoundManager.Sound sound = soundManager.get(flagged ? "flag" : "unflag");
-        sound.play();
-    }
-
-    /**
-     * Get whether the cell is revealed
-     *
-     * @return Whether the cell is revealed
-     */
-    public boolean isRevealed() {
-        return this.revealed;
-    }
-
-    /**
-     * Set whether the cell is revealed
-     *
-     * @param revealed Whether the cell is revealed
-     */
-    public void setRevealed(boolean revealed) {
-        this.setRevealed(revealed, true);
-    }
-
-    /**
-     * Set whether the cell is revealed
-     *
-     * @param revealed Whether the cell is revealed
-     * @param action   Whether to check win/lose status and reveal eligible cells
-     */
-    public void setRevealed(boolean revealed, boolean action) {
-        if (revealed == this.revealed) {
-            return;
+        if ((state & Minefield.MINE) != 0) {
+            return minesweeps.getSprite(flagged ? 5 : 0, 1, size);
         }
 
-        this.revealed = revealed;
-        this.repaint();
-        if (revealed && action) {
-            if (this.mine) {
-                this.board.lose();
-            } else {
-                this.board.updateRevealedCount();
-            }
+        int surroundingMineCount = state & Minefield.COUNT;
+        if (surroundingMineCount == 0) {
+            return minesweeps.getSprite(1, 1, size);
         }
-        if (this.getSurroundingMineCount() == 0 && action) {
-            this.revealEligibleCells();
-        }
-        System.out.printf("[CELL] %sevealed (%d, %d)%n", revealed ? "R" : "Unr", this.column, this.row);
-    }
-
-    /**
-     * Get whether the cell is a mine
-     *
-     * @return Whether the cell is a mine
-     */
-    public boolean isMine() {
-        return this.mine;
-    }
-
-    /**
-     * Set whether the cell is a mine
-     *
-     * @param mine Whether the cell is a mine
-     */
-    public void setMine(boolean mine) {
-        this.mine = mine;
+        return minesweeps.getSprite(surroundingMineCount - 1, 0, size);
     }
 }
@@ -0,0 +1,15 @@
+package es.dolfi.minesweeper.components;
+
+/**
+ * Listens for changes to the cells of a board
+ */
+public interface CellListener {
+    /**
+     * Called on the EDT when a cell is revealed, flagged or unflagged
+     *
+     * @param column The column of the cell that changed
+     * @param row    The row of the cell that changed
+     * @param state  The new state bits of the cell
+     */
+    void cellChanged(int column, int row, int state);
+}
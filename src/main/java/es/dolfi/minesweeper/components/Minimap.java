@@ -0,0 +1,184 @@
+package es.dolfi.minesweeper.components;
+
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+import es.dolfi.minesweeper.logic.Minefield;
+import es.dolfi.minesweeper.screens.GameBoard;
+import es.dolfi.minesweeper.util.Camera;
+
+/**
+ * Shows an overview of the whole board, with the visible part outlined
+ * Clicking or dragging on it moves the board's camera
+ */
+public class Minimap extends JComponent implements CellListener {
+    public static final int MAX_SIZE = 160;
+    // Boards bigger than this many cells a side share a pixel between cells
+    private static final int MAX_RESOLUTION = 2048;
+
+    private static final int HIDDEN = 0xBDBDBD;
+    private static final int REVEALED = 0xF4F4F4;
+    private static final int FLAGGED = 0xE53935;
+    private static final int EXPLODED = 0x212121;
+    private static final Color outline = new Color(0x6666FF);
+
+    private final GameBoard board;
+    private final int columns;
+    private final int rows;
+    private final BufferedImage image;
+    private final int[] pixels;
+    private final int cellsPerPixel;
+    private final int pixelsPerCell;
+
+    // Changed pixels since the last repaint, coalesced into one area
+    private int dirtyLeft, dirtyTop, dirtyRight, dirtyBottom;
+    private boolean repaintPending = false;
+
+    /**
+     * Create a new minimap
+     *
+     * @param board   The game board
+     * @param columns The number of columns on the board
+     * @param rows    The number of rows on the board
+     */
+    public Minimap(GameBoard board, int columns, int rows) {
+        this.board = board;
+        this.columns = columns;
+        this.rows = rows;
+
+        int longest = Math.max(columns, rows);
+        this.cellsPerPixel = (longest + MAX_RESOLUTION - 1) / MAX_RESOLUTION;
+        this.pixelsPerCell = Math.max(1, MAX_SIZE / longest);
+        int width = (columns + this.cellsPerPixel - 1) / this.cellsPerPixel * this.pixelsPerCell;
+        int height = (rows + this.cellsPerPixel - 1) / this.cellsPerPixel * this.pixelsPerCell;
+
+        this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        this.pixels = ((DataBufferInt) this.image.getRaster().getDataBuffer()).getData();
+        Arrays.fill(this.pixels, HIDDEN);
+        this.resetDirty();
+
+        // Fit the longest side to the maximum size, keeping the aspect ratio
+        double scale = MAX_SIZE / (double) Math.max(width, height);
+        this.setSize((int) Math.ceil(width * scale), (int) Math.ceil(height * scale));
+
+        MouseAdapter input = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                moveCamera(e.getX(), e.getY());
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                moveCamera(e.getX(), e.getY());
+            }
+        };
+        this.addMouseListener(input);
+        this.addMouseMotionListener(input);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        final Graphics2D g2d = (Graphics2D) g;
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        g2d.drawImage(this.image, 0, 0, this.getWidth(), this.getHeight(), null);
+
+        // Outline the part of the board the camera sees
+        Camera camera = this.board.getCamera();
+        Rectangle view = camera.getView();
+        int first = camera.firstColumn(view.x), last = camera.lastColumn(view.x + view.width);
+        int top = camera.firstRow(view.y), bottom = camera.lastRow(view.y + view.height);
+        double scaleX = this.getWidth() / (double) this.columns, scaleY = this.getHeight() / (double) this.rows;
+        g.setColor(outline);
+        g.drawRect((int) (first * scaleX), (int) (top * scaleY), (int) ((last - first + 1) * scaleX) - 1,
+                (int) ((bottom - top + 1) * scaleY) - 1);
+        g.setColor(Color.BLACK);
+        g.drawRect(0, 0, this.getWidth() - 1, this.getHeight() - 1);
+    }
+
+    @Override
+    public void cellChanged(int column, int row, int state) {
+        int color;
+        if ((state & Minefield.FLAGGED) != 0) {
+            color = FLAGGED;
+        } else if ((state & Minefield.REVEALED) == 0) {
+            color = HIDDEN;
+        } else if ((state & Minefield.MINE) != 0) {
+            color = EXPLODED;
+        } else {
+            color = REVEALED;
+        }
+
+        // Only the pixels of the changed cell are written
+        int x = column / this.cellsPerPixel * this.pixelsPerCell;
+        int y = row / this.cellsPerPixel * this.pixelsPerCell;
+        int width = this.image.getWidth();
+        for (int j = y; j < y + this.pixelsPerCell; j++) {
+            for (int i = x; i < x + this.pixelsPerCell; i++) {
+                this.pixels[j * width + i] = color;
+            }
+        }
+        this.markDirty(x, y, x + this.pixelsPerCell, y + this.pixelsPerCell);
+    }
+
+    /**
+     * Center the board's camera on a point of the minimap
+     *
+     * @param x The x position on the minimap
+     * @param y The y position on the minimap
+     */
+    private void moveCamera(int x, int y) {
+        double column = x * (double) this.columns / this.getWidth();
+        double row = y * (double) this.rows / this.getHeight();
+        this.board.getCamera().centerOn(column, row);
+        this.board.cameraMoved();
+    }
+
+    /**
+     * Add an area of the image to the next repaint, scheduling one if needed
+     * Many changes in a row (such as a flood fill) only cause a single repaint
+     *
+     * @param left   The left edge, in image pixels
+     * @param top    The top edge, in image pixels
+     * @param right  The right edge, in image pixels (exclusive)
+     * @param bottom The bottom edge, in image pixels (exclusive)
+     */
+    private void markDirty(int left, int top, int right, int bottom) {
+        this.dirtyLeft = Math.min(this.dirtyLeft, left);
+        this.dirtyTop = Math.min(this.dirtyTop, top);
+        this.dirtyRight = Math.max(this.dirtyRight, right);
+        this.dirtyBottom = Math.max(this.dirtyBottom, bottom);
+        if (!this.repaintPending) {
+            this.repaintPending = true;
+            SwingUtilities.invokeLater(this::flush);
+        }
+    }
+
+    /**
+     * Repaint the area changed since the last repaint
+     */
+    private void flush() {
+        this.repaintPending = false;
+        double scaleX = this.getWidth() / (double) this.image.getWidth();
+        double scaleY = this.getHeight() / (double) this.image.getHeight();
+        int x = (int) Math.floor(this.dirtyLeft * scaleX), y = (int) Math.floor(this.dirtyTop * scaleY);
+        this.repaint(x, y, (int) Math.ceil(this.dirtyRight * scaleX) - x + 1,
+                (int) Math.ceil(this.dirtyBottom * scaleY) - y + 1);
+        this.resetDirty();
+    }
+
+    /**
+     * Clear the changed area
+     */
+    private void resetDirty() {
+        this.dirtyLeft = Integer.MAX_VALUE;
+        this.dirtyTop = Integer.MAX_VALUE;
+        this.dirtyRight = Integer.MIN_VALUE;
+        this.dirtyBottom = Integer.MIN_VALUE;
+    }
+}
@@ -16,7 +16,7 @@ import es.dolfi.minesweeper.util.SpriteSheet;
  * Represents a mute toggle for the game
  */
 public class MuteToggle extends JComponent {
-    public static final SpriteSheet minesweeps = SpriteSheet.load("spritresheet.png", 32);
+    public static final SpriteSheet minesweeps = SpriteSheet.load("spritesheet.png", 32);
     private final Game game;
 
     /**
@@ -37,7 +37,7 @@ public class MuteToggle extends JComponent {
                 // Hack for menu music
                 if (!isMuted() && game.getGameState() == GameState.MENU) {
                     SoundManager soundManager = game.getSoundManager();
-                    SoundManager.Sound sound = soundManager.get("shipbg");
+                    SoundManager.Stream sound = soundManager.stream("shipbg");
                     sound.play(-1);
                 }
             }
@@ -0,0 +1,204 @@
+package es.dolfi.minesweeper.components;
+
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+import es.dolfi.minesweeper.metrics.Histogram;
+import es.dolfi.minesweeper.metrics.Metrics;
+import es.dolfi.minesweeper.metrics.Probe;
+import es.dolfi.minesweeper.util.RenderCache;
+
+/**
+ * Shows frame times, repaints, flood fills, the heap and how fast the EDT allocates, over the board
+ * Everything but the frame times is sampled on a background thread, so the EDT only pays for drawing the text
+ */
+public class PerformanceOverlay extends JComponent {
+    private static final int SAMPLE_INTERVAL = 500;
+    // Frame times are kept for the last this many paints
+    private static final int FRAMES = 128;
+    private static final int PADDING = 6;
+    private static final int LINE_HEIGHT = 15;
+    private static final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "PerformanceSampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Font font = RenderCache.font("Monospaced", Font.PLAIN, 12);
+    private static final Color background = new Color(0, 0, 0, 170);
+    private static final Color foreground = new Color(0x7CFC00);
+
+    // Frame times in nanoseconds, only touched on the EDT
+    private final long[] frames = new long[FRAMES];
+    private final long[] sorted = new long[FRAMES];
+    private int frameCount = 0;
+    private int frameIndex = 0;
+    private int repaints = 0;
+    private long lastUpdate = System.nanoTime();
+    private String[] lines = { "Sampling..." };
+
+    // Only touched on the sampler thread, once it's running
+    private final long edt;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private long lastSample = System.nanoTime();
+    private long lastAllocated = -1;
+    private long lastFloods = 0;
+    private long lastFloodTime = 0;
+    private long lastRedrawn = 0;
+
+    private ScheduledFuture<?> task;
+
+    /**
+     * Create a new overlay, hidden until shown
+     * Must be created on the EDT, which is the thread its allocation rate is shown for
+     */
+    public PerformanceOverlay() {
+        this.edt = Thread.currentThread().getId();
+        this.setOpaque(false);
+        this.setSize(300, PADDING * 2 + LINE_HEIGHT * 6);
+        this.setVisible(false);
+    }
+
+    @Override
+    public void setVisible(boolean visible) {
+        super.setVisible(visible);
+        if (visible && this.task == null) {
+            // Rates start over, rather than spreading over however long the overlay was hidden
+            this.lastSample = System.nanoTime();
+            this.lastAllocated = -1;
+            this.lastFloods = Probe.FLOOD.getDurations().getCount();
+            this.lastFloodTime = Probe.FLOOD.getDurations().getSum();
+            this.lastRedrawn = Probe.REDRAW.getSizes().getSum();
+            this.task = sampler.scheduleAtFixedRate(this::sample, SAMPLE_INTERVAL, SAMPLE_INTERVAL,
+                    TimeUnit.MILLISECONDS);
+        } else if (!visible && this.task != null) {
+            this.task.cancel(false);
+            this.task = null;
+        }
+    }
+
+    @Override
+    public void removeNotify() {
+        super.removeNotify();
+        this.setVisible(false);
+    }
+
+    /**
+     * Record a frame, called by the board after each paint while the overlay is showing
+     *
+     * @param time How long the frame took to paint, in nanoseconds
+     */
+    public void framePainted(long time) {
+        this.frames[this.frameIndex] = time;
+        this.frameIndex = (this.frameIndex + 1) % FRAMES;
+        this.frameCount = Math.min(FRAMES, this.frameCount + 1);
+        this.repaints++;
+    }
+
+    /**
+     * Sample everything that can be read off the EDT, then hand it over to be shown
+     */
+    private void sample() {
+        long now = System.nanoTime();
+        double seconds = (now - this.lastSample) / 1e9;
+        this.lastSample = now;
+
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        String heap = String.format("Heap %dMB of %dMB", used >> 20, runtime.maxMemory() >> 20);
+        String allocation = this.sampleAllocation(seconds);
+
+        // The probes only keep totals, so the rates come from the change since the last sample
+        Histogram floodTimes = Probe.FLOOD.getDurations();
+        long floods = floodTimes.getCount(), floodTime = floodTimes.getSum();
+        long newFloods = floods - this.lastFloods;
+        String flood = String.format("Floods %d, mean %.2fms, max %.2fms", newFloods,
+                newFloods == 0 ? 0 : (floodTime - this.lastFloodTime) / 1000.0 / newFloods,
+                floodTimes.getMax() / 1000.0);
+        this.lastFloods = floods;
+        this.lastFloodTime = floodTime;
+
+        long redrawn = Probe.REDRAW.getSizes().getSum();
+        String cells = String.format("Cells redrawn %.0f/s%s", (redrawn - this.lastRedrawn) / seconds,
+                Metrics.isEnabled() ? "" : " (metrics off)");
+        this.lastRedrawn = redrawn;
+
+        SwingUtilities.invokeLater(() -> this.update(heap, allocation, flood, cells));
+    }
+
+    /**
+     * Sample how fast the EDT allocates, where the JVM can tell
+     *
+     * @param seconds The time since the last sample
+     * @return The allocation rate
+     */
+    private String sampleAllocation(double seconds) {
+        if (!(this.threads instanceof com.sun.management.ThreadMXBean)) {
+            return "EDT allocation unavailable";
+        }
+        long allocated = ((com.sun.management.ThreadMXBean) this.threads).getThreadAllocatedBytes(this.edt);
+        long last = this.lastAllocated;
+        this.lastAllocated = allocated;
+        if (allocated < 0 || last < 0) {
+            return "EDT allocation unavailable";
+        }
+        return String.format("EDT allocating %.1fMB/s", (allocated - last) / seconds / 1e6);
+    }
+
+    /**
+     * Combine a sample with the frame times and repaint
+     *
+     * @param sampled The lines sampled off the EDT
+     */
+    private void update(String... sampled) {
+        long now = System.nanoTime();
+        double seconds = (now - this.lastUpdate) / 1e9;
+        this.lastUpdate = now;
+
+        int count = this.frameCount;
+        System.arraycopy(this.frames, 0, this.sorted, 0, count);
+        Arrays.sort(this.sorted, 0, count);
+        String frames = count == 0 ? "No frames yet"
+                : String.format("Frame p50 %.1fms p95 %.1fms p99 %.1fms", this.percentile(count, 50),
+                        this.percentile(count, 95), this.percentile(count, 99));
+        String repaints = String.format("Repaints %.0f/s", this.repaints / seconds);
+        this.repaints = 0;
+
+        String[] lines = new String[2 + sampled.length];
+        lines[0] = frames;
+        lines[1] = repaints;
+        System.arraycopy(sampled, 0, lines, 2, sampled.length);
+        this.lines = lines;
+        this.repaint();
+    }
+
+    /**
+     * Get a percentile of the sorted frame times
+     *
+     * @param count      The number of frame times
+     * @param percentile The percentile, from 0 to 100
+     * @return The frame time, in milliseconds
+     */
+    private double percentile(int count, int percentile) {
+        int index = Math.min(count - 1, (int) Math.ceil(count * percentile / 100.0) - 1);
+        return this.sorted[Math.max(0, index)] / 1e6;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.setColor(background);
+        g.fillRect(0, 0, this.getWidth(), this.getHeight());
+        g.setColor(foreground);
+        g.setFont(font);
+        for (int i = 0; i < this.lines.length; i++) {
+            g.drawString(this.lines[i], PADDING, PADDING + LINE_HEIGHT * (i + 1) - 3);
+        }
+    }
+}
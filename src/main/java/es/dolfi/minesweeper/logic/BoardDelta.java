@@ -0,0 +1,123 @@
+package es.dolfi.minesweeper.logic;
+
+import es.dolfi.minesweeper.enums.GameState;
+
+/**
+ * The cells changed by one command, and the board totals after it
+ * Deltas are immutable, so they can be handed from the logic thread to the EDT as they are
+ */
+public final class BoardDelta {
+    private final int[] cells;
+    private final byte[] states;
+    private final int flagCount;
+    private final int revealedCount;
+    private final GameState outcome;
+    private final int[] mines;
+    private final String sound;
+
+    /**
+     * Create a new delta, taking ownership of the arrays
+     *
+     * @param cells         The indices of the changed cells
+     * @param states        The new state bits of each changed cell
+     * @param flagCount     The number of flags placed
+     * @param revealedCount The number of cells revealed
+     * @param outcome       How the game ended, or null while it is still going
+     * @param mines         The mines in the order they were placed, or null while the game is still going
+     * @param sound         The sound to play, or null for none
+     */
+    public BoardDelta(int[] cells, byte[] states, int flagCount, int revealedCount, GameState outcome, int[] mines,
+            String sound) {
+        this.cells = cells;
+        this.states = states;
+        this.flagCount = flagCount;
+        this.revealedCount = revealedCount;
+        this.outcome = outcome;
+        this.mines = mines;
+        this.sound = sound;
+    }
+
+    /**
+     * Get the number of changed cells
+     *
+     * @return The number of changed cells
+     */
+    public int size() {
+        return this.cells.length;
+    }
+
+    /**
+     * Get the index of a changed cell
+     *
+     * @param i The position in the delta
+     * @return The index of the cell on the board
+     */
+    public int getCell(int i) {
+        return this.cells[i];
+    }
+
+    /**
+     * Get the new state of a changed cell
+     *
+     * @param i The position in the delta
+     * @return The state bits of the cell
+     */
+    public int getState(int i) {
+        return this.states[i];
+    }
+
+    /**
+     * Get the number of flags placed
+     *
+     * @return The number of flags placed
+     */
+    public int getFlagCount() {
+        return this.flagCount;
+    }
+
+    /**
+     * Get the number of cells revealed
+     *
+     * @return The number of cells revealed
+     */
+    public int getRevealedCount() {
+        return this.revealedCount;
+    }
+
+    /**
+     * Get how the game ended
+     *
+     * @return The outcome, or null while the game is still going
+     */
+    public GameState getOutcome() {
+        return this.outcome;
+    }
+
+    /**
+     * Get the number of mines, once the game has ended
+     *
+     * @return The number of mines, or 0 while the game is still going
+     */
+    public int getMineCount() {
+        return this.mines == null ? 0 : this.mines.length;
+    }
+
+    /**
+     * Get one of the mines, once the game has ended
+     *
+     * @param i The position in placement order
+     * @return The index of the mine on the board
+     */
+    public int getMine(int i) {
+        return this.mines[i];
+    }
+
+    /**
+     * Get the sound to play with the delta
+     *
+     * @return The sound name, or null for none
+     */
+    public String getSound() {
+        return this.sound;
+    }
+}
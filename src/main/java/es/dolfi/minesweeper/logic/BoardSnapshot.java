@@ -0,0 +1,205 @@
+package es.dolfi.minesweeper.logic;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable copy of every cell's state, stored as a tree of small chunks
+ * Changing some cells copies only the chunks holding them and the branches above,
+ * every other chunk is shared with the snapshot it was made from
+ */
+public final class BoardSnapshot {
+    // 64 cells per chunk and 32 children per branch keep each copy small
+    private static final int CHUNK_BITS = 6;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int BRANCH_BITS = 5;
+    private static final int BRANCH_SIZE = 1 << BRANCH_BITS;
+
+    private final Object root;
+    private final int size;
+    // The number of branch levels above the chunks
+    private final int depth;
+    private final int flagCount;
+    private final int revealedCount;
+
+    /**
+     * Create a new snapshot
+     *
+     * @param root          The root node
+     * @param size          The number of cells
+     * @param depth         The number of branch levels
+     * @param flagCount     The number of flags placed
+     * @param revealedCount The number of cells revealed
+     */
+    private BoardSnapshot(Object root, int size, int depth, int flagCount, int revealedCount) {
+        this.root = root;
+        this.size = size;
+        this.depth = depth;
+        this.flagCount = flagCount;
+        this.revealedCount = revealedCount;
+    }
+
+    /**
+     * Take a full snapshot of a board
+     *
+     * @param cells         The state of every cell
+     * @param flagCount     The number of flags placed
+     * @param revealedCount The number of cells revealed
+     * @return The snapshot
+     */
+    public static BoardSnapshot of(byte[] cells, int flagCount, int revealedCount) {
+        int chunks = (cells.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        Object[] level = new Object[chunks];
+        for (int i = 0; i < chunks; i++) {
+            level[i] = Arrays.copyOfRange(cells, i * CHUNK_SIZE, (i + 1) * CHUNK_SIZE);
+        }
+
+        // Group the nodes into branches until a single root is left
+        int depth = 0;
+        while (level.length > 1 || depth == 0) {
+            Object[] parents = new Object[(level.length + BRANCH_SIZE - 1) / BRANCH_SIZE];
+            for (int i = 0; i < parents.length; i++) {
+                parents[i] = Arrays.copyOfRange(level, i * BRANCH_SIZE, (i + 1) * BRANCH_SIZE);
+            }
+            level = parents;
+            depth++;
+        }
+        return new BoardSnapshot(level[0], cells.length, depth, flagCount, revealedCount);
+    }
+
+    /**
+     * Get the number of cells
+     *
+     * @return The number of cells
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Get the number of flags placed
+     *
+     * @return The number of flags placed
+     */
+    public int getFlagCount() {
+        return this.flagCount;
+    }
+
+    /**
+     * Get the number of cells revealed
+     *
+     * @return The number of cells revealed
+     */
+    public int getRevealedCount() {
+        return this.revealedCount;
+    }
+
+    /**
+     * Get the state of a cell
+     *
+     * @param index The index of the cell
+     * @return The state bits of the cell
+     */
+    public int get(int index) {
+        Object node = this.root;
+        for (int level = this.depth; level > 0; level--) {
+            node = ((Object[]) node)[(index >>> (CHUNK_BITS + (level - 1) * BRANCH_BITS)) & (BRANCH_SIZE - 1)];
+        }
+        return ((byte[]) node)[index & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * Make a new snapshot with some cells changed, sharing everything else with this one
+     *
+     * @param cells         The current state of every cell, where the changed cells are read from
+     * @param changed       The indices of the changed cells, in any order and possibly repeated
+     * @param count         The number of changed indices
+     * @param flagCount     The number of flags placed
+     * @param revealedCount The number of cells revealed
+     * @return The new snapshot
+     */
+    public BoardSnapshot with(byte[] cells, int[] changed, int count, int flagCount, int revealedCount) {
+        int[] indices = Arrays.copyOf(changed, count);
+        Arrays.sort(indices);
+        Object root = count == 0 ? this.root : this.copy(this.root, this.depth, cells, indices, 0, count);
+        return new BoardSnapshot(root, this.size, this.depth, flagCount, revealedCount);
+    }
+
+    /**
+     * Copy the path down to a range of changed cells, all under the same node
+     *
+     * @param node    The node to copy
+     * @param level   The number of branch levels below and including this node
+     * @param cells   The current state of every cell
+     * @param indices The sorted indices of the changed cells
+     * @param from    The first index in the range
+     * @param to      The end of the range, exclusive
+     * @return The copied node
+     */
+    private Object copy(Object node, int level, byte[] cells, int[] indices, int from, int to) {
+        if (level == 0) {
+            byte[] chunk = ((byte[]) node).clone();
+            for (int i = from; i < to; i++) {
+                chunk[indices[i] & (CHUNK_SIZE - 1)] = cells[indices[i]];
+            }
+            return chunk;
+        }
+
+        Object[] branch = ((Object[]) node).clone();
+        int shift = CHUNK_BITS + (level - 1) * BRANCH_BITS;
+        while (from < to) {
+            // Changed cells under the same child are next to each other once sorted
+            int child = (indices[from] >>> shift) & (BRANCH_SIZE - 1);
+            int end = from + 1;
+            while (end < to && ((indices[end] >>> shift) & (BRANCH_SIZE - 1)) == child) {
+                end++;
+            }
+            branch[child] = this.copy(branch[child], level - 1, cells, indices, from, end);
+            from = end;
+        }
+        return branch;
+    }
+
+    /**
+     * Find every cell whose state differs from another snapshot of the same board
+     * Shared chunks are skipped without being looked at
+     *
+     * @param other  The other snapshot
+     * @param action Called with the index of each differing cell
+     */
+    public void forEachDifference(BoardSnapshot other, IntConsumer action) {
+        this.diff(this.root, other.root, this.depth, 0, action);
+    }
+
+    /**
+     * Find the differing cells under a pair of nodes
+     *
+     * @param a      The node from this snapshot
+     * @param b      The node from the other snapshot
+     * @param level  The number of branch levels below and including these nodes
+     * @param offset The index of the first cell under these nodes
+     * @param action Called with the index of each differing cell
+     */
+    private void diff(Object a, Object b, int level, int offset, IntConsumer action) {
+        if (a == b) {
+            return;
+        }
+        if (level == 0) {
+            byte[] left = (byte[]) a, right = (byte[]) b;
+            for (int i = 0; i < CHUNK_SIZE && offset + i < this.size; i++) {
+                if (left[i] != right[i]) {
+                    action.accept(offset + i);
+                }
+            }
+            return;
+        }
+
+        Object[] left = (Object[]) a, right = (Object[]) b;
+        int span = 1 << (CHUNK_BITS + (level - 1) * BRANCH_BITS);
+        for (int i = 0; i < BRANCH_SIZE; i++) {
+            if (left[i] != null) {
+                this.diff(left[i], right[i], level - 1, offset + i * span, action);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package es.dolfi.minesweeper.logic;
+
+/**
+ * An action to apply to a minefield, queued for the logic thread
+ */
+public final class Command {
+    /**
+     * The kinds of command
+     */
+    public enum Type {
+        REVEAL,
+        FLAG,
+        CHORD,
+        REVEAL_MINES,
+        UNDO,
+        REDO,
+        WIN,
+        LOSE
+    }
+
+    private final Type type;
+    private final int x;
+    private final int y;
+
+    /**
+     * Create a new command
+     *
+     * @param type The kind of command
+     * @param x    The column it applies to
+     * @param y    The row it applies to
+     */
+    public Command(Type type, int x, int y) {
+        this.type = type;
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Create a command that doesn't apply to a cell
+     *
+     * @param type The kind of command
+     */
+    public Command(Type type) {
+        this(type, -1, -1);
+    }
+
+    /**
+     * Get the kind of command
+     *
+     * @return The kind of command
+     */
+    public Type getType() {
+        return this.type;
+    }
+
+    /**
+     * Get the column the command applies to
+     *
+     * @return The column, or -1
+     */
+    public int getX() {
+        return this.x;
+    }
+
+    /**
+     * Get the row the command applies to
+     *
+     * @return The row, or -1
+     */
+    public int getY() {
+        return this.y;
+    }
+
+    @Override
+    public String toString() {
+        return this.x < 0 ? this.type.toString() : String.format("%s (%d, %d)", this.type, this.x, this.y);
+    }
+}
@@ -0,0 +1,354 @@
+package es.dolfi.minesweeper.logic;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+import es.dolfi.minesweeper.enums.GameState;
+
+/**
+ * A minefield several players can reveal and flag on at once, from their own threads
+ * Every cell changes with a compare-and-set on its state, so there are no locks to wait on,
+ * and each cell is revealed by exactly one player even when their floods overlap
+ */
+public class ConcurrentMinefield {
+    private final int width;
+    private final int height;
+    private final int mines;
+    private final long seed;
+    private final AtomicIntegerArray cells;
+    private int[] mineOrder;
+    private volatile boolean generated = false;
+
+    // Safe cells still hidden, whoever takes this to zero wins the game for everyone
+    private final AtomicInteger hidden;
+    private final AtomicInteger flagCount = new AtomicInteger();
+    private final AtomicReference<GameState> outcome = new AtomicReference<>();
+    private final IntConsumer listener;
+
+    /**
+     * Create a new, empty minefield
+     *
+     * @param width    The number of columns
+     * @param height   The number of rows
+     * @param mines    The number of mines
+     * @param seed     The seed to place the mines with, on the first reveal
+     * @param listener Called with the index of each cell that changes, on the thread that changed it, or null
+     */
+    public ConcurrentMinefield(int width, int height, int mines, long seed, IntConsumer listener) {
+        if (width <= 0 || height <= 0 || mines < 0 || mines >= (long) width * height) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid minefield %dx%d with %d mines", width, height, mines));
+        }
+        this.width = width;
+        this.height = height;
+        this.mines = mines;
+        this.seed = seed;
+        this.cells = new AtomicIntegerArray(width * height);
+        this.hidden = new AtomicInteger(width * height - mines);
+        this.listener = listener;
+    }
+
+    /**
+     * Get the number of columns
+     *
+     * @return The number of columns
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Get the number of rows
+     *
+     * @return The number of rows
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Get the number of mines
+     *
+     * @return The number of mines
+     */
+    public int getMines() {
+        return this.mines;
+    }
+
+    /**
+     * Get the seed the mines are placed with
+     *
+     * @return The seed
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Check if the mines have been placed yet
+     *
+     * @return Whether the mines have been placed
+     */
+    public boolean isGenerated() {
+        return this.generated;
+    }
+
+    /**
+     * Get the mines in the order they were placed
+     *
+     * @return The indices of the mines, or null before the first reveal
+     */
+    public int[] getMineOrder() {
+        return this.generated ? this.mineOrder.clone() : null;
+    }
+
+    /**
+     * Get the index of a cell
+     *
+     * @param x The column of the cell
+     * @param y The row of the cell
+     * @return The index of the cell
+     */
+    public int index(int x, int y) {
+        return y * this.width + x;
+    }
+
+    /**
+     * Check if a cell is on the board
+     *
+     * @param x The column of the cell
+     * @param y The row of the cell
+     * @return Whether the cell exists
+     */
+    public boolean contains(int x, int y) {
+        return x >= 0 && y >= 0 && x < this.width && y < this.height;
+    }
+
+    /**
+     * Get the state of a cell
+     *
+     * @param index The index of the cell
+     * @return The state bits of the cell, the same as a minefield's
+     */
+    public int getState(int index) {
+        return this.cells.get(index);
+    }
+
+    /**
+     * Place the mines around the first cell revealed, only the first caller gets to
+     * Uses the same placement as a minefield, so a seed gives the same board either way
+     *
+     * @param safeX The column to keep clear
+     * @param safeY The row to keep clear
+     */
+    private void generate(int safeX, int safeY) {
+        if (this.generated) {
+            return;
+        }
+        synchronized (this) {
+            if (this.generated) {
+                return;
+            }
+            Minefield field = new Minefield(this.width, this.height, this.mines);
+            field.generate(this.seed, safeX, safeY);
+            for (int i = 0; i < this.cells.length(); i++) {
+                this.cells.lazySet(i, field.getState(i));
+            }
+            this.mineOrder = field.getMineOrder();
+            // The volatile write publishes every cell written above
+            this.generated = true;
+        }
+    }
+
+    /**
+     * Reveal a cell, flooding out from it if it has no surrounding mines
+     *
+     * @param x The column of the cell
+     * @param y The row of the cell
+     * @return Whether this call revealed the cell
+     */
+    public boolean reveal(int x, int y) {
+        if (this.outcome.get() != null || !this.contains(x, y)) {
+            return false;
+        }
+        this.generate(x, y);
+
+        int index = this.index(x, y);
+        int state = this.uncover(index);
+        if (state < 0) {
+            return false;
+        }
+        if ((state & Minefield.MINE) != 0) {
+            this.outcome.compareAndSet(null, GameState.LOST);
+            return true;
+        }
+
+        int revealed = 1 + ((state & Minefield.COUNT) == 0 ? this.flood(index) : 0);
+        if (this.hidden.addAndGet(-revealed) == 0) {
+            this.outcome.compareAndSet(null, GameState.WON);
+        }
+        return true;
+    }
+
+    /**
+     * Reveal a hidden, unflagged cell, unless another player gets there first
+     *
+     * @param index The index of the cell
+     * @return The state the cell had, or -1 if it couldn't be revealed
+     */
+    private int uncover(int index) {
+        while (true) {
+            int state = this.cells.get(index);
+            if ((state & (Minefield.REVEALED | Minefield.FLAGGED)) != 0) {
+                return -1;
+            }
+            if (this.cells.compareAndSet(index, state, state | Minefield.REVEALED)) {
+                if (this.listener != null) {
+                    this.listener.accept(index);
+                }
+                return state;
+            }
+        }
+    }
+
+    /**
+     * Reveal every cell reachable from a revealed cell with no surrounding mines
+     * Only cells this call revealed itself are flooded from, so overlapping floods split the work
+     *
+     * @param start The index of the cell to start from
+     * @return The number of cells revealed, not counting the start
+     */
+    private int flood(int start) {
+        int[] stack = new int[64];
+        int size = 0, revealed = 0;
+        stack[size++] = start;
+
+        while (size > 0) {
+            int index = stack[--size];
+            int x = index % this.width, y = index / this.width;
+            for (int j = Math.max(0, y - 1); j <= Math.min(this.height - 1, y + 1); j++) {
+                for (int i = Math.max(0, x - 1); i <= Math.min(this.width - 1, x + 1); i++) {
+                    int neighbor = this.index(i, j);
+                    // Cells next to an empty cell are never mines
+                    int state = this.uncover(neighbor);
+                    if (state < 0) {
+                        continue;
+                    }
+                    revealed++;
+                    if ((state & Minefield.COUNT) == 0) {
+                        if (size == stack.length) {
+                            stack = Arrays.copyOf(stack, size * 2);
+                        }
+                        stack[size++] = neighbor;
+                    }
+                }
+            }
+        }
+        return revealed;
+    }
+
+    /**
+     * Flag or unflag a hidden cell
+     *
+     * @param x The column of the cell
+     * @param y The row of the cell
+     * @return Whether this call changed the cell
+     */
+    public boolean flag(int x, int y) {
+        if (this.outcome.get() != null || !this.generated || !this.contains(x, y)) {
+            return false;
+        }
+
+        int index = this.index(x, y);
+        while (true) {
+            int state = this.cells.get(index);
+            if ((state & Minefield.REVEALED) != 0) {
+                return false;
+            }
+            if (this.cells.compareAndSet(index, state, state ^ Minefield.FLAGGED)) {
+                this.flagCount.addAndGet((state & Minefield.FLAGGED) == 0 ? 1 : -1);
+                if (this.listener != null) {
+                    this.listener.accept(index);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reveal the hidden neighbors of a revealed cell, if its mine count is satisfied by flags
+     *
+     * @param x The column of the cell
+     * @param y The row of the cell
+     * @return Whether this call revealed anything
+     */
+    public boolean chord(int x, int y) {
+        if (this.outcome.get() != null || !this.contains(x, y)) {
+            return false;
+        }
+        int state = this.cells.get(this.index(x, y));
+        if ((state & Minefield.REVEALED) == 0) {
+            return false;
+        }
+
+        int flagged = 0;
+        for (int j = Math.max(0, y - 1); j <= Math.min(this.height - 1, y + 1); j++) {
+            for (int i = Math.max(0, x - 1); i <= Math.min(this.width - 1, x + 1); i++) {
+                if ((this.cells.get(this.index(i, j)) & Minefield.FLAGGED) != 0) {
+                    flagged++;
+                }
+            }
+        }
+        if (flagged != (state & Minefield.COUNT)) {
+            return false;
+        }
+
+        boolean revealed = false;
+        for (int j = Math.max(0, y - 1); j <= Math.min(this.height - 1, y + 1); j++) {
+            for (int i = Math.max(0, x - 1); i <= Math.min(this.width - 1, x + 1); i++) {
+                revealed |= this.reveal(i, j);
+            }
+        }
+        return revealed;
+    }
+
+    /**
+     * End the game, unless a move already has or no mines have been placed yet
+     *
+     * @param outcome How the game ended
+     * @return Whether this call ended it
+     */
+    public boolean end(GameState outcome) {
+        return this.generated && this.outcome.compareAndSet(null, outcome);
+    }
+
+    /**
+     * Get the number of flags placed
+     *
+     * @return The number of flags placed
+     */
+    public int getFlagCount() {
+        return this.flagCount.get();
+    }
+
+    /**
+     * Get the number of safe cells revealed
+     *
+     * @return The number of cells revealed
+     */
+    public int getRevealedCount() {
+        return this.width * this.height - this.mines - this.hidden.get();
+    }
+
+    /**
+     * Get how the game ended, decided once by whichever move ended it
+     *
+     * @return The outcome, or null while the game is still going
+     */
+    public GameState getOutcome() {
+        return this.outcome.get();
+    }
+}
@@ -0,0 +1,240 @@
+package es.dolfi.minesweeper.logic;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import es.dolfi.minesweeper.enums.GameState;
+
+/**
+ * A game several players play together on one board, each through a session of their own
+ * Every player's commands run on that player's thread straight against the shared board, so moves by
+ * different players never wait on each other, and every player gets the delta of every move
+ */
+public class CoopGame {
+    // Commands past this many make the player wait, the same as the logic thread's queue
+    private static final int QUEUE_SIZE = 256;
+    private static final String[] SWEEPS = { "sweep1", "sweep2", "sweep3", "sweep4" };
+
+    private final ConcurrentMinefield field;
+    private final List<Player> players = new CopyOnWriteArrayList<>();
+    // The player whose command is running on this thread, so changes are put down to the right move
+    private final ThreadLocal<Player> current = new ThreadLocal<>();
+    // Deltas go out one at a time, so every player sees the moves in the same order
+    private final Object publishing = new Object();
+    private boolean announced = false;
+    private int next = 0;
+
+    /**
+     * Create a new game, with nobody playing yet
+     *
+     * @param width  The number of columns
+     * @param height The number of rows
+     * @param mines  The number of mines
+     * @param seed   The seed to place the mines with
+     * @throws IllegalArgumentException If the board is invalid
+     */
+    public CoopGame(int width, int height, int mines, long seed) {
+        this.field = new ConcurrentMinefield(width, height, mines, seed, this::changed);
+    }
+
+    /**
+     * Get the shared board
+     *
+     * @return The minefield
+     */
+    public ConcurrentMinefield getField() {
+        return this.field;
+    }
+
+    /**
+     * Add a player to the game
+     *
+     * @param listener Called with the delta of every player's moves, one at a time, on the thread of the player
+     *                 who made it
+     * @return The player's session
+     */
+    public GameSession join(Consumer<BoardDelta> listener) {
+        Player player;
+        synchronized (this.players) {
+            player = new Player(this.next++, listener);
+            this.players.add(player);
+        }
+        player.start();
+        return player;
+    }
+
+    /**
+     * Record a cell changed by a move, on the thread of the player who made it
+     *
+     * @param index The index of the cell
+     */
+    private void changed(int index) {
+        Player player = this.current.get();
+        if (player != null) {
+            player.record(index);
+        }
+    }
+
+    /**
+     * Apply a command to the shared board
+     *
+     * @param command The command
+     * @param random  Picks between sounds
+     * @return The sound to play, or null for none
+     */
+    private String apply(Command command, Random random) {
+        int x = command.getX(), y = command.getY();
+        switch (command.getType()) {
+            case REVEAL:
+                return this.field.reveal(x, y) ? "click" : null;
+            case FLAG:
+                int before = this.field.getFlagCount();
+                if (!this.field.flag(x, y)) {
+                    return null;
+                }
+                return this.field.getFlagCount() > before ? "flag" : "unflag";
+            case CHORD:
+                return this.field.chord(x, y) ? SWEEPS[random.nextInt(SWEEPS.length)] : null;
+            case WIN:
+                this.field.end(GameState.WON);
+                return null;
+            case LOSE:
+                this.field.end(GameState.LOST);
+                return null;
+            default:
+                // A shared board keeps no history, one player can't take back another's move
+                return null;
+        }
+    }
+
+    /**
+     * Publish the cells one move changed to every player
+     *
+     * @param mover   The player who made the move
+     * @param changed The indices of the cells it changed
+     * @param sound   The sound for the player who made it, or null for none
+     */
+    private void publish(Player mover, int[] changed, String sound) {
+        synchronized (this.publishing) {
+            GameState outcome = this.field.getOutcome();
+            if (changed.length == 0 && (outcome == null || this.announced)) {
+                return;
+            }
+
+            // States are read now rather than when they changed, so a later delta never has an older state
+            byte[] states = new byte[changed.length];
+            for (int i = 0; i < changed.length; i++) {
+                int state = this.field.getState(changed[i]);
+                // While the game is going hidden cells only go out as flagged or not, the same as a minefield's deltas
+                states[i] = (byte) (outcome == null && (state & Minefield.REVEALED) == 0 ? state & Minefield.FLAGGED
+                        : state);
+            }
+            int[] mines = null;
+            if (outcome != null && !this.announced) {
+                mines = this.field.getMineOrder();
+                this.announced = true;
+            }
+
+            BoardDelta delta = new BoardDelta(changed, states, this.field.getFlagCount(),
+                    this.field.getRevealedCount(), outcome, mines, null);
+            for (Player player : this.players) {
+                player.listener.accept(player == mover && sound != null ? new BoardDelta(changed, states,
+                        delta.getFlagCount(), delta.getRevealedCount(), outcome, mines, sound) : delta);
+            }
+        }
+    }
+
+    /**
+     * One player's session, running their commands in order on their own thread
+     */
+    private class Player implements GameSession {
+        private final Consumer<BoardDelta> listener;
+        private final BlockingQueue<Command> commands = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        private final Random random = new Random();
+        private final Thread thread;
+        private volatile boolean closed = false;
+
+        // The cells changed by the command running now, only touched on the player's thread
+        private int[] changed = new int[64];
+        private int changedCount = 0;
+
+        /**
+         * Create a new player
+         *
+         * @param number   The player's number, for their thread's name
+         * @param listener Called with the delta of every move
+         */
+        Player(int number, Consumer<BoardDelta> listener) {
+            this.listener = listener;
+            this.thread = new Thread(this::run, "CoopPlayer-" + number);
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Start handling commands
+         */
+        void start() {
+            this.thread.start();
+        }
+
+        @Override
+        public long getSeed() {
+            return field.getSeed();
+        }
+
+        @Override
+        public boolean submit(Command command) {
+            if (this.closed) {
+                return false;
+            }
+            try {
+                this.commands.put(command);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+            players.remove(this);
+            this.thread.interrupt();
+        }
+
+        /**
+         * Record a cell changed by the running command
+         *
+         * @param index The index of the cell
+         */
+        void record(int index) {
+            if (this.changedCount == this.changed.length) {
+                this.changed = Arrays.copyOf(this.changed, this.changedCount * 2);
+            }
+            this.changed[this.changedCount++] = index;
+        }
+
+        /**
+         * Apply each command in order, until the player leaves
+         */
+        private void run() {
+            current.set(this);
+            try {
+                while (!this.closed) {
+                    Command command = this.commands.take();
+                    this.changedCount = 0;
+                    String sound = apply(command, this.random);
+                    publish(this, Arrays.copyOf(this.changed, this.changedCount), sound);
+                }
+            } catch (InterruptedException e) {
+                // Left while waiting for a command
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package es.dolfi.minesweeper.logic;
+
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+import es.dolfi.minesweeper.enums.GameState;
+import es.dolfi.minesweeper.metrics.Counter;
+import es.dolfi.minesweeper.metrics.Histogram;
+import es.dolfi.minesweeper.metrics.Metrics;
+
+/**
+ * Runs a game's rules on the logic thread, so a heavy reveal never blocks input or painting
+ * Commands are queued and applied in order, and each one publishes the cells it changed as a delta
+ * A full queue makes the caller wait for room, a command is only ever dropped once its game is closed
+ */
+public class GameLogic implements GameSession {
+    // Commands past this many make the caller wait, input can't usefully get that far ahead
+    private static final int QUEUE_SIZE = 256;
+    private static final String[] SWEEPS = { "sweep1", "sweep2", "sweep3", "sweep4" };
+    private static final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private static final Counter commands = Metrics.counter("logic.commands");
+    private static final Counter dropped = Metrics.counter("logic.dropped");
+    private static final Histogram deltas = Metrics.histogram("logic.delta", " cells");
+
+    static {
+        start();
+    }
+
+    private final Minefield field;
+    private final long seed;
+    private final Consumer<BoardDelta> listener;
+    private final Random random;
+    private volatile boolean closed = false;
+
+    /**
+     * Create the logic for a new game
+     *
+     * @param field    The minefield to play on
+     * @param seed     The seed to place the mines with
+     * @param listener Called on the logic thread with each delta
+     */
+    public GameLogic(Minefield field, long seed, Consumer<BoardDelta> listener) {
+        this.field = field;
+        this.seed = seed;
+        this.listener = listener;
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Start the logic thread, which every game shares
+     */
+    private static void start() {
+        Thread thread = new Thread(() -> {
+            while (true) {
+                try {
+                    queue.take().run();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    // One broken command mustn't stop every later game
+                    e.printStackTrace();
+                }
+            }
+        }, "GameLogic");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue a command, waiting for room if the logic thread is that far behind
+     *
+     * @param command The command
+     * @return Whether the command was queued, false only if the game is closed or the caller was interrupted
+     */
+    @Override
+    public boolean submit(Command command) {
+        if (!this.closed) {
+            try {
+                queue.put(() -> this.process(command));
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        System.out.println("[LOGIC] Dropped " + command);
+        dropped.increment();
+        return false;
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+    }
+
+    /**
+     * Apply a command to the minefield and publish what it changed
+     *
+     * @param command The command
+     */
+    private void process(Command command) {
+        if (this.closed) {
+            return;
+        }
+
+        boolean generated = this.field.isGenerated();
+        String sound = apply(this.field, command.getType(), command.getX(), command.getY(), this.seed, this.random);
+        if (!generated && this.field.isGenerated()) {
+            System.out.printf("[LOGIC] Placed %d mines, seed %d%n", this.field.getMines(), this.seed);
+        }
+
+        commands.increment();
+        BoardDelta delta = this.field.drainChanges(sound);
+        if (delta != null) {
+            deltas.record(delta.size());
+            this.listener.accept(delta);
+        }
+    }
+
+    /**
+     * Apply a command to a minefield, recording it in the minefield's history
+     * The changes are left for the caller to drain
+     *
+     * @param field  The minefield
+     * @param type   The kind of command
+     * @param x      The column it applies to
+     * @param y      The row it applies to
+     * @param seed   The seed to place the mines with, if this is the first reveal
+     * @param random Picks between sounds
+     * @return The sound to play, or null for none
+     */
+    public static String apply(Minefield field, Command.Type type, int x, int y, long seed, Random random) {
+        String sound = null;
+        switch (type) {
+            case REVEAL:
+                // The first reveal places the mines around it
+                if (!field.isGenerated()) {
+                    field.generate(seed, x, y);
+                }
+                if (field.reveal(x, y)) {
+                    sound = "click";
+                }
+                break;
+            case FLAG:
+                int before = field.getFlagCount();
+                boolean flagged = field.flag(x, y);
+                if (field.getFlagCount() != before) {
+                    sound = flagged ? "flag" : "unflag";
+                }
+                break;
+            case CHORD:
+                if (field.chord(x, y)) {
+                    sound = SWEEPS[random.nextInt(SWEEPS.length)];
+                }
+                break;
+            case REVEAL_MINES:
+                field.revealMines();
+                break;
+            case UNDO:
+                field.undo();
+                break;
+            case REDO:
+                field.redo();
+                break;
+            case WIN:
+                field.end(GameState.WON);
+                break;
+            case LOSE:
+                field.end(GameState.LOST);
+                break;
+        }
+
+        // Undoing and redoing move through the history, everything else adds to it
+        if (type != Command.Type.UNDO && type != Command.Type.REDO) {
+            field.checkpoint();
+        }
+        return sound;
+    }
+}
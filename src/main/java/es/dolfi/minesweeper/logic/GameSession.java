@@ -0,0 +1,27 @@
+package es.dolfi.minesweeper.logic;
+
+/**
+ * A game being played, with its rules applied somewhere other than the EDT
+ * Changes come back as deltas, through the listener the session was created with
+ */
+public interface GameSession {
+    /**
+     * Get the seed the mines are placed with
+     *
+     * @return The seed
+     */
+    long getSeed();
+
+    /**
+     * Queue a command to be applied to the game
+     *
+     * @param command The command
+     * @return Whether the command was queued, a command that isn't was dropped and never applies
+     */
+    boolean submit(Command command);
+
+    /**
+     * Stop handling commands, anything still queued is ignored
+     */
+    void close();
+}
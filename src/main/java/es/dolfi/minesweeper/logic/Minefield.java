@@ -0,0 +1,885 @@
+package es.dolfi.minesweeper.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+import es.dolfi.minesweeper.enums.GameState;
+import es.dolfi.minesweeper.metrics.Probe;
+
+/**
+ * The rules of a single game, independent of any screen
+ * Cells are stored as one state byte each, in row-major order inside a border of revealed sentinel cells,
+ * so every cell has eight neighbors at fixed offsets and neighbor loops never check bounds
+ * Indices given out stay row-major without the border, they're only converted going in and out
+ * Not thread-safe, a minefield belongs to whichever thread runs the game's logic
+ */
+public class Minefield {
+    // Cell state bits, the low bits hold the surrounding mine count
+    public static final int COUNT = 0x0F;
+    public static final int MINE = 0x10;
+    public static final int REVEALED = 0x20;
+    public static final int FLAGGED = 0x40;
+    // Marks the sentinels around the board, which are also revealed so nothing ever floods or chords into them
+    private static final int BORDER = 0x80;
+    // Boards with at least this many cells place and count their mines in parallel
+    private static final long PARALLEL_CELLS = 1 << 22;
+    // Roughly how many cells make up a stripe, fixed so the board a seed gives doesn't depend on the cores
+    private static final int STRIPE_CELLS = 1 << 16;
+    private static final ForkJoinPool generators = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+            pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("MinefieldGenerator-" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+
+    private final int width;
+    private final int height;
+    private final int mines;
+    // The cells, padded by one on every side
+    private final int stride;
+    private final byte[] cells;
+    // The offsets to a cell's eight neighbors, in row-major order
+    private final int[] neighbors;
+    private int[] mineOrder = new int[0];
+    private boolean generated = false;
+    private long seed;
+
+    private int flagCount = 0;
+    private int revealedCount = 0;
+    private GameState outcome;
+    private boolean outcomePublished = false;
+
+    // Every move since the mines were placed, sharing the chunks they didn't touch
+    private final ArrayList<BoardSnapshot> history = new ArrayList<>();
+    private int historyPosition = -1;
+    private int checkpointed = 0;
+    private int historyLimit = Integer.MAX_VALUE;
+
+    // Reused between commands so flood fills don't allocate, boards up to this many cells never grow them
+    private static final int JOURNAL_SIZE = 4096;
+    private int[] stack;
+    private int[] changed;
+    private int changedCount = 0;
+
+    /**
+     * Create a new, empty minefield
+     *
+     * @param width  The number of columns
+     * @param height The number of rows
+     * @param mines  The number of mines
+     */
+    public Minefield(int width, int height, int mines) {
+        if (width <= 0 || height <= 0 || mines < 0 || mines >= (long) width * height) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid minefield %dx%d with %d mines", width, height, mines));
+        }
+        this.width = width;
+        this.height = height;
+        this.mines = mines;
+        this.stride = width + 2;
+        this.cells = pad(width, height);
+        this.neighbors = neighborOffsets(this.stride);
+        this.stack = new int[Math.min(width * height, JOURNAL_SIZE)];
+        this.changed = new int[this.stack.length];
+    }
+
+    /**
+     * Get the number of columns
+     *
+     * @return The number of columns
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Get the number of rows
+     *
+     * @return The number of rows
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Get the number of mines
+     *
+     * @return The number of mines
+     */
+    public int getMines() {
+        return this.mines;
+    }
+
+    /**
+     * Get the index of a cell
+     *
+     * @param x The column of the cell
+     * @param y The row of the cell
+     * @return The index of the cell
+     */
+    public int index(int x, int y) {
+        return y * this.width + x;
+    }
+
+    /**
+     * Get where a cell is stored, inside the border
+     *
+     * @param x The column of the cell
+     * @param y The row of the cell
+     * @return The position of the cell in the padded cells
+     */
+    private int cell(int x, int y) {
+        return (y + 1) * this.stride + x + 1;
+    }
+
+    /**
+     * Get where a cell is stored from its index
+     *
+     * @param index The index of the cell
+     * @return The position of the cell in the padded cells
+     */
+    private int toCell(int index) {
+        return index + this.stride + 1 + 2 * (index / this.width);
+    }
+
+    /**
+     * Get the index of a stored cell
+     *
+     * @param cell The position of the cell in the padded cells
+     * @return The index of the cell
+     */
+    private int toIndex(int cell) {
+        return cell - this.stride - 1 - 2 * (cell / this.stride - 1);
+    }
+
+    /**
+     * Create the cells of an empty board, with the border in place
+     *
+     * @param width  The number of columns
+     * @param height The number of rows
+     * @return The padded cells
+     */
+    private static byte[] pad(int width, int height) {
+        int stride = width + 2;
+        byte[] cells = new byte[stride * (height + 2)];
+        byte border = (byte) (BORDER | REVEALED);
+        Arrays.fill(cells, 0, stride, border);
+        Arrays.fill(cells, cells.length - stride, cells.length, border);
+        for (int y = 1; y <= height; y++) {
+            cells[y * stride] = border;
+            cells[y * stride + stride - 1] = border;
+        }
+        return cells;
+    }
+
+    /**
+     * Get the offsets to a cell's eight neighbors
+     *
+     * @param stride The length of a padded row
+     * @return The offsets, in row-major order
+     */
+    private static int[] neighborOffsets(int stride) {
+        return new int[] { -stride - 1, -stride, -stride + 1, -1, 1, stride - 1, stride, stride + 1 };
+    }
+
+    /**
+     * Check if a cell is on the board
+     *
+     * @param x The column of the cell
+     * @param y The row of the cell
+     * @return Whether the cell exists
+     */
+    public boolean contains(int x, int y) {
+        return x >= 0 && y >= 0 && x < this.width && y < this.height;
+    }
+
+    /**
+     * Get the state of a cell
+     *
+     * @param index The index of the cell
+     * @return The state bits of the cell
+     */
+    public int getState(int index) {
+        return this.cells[this.toCell(index)];
+    }
+
+    /**
+     * Get whether the mines have been placed
+     *
+     * @return Whether the mines have been placed
+     */
+    public boolean isGenerated() {
+        return this.generated;
+    }
+
+    /**
+     * Get the seed the mines were placed with
+     *
+     * @return The seed
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Place the mines, keeping a cell and its neighbors clear
+     * The same seed and safe cell always give the same board, very large boards are placed in parallel
+     *
+     * @param seed  The seed to place the mines with
+     * @param safeX The column to keep clear, or -1 for none
+     * @param safeY The row to keep clear, or -1 for none
+     */
+    public void generate(long seed, int safeX, int safeY) {
+        if (this.generated) {
+            return;
+        }
+
+        long start = Probe.GENERATE.start();
+        // Only keep the neighbors clear if there is room for every mine elsewhere
+        int clear = safeX < 0 ? 0 : 9;
+        boolean keepClear = this.mines <= this.width * this.height - clear;
+        this.mineOrder = new int[this.mines];
+        if ((long) this.width * this.height >= PARALLEL_CELLS) {
+            this.generateParallel(seed, keepClear ? safeX : -1, safeY);
+        } else {
+            this.generateSequential(seed, keepClear ? safeX : -1, safeY);
+        }
+
+        this.seed = seed;
+        this.generated = true;
+        this.history.add(BoardSnapshot.of(this.cells, 0, 0));
+        this.historyPosition = 0;
+        Probe.GENERATE.end(start, this.mines);
+    }
+
+    /**
+     * Place the mines one after another from a single generator, then count them into their neighbors
+     *
+     * @param seed  The seed to place the mines with
+     * @param safeX The column to keep clear, or -1 for none
+     * @param safeY The row to keep clear
+     */
+    private void generateSequential(long seed, int safeX, int safeY) {
+        Random random = new Random(seed);
+        int placed = 0;
+        while (placed < this.mines) {
+            int x = random.nextInt(this.width);
+            int y = random.nextInt(this.height);
+            int cell = this.cell(x, y);
+            if ((this.cells[cell] & MINE) != 0) {
+                continue;
+            }
+            if (safeX >= 0 && Math.abs(x - safeX) <= 1 && Math.abs(y - safeY) <= 1) {
+                continue;
+            }
+            this.cells[cell] |= MINE;
+            this.mineOrder[placed++] = this.index(x, y);
+        }
+
+        // Count every mine into its neighbors once, rather than every cell counting its neighbors
+        // A mine counts itself too, and the border's counts are never read
+        for (int i = 0; i < this.mines; i++) {
+            int cell = this.toCell(this.mineOrder[i]);
+            this.cells[cell]++;
+            for (int offset : this.neighbors) {
+                this.cells[cell + offset]++;
+            }
+        }
+    }
+
+    /**
+     * Place the mines a stripe of rows at a time in parallel, then count them a stripe at a time
+     * The mines are shared out between the stripes up front, and each stripe gets a generator split off the
+     * seed's in order, so the board only depends on the seed
+     * Counting reads the rows either side of a stripe but only writes its own, so stripes never race
+     * The mine order is shuffled with the seed's generator afterwards, so it's as random as placing one by one
+     *
+     * @param seed  The seed to place the mines with
+     * @param safeX The column to keep clear, or -1 for none
+     * @param safeY The row to keep clear
+     */
+    private void generateParallel(long seed, int safeX, int safeY) {
+        int stripeRows = Math.max(1, STRIPE_CELLS / this.width);
+        int stripes = (this.height + stripeRows - 1) / stripeRows;
+
+        // Every stripe gets its share of the mines by how many cells it has free, the seed places the rest
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] free = new long[stripes];
+        long total = 0;
+        for (int i = 0; i < stripes; i++) {
+            int top = i * stripeRows, bottom = Math.min(this.height, top + stripeRows);
+            free[i] = (long) (bottom - top) * this.width - safeCells(top, bottom, safeX, safeY, this.width);
+            total += free[i];
+        }
+        int[] counts = new int[stripes];
+        int shared = 0;
+        for (int i = 0; i < stripes; i++) {
+            counts[i] = (int) (this.mines * free[i] / total);
+            shared += counts[i];
+        }
+        while (shared < this.mines) {
+            long pick = random.nextLong(total);
+            int stripe = 0;
+            while (pick >= free[stripe]) {
+                pick -= free[stripe++];
+            }
+            if (counts[stripe] < free[stripe]) {
+                counts[stripe]++;
+                shared++;
+            }
+        }
+
+        int[] firsts = new int[stripes];
+        SplittableRandom[] randoms = new SplittableRandom[stripes];
+        for (int i = 0; i < stripes; i++) {
+            firsts[i] = i == 0 ? 0 : firsts[i - 1] + counts[i - 1];
+            randoms[i] = random.split();
+        }
+
+        forEachStripe(stripes, i -> this.placeStripe(i * stripeRows, Math.min(this.height, (i + 1) * stripeRows),
+                counts[i], randoms[i], firsts[i], safeX, safeY));
+        // Stripes fill the mine order top to bottom, shuffled the game over animation goes off all over the board
+        for (int i = this.mines - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1), mine = this.mineOrder[i];
+            this.mineOrder[i] = this.mineOrder[j];
+            this.mineOrder[j] = mine;
+        }
+        forEachStripe(stripes, i -> this.countStripe(i * stripeRows, Math.min(this.height, (i + 1) * stripeRows)));
+    }
+
+    /**
+     * Count the cells kept clear within some rows
+     *
+     * @param top    The first row
+     * @param bottom The row after the last
+     * @param safeX  The column kept clear, or -1 for none
+     * @param safeY  The row kept clear
+     * @param width  The number of columns
+     * @return The number of cells kept clear
+     */
+    private static int safeCells(int top, int bottom, int safeX, int safeY, int width) {
+        if (safeX < 0) {
+            return 0;
+        }
+        int rows = Math.max(0, Math.min(bottom, safeY + 2) - Math.max(top, safeY - 1));
+        int columns = Math.min(width, safeX + 2) - Math.max(0, safeX - 1);
+        return rows * columns;
+    }
+
+    /**
+     * Place a stripe's share of the mines
+     *
+     * @param top    The first row of the stripe
+     * @param bottom The row after the last
+     * @param count  The number of mines to place
+     * @param random The stripe's own generator
+     * @param first  Where the stripe's mines go in the mine order
+     * @param safeX  The column to keep clear, or -1 for none
+     * @param safeY  The row to keep clear
+     */
+    private void placeStripe(int top, int bottom, int count, SplittableRandom random, int first, int safeX,
+            int safeY) {
+        int placed = 0;
+        while (placed < count) {
+            int x = random.nextInt(this.width);
+            int y = top + random.nextInt(bottom - top);
+            int cell = this.cell(x, y);
+            if ((this.cells[cell] & MINE) != 0) {
+                continue;
+            }
+            if (safeX >= 0 && Math.abs(x - safeX) <= 1 && Math.abs(y - safeY) <= 1) {
+                continue;
+            }
+            this.cells[cell] |= MINE;
+            this.mineOrder[first + placed++] = this.index(x, y);
+        }
+    }
+
+    /**
+     * Count the mines around every cell in a stripe, including the cell itself as placing them one by one does
+     * The rows either side are only read, and the border holds no mines
+     *
+     * @param top    The first row of the stripe
+     * @param bottom The row after the last
+     */
+    private void countStripe(int top, int bottom) {
+        for (int y = top; y < bottom; y++) {
+            for (int cell = this.cell(0, y), end = cell + this.width; cell < end; cell++) {
+                int count = this.cells[cell] & MINE;
+                for (int offset : this.neighbors) {
+                    count += this.cells[cell + offset] & MINE;
+                }
+                this.cells[cell] |= (byte) (count / MINE);
+            }
+        }
+    }
+
+    /**
+     * Run an action for every stripe on the generator pool, returning once they've all finished
+     *
+     * @param stripes The number of stripes
+     * @param action  The action, given the stripe
+     */
+    private static void forEachStripe(int stripes, IntConsumer action) {
+        generators.invoke(new StripeTask(0, stripes, action));
+    }
+
+    /**
+     * Get the mines in the order they were placed
+     *
+     * @return The indices of the mines
+     */
+    public int[] getMineOrder() {
+        return this.mineOrder.clone();
+    }
+
+    /**
+     * Count a board's 3BV, the fewest clicks it can be cleared in without flagging
+     * Every opening takes one click, as does every numbered cell no opening reveals
+     *
+     * @param width  The number of columns
+     * @param height The number of rows
+     * @param mines  The indices of the mines
+     * @return The 3BV
+     */
+    public static int countThreeBV(int width, int height, int[] mines) {
+        int stride = width + 2;
+        byte[] cells = pad(width, height);
+        int[] neighbors = neighborOffsets(stride);
+        for (int mine : mines) {
+            int cell = mine + stride + 1 + 2 * (mine / width);
+            cells[cell] |= MINE;
+            for (int offset : neighbors) {
+                cells[cell + offset]++;
+            }
+        }
+
+        // Mark every opening along with the numbers around it, one click each
+        // The border is already revealed, so it's never counted or flooded into
+        int threeBV = 0;
+        int[] stack = new int[64];
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] != 0) {
+                continue;
+            }
+            threeBV++;
+            int size = 0;
+            cells[i] |= REVEALED;
+            stack[size++] = i;
+            while (size > 0) {
+                int cell = stack[--size];
+                for (int offset : neighbors) {
+                    int neighbor = cell + offset;
+                    if ((cells[neighbor] & REVEALED) != 0) {
+                        continue;
+                    }
+                    cells[neighbor] |= REVEALED;
+                    if ((cells[neighbor] & COUNT) == 0) {
+                        if (size == stack.length) {
+                            stack = Arrays.copyOf(stack, size * 2);
+                        }
+                        stack[size++] = neighbor;
+                    }
+                }
+            }
+        }
+
+        // Then every number left needs a click of its own
+        for (int i = 0; i < cells.length; i++) {
+            if ((cells[i] & (MINE | REVEALED)) == 0) {
+                threeBV++;
+            }
+        }
+        return threeBV;
+    }
+
+    /**
+     * Reveal a cell, flooding out from it if it has no surrounding mines
+     *
+     * @param x The column of the cell
+     * @param y The row of the cell
+     * @return Whether anything was revealed
+     */
+    public boolean reveal(int x, int y) {
+        return this.contains(x, y) && this.reveal(this.cell(x, y));
+    }
+
+    /**
+     * Reveal a stored cell, flooding out from it if it has no surrounding mines
+     * The border counts as revealed already, so passing a sentinel does nothing
+     *
+     * @param cell The position of the cell in the padded cells
+     * @return Whether anything was revealed
+     */
+    private boolean reveal(int cell) {
+        if (this.outcome != null || (this.cells[cell] & (REVEALED | FLAGGED)) != 0) {
+            return false;
+        }
+        if ((this.cells[cell] & MINE) != 0) {
+            this.setState(cell, this.cells[cell] | REVEALED);
+            this.outcome = GameState.LOST;
+            return true;
+        }
+
+        long start = Probe.FLOOD.start();
+        int revealed = this.revealedCount;
+        this.flood(cell);
+        Probe.FLOOD.end(start, this.revealedCount - revealed);
+        if (this.revealedCount >= this.width * this.height - this.mines) {
+            this.outcome = GameState.WON;
+        }
+        return true;
+    }
+
+    /**
+     * Reveal a safe cell, then every cell reachable through cells with no surrounding mines
+     * Uses an explicit stack, so even a board-wide flood can't overflow the call stack
+     *
+     * @param start The position of the cell to start from
+     */
+    private void flood(int start) {
+        int size = 0;
+        this.uncover(start);
+        this.stack[size++] = start;
+
+        while (size > 0) {
+            int cell = this.stack[--size];
+            if ((this.cells[cell] & COUNT) != 0) {
+                continue;
+            }
+
+            for (int offset : this.neighbors) {
+                int neighbor = cell + offset;
+                if ((this.cells[neighbor] & (REVEALED | FLAGGED | MINE)) != 0) {
+                    continue;
+                }
+                this.uncover(neighbor);
+                if (size == this.stack.length) {
+                    this.stack = Arrays.copyOf(this.stack, size * 2);
+                }
+                this.stack[size++] = neighbor;
+            }
+        }
+    }
+
+    /**
+     * Mark a safe cell as revealed
+     *
+     * @param cell The position of the cell
+     */
+    private void uncover(int cell) {
+        this.setState(cell, this.cells[cell] | REVEALED);
+        this.revealedCount++;
+    }
+
+    /**
+     * Flag or unflag a hidden cell
+     *
+     * @param x The column of the cell
+     * @param y The row of the cell
+     * @return Whether the cell is now flagged
+     */
+    public boolean flag(int x, int y) {
+        if (this.outcome != null || !this.generated || !this.contains(x, y)) {
+            return false;
+        }
+        int cell = this.cell(x, y);
+        int state = this.cells[cell];
+        if ((state & REVEALED) != 0) {
+            return false;
+        }
+
+        boolean flagged = (state & FLAGGED) == 0;
+        this.setState(cell, state ^ FLAGGED);
+        this.flagCount += flagged ? 1 : -1;
+        return flagged;
+    }
+
+    /**
+     * Reveal the hidden neighbors of a revealed cell, if its mine count is satisfied by flags
+     *
+     * @param x The column of the cell
+     * @param y The row of the cell
+     * @return Whether anything was revealed
+     */
+    public boolean chord(int x, int y) {
+        if (this.outcome != null || !this.contains(x, y)) {
+            return false;
+        }
+        int cell = this.cell(x, y);
+        int state = this.cells[cell];
+        if ((state & REVEALED) == 0) {
+            return false;
+        }
+
+        // The border is revealed and never flagged, so it counts as neither
+        int flagged = 0, hidden = 0;
+        for (int offset : this.neighbors) {
+            int neighbor = this.cells[cell + offset];
+            if ((neighbor & FLAGGED) != 0) {
+                flagged++;
+            } else if ((neighbor & REVEALED) == 0) {
+                hidden++;
+            }
+        }
+        if (hidden == 0 || flagged != (state & COUNT)) {
+            return false;
+        }
+
+        long start = Probe.CHORD.start();
+        int revealed = this.revealedCount;
+        for (int offset : this.neighbors) {
+            this.reveal(cell + offset);
+        }
+        Probe.CHORD.end(start, this.revealedCount - revealed);
+        return true;
+    }
+
+    /**
+     * Reveal every mine without ending the game
+     */
+    public void revealMines() {
+        for (int i = 0; i < this.mineOrder.length; i++) {
+            int cell = this.toCell(this.mineOrder[i]);
+            if ((this.cells[cell] & REVEALED) == 0) {
+                this.setState(cell, this.cells[cell] | REVEALED);
+            }
+        }
+    }
+
+    /**
+     * End the game right away, placing the mines first if needed
+     *
+     * @param outcome The outcome, won or lost
+     */
+    public void end(GameState outcome) {
+        if (this.outcome == null) {
+            this.generate(new Random().nextLong(), -1, -1);
+            this.outcome = outcome;
+        }
+    }
+
+    /**
+     * Record the cells changed since the last checkpoint as a move that can be undone
+     * Any moves that were undone can no longer be redone
+     */
+    public void checkpoint() {
+        if (this.historyPosition < 0 || this.changedCount == this.checkpointed) {
+            return;
+        }
+
+        BoardSnapshot current = this.history.get(this.historyPosition);
+        this.history.subList(this.historyPosition + 1, this.history.size()).clear();
+        this.history.add(current.with(this.cells, this.changed, this.changedCount, this.flagCount,
+                this.revealedCount));
+        this.historyPosition++;
+        // The oldest moves go first, the snapshot after them becomes the furthest back an undo can go
+        while (this.history.size() - 1 > this.historyLimit) {
+            this.history.remove(0);
+            this.historyPosition--;
+        }
+        this.checkpointed = this.changedCount;
+    }
+
+    /**
+     * Limit how many moves can be undone, the older ones are forgotten
+     *
+     * @param limit The number of moves to keep
+     * @throws IllegalArgumentException If the limit is negative
+     */
+    public void setHistoryLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("History limit must not be negative");
+        }
+        this.historyLimit = limit;
+    }
+
+    /**
+     * Go back to the board as it was before the last move
+     *
+     * @return Whether there was a move to undo
+     */
+    public boolean undo() {
+        if (!this.canUndo()) {
+            return false;
+        }
+        this.restore(this.historyPosition - 1);
+        return true;
+    }
+
+    /**
+     * Go forward to the board as it was after the last undone move
+     *
+     * @return Whether there was a move to redo
+     */
+    public boolean redo() {
+        if (!this.canRedo()) {
+            return false;
+        }
+        this.restore(this.historyPosition + 1);
+        return true;
+    }
+
+    /**
+     * Check if there is a move to undo
+     * Once the game has ended, it can't be undone
+     *
+     * @return Whether there is a move to undo
+     */
+    public boolean canUndo() {
+        return this.outcome == null && this.historyPosition > 0;
+    }
+
+    /**
+     * Check if there is an undone move to redo
+     *
+     * @return Whether there is a move to redo
+     */
+    public boolean canRedo() {
+        return this.outcome == null && this.historyPosition >= 0
+                && this.historyPosition < this.history.size() - 1;
+    }
+
+    /**
+     * Bring the board to one of the snapshots in its history
+     * Only the cells that differ between the snapshots are touched
+     *
+     * @param position The position in the history
+     */
+    private void restore(int position) {
+        BoardSnapshot current = this.history.get(this.historyPosition);
+        BoardSnapshot target = this.history.get(position);
+        current.forEachDifference(target, index -> this.setState(index, target.get(index)));
+        this.flagCount = target.getFlagCount();
+        this.revealedCount = target.getRevealedCount();
+        this.historyPosition = position;
+        this.checkpointed = this.changedCount;
+    }
+
+    /**
+     * Get the number of flags placed
+     *
+     * @return The number of flags placed
+     */
+    public int getFlagCount() {
+        return this.flagCount;
+    }
+
+    /**
+     * Get the number of cells revealed
+     *
+     * @return The number of cells revealed
+     */
+    public int getRevealedCount() {
+        return this.revealedCount;
+    }
+
+    /**
+     * Get how the game ended
+     *
+     * @return The outcome, or null while the game is still going
+     */
+    public GameState getOutcome() {
+        return this.outcome;
+    }
+
+    /**
+     * Change the state of a cell, remembering it for the next delta
+     *
+     * @param cell  The position of the cell
+     * @param state The new state bits
+     */
+    private void setState(int cell, int state) {
+        this.cells[cell] = (byte) state;
+        if (this.changedCount == this.changed.length) {
+            this.changed = Arrays.copyOf(this.changed, this.changedCount * 2);
+        }
+        this.changed[this.changedCount++] = cell;
+    }
+
+    /**
+     * Get what can be shown of a cell to the players
+     *
+     * @param state The state bits of the cell
+     * @return The state, with the mine and count taken off if the cell is hidden and the game is still going
+     */
+    private int publicState(int state) {
+        if (this.outcome == null && (state & REVEALED) == 0) {
+            return state & FLAGGED;
+        }
+        return state;
+    }
+
+    /**
+     * Take the cells changed since the last delta
+     * While the game is going, hidden cells only go out as flagged or not, their mine and count stay here
+     *
+     * @param sound The sound to play with the delta, or null for none
+     * @return The delta, or null if nothing happened
+     */
+    public BoardDelta drainChanges(String sound) {
+        boolean ended = this.outcome != null && !this.outcomePublished;
+        if (this.changedCount == 0 && sound == null && !ended) {
+            return null;
+        }
+
+        int[] indices = new int[this.changedCount];
+        byte[] states = new byte[this.changedCount];
+        for (int i = 0; i < this.changedCount; i++) {
+            indices[i] = this.toIndex(this.changed[i]);
+            states[i] = (byte) this.publicState(this.cells[this.changed[i]]);
+        }
+        this.changedCount = 0;
+        this.checkpointed = 0;
+        // Shrink the journal back after a large flood
+        if (this.changed.length > JOURNAL_SIZE) {
+            this.changed = new int[JOURNAL_SIZE];
+        }
+
+        // The mines go out once, with the delta that ends the game
+        int[] mines = ended ? this.mineOrder.clone() : null;
+        this.outcomePublished |= ended;
+        return new BoardDelta(indices, states, this.flagCount, this.revealedCount, this.outcome, mines, sound);
+    }
+
+    /**
+     * Runs an action for a range of stripes, splitting the range in half until there is one stripe each
+     */
+    private static class StripeTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+        /**
+         * Create a new task
+         *
+         * @param from   The first stripe
+         * @param to     The stripe after the last
+         * @param action The action, given the stripe
+         */
+        StripeTask(int from, int to, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= 1) {
+                if (this.to > this.from) {
+                    this.action.accept(this.from);
+                }
+                return;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(new StripeTask(this.from, middle, this.action), new StripeTask(middle, this.to, this.action));
+        }
+    }
+}
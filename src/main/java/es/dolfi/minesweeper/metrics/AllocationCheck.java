@@ -0,0 +1,483 @@
+package es.dolfi.minesweeper.metrics;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import es.dolfi.minesweeper.components.Cell;
+import es.dolfi.minesweeper.enums.Difficulty;
+import es.dolfi.minesweeper.logic.BoardDelta;
+import es.dolfi.minesweeper.logic.Command;
+import es.dolfi.minesweeper.logic.GameLogic;
+import es.dolfi.minesweeper.logic.Minefield;
+import es.dolfi.minesweeper.util.Resources;
+
+/**
+ * Measures how many bytes the hot paths allocate per operation, and checks them against recorded budgets
+ * Run it from the debug console, or from the command line where a failed check exits with an error
+ * Moves are measured as the logic thread makes them, from the command to the delta, but not the hop to the EDT
+ * Painting is measured cell by cell as the board layer draws changes, the layer itself needs a window
+ */
+public class AllocationCheck {
+    private static final String BUDGETS = "allocation-budgets.properties";
+    // Warm up with enough runs for the JIT to compile the paths, and escape analysis to do its work
+    private static final int WARMUP_RUNS = 4;
+    private static final int RUNS = 5_000;
+    // A paint draws every cell, so it needs fewer runs to settle
+    private static final int PAINT_RUNS = 500;
+    private static final int ROUNDS = 5;
+    private static final Difficulty difficulty = Difficulty.HARD;
+    private static final int CELL_SIZE = 30;
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final Properties budgets = new Properties();
+    private long seed = 0;
+
+    /**
+     * Create a new check, loading the budgets
+     *
+     * @throws IOException If the budgets can't be read
+     * @throws UnsupportedOperationException If this JVM can't measure allocation
+     */
+    public AllocationCheck() throws IOException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled()) {
+            throw new UnsupportedOperationException("This JVM can't measure allocation per thread");
+        }
+        this.threads = (com.sun.management.ThreadMXBean) threads;
+        try (InputStream input = Resources.get(BUDGETS).openStream()) {
+            this.budgets.load(input);
+        }
+    }
+
+    /**
+     * Measure every operation, on the calling thread
+     *
+     * @return The results, in the order measured
+     */
+    public List<Result> run() {
+        List<Result> results = new ArrayList<>();
+        results.add(this.measure(new Generate()));
+        results.add(this.measure(new Reveal()));
+        results.add(this.measure(new Chord()));
+        results.add(this.measure(new Flag()));
+        results.add(this.measure(new Move("logic-reveal", Command.Type.REVEAL)));
+        results.add(this.measure(new Move("logic-flag", Command.Type.FLAG)));
+        results.add(this.measure(new Paint()));
+        return results;
+    }
+
+    /**
+     * Measure one operation
+     *
+     * @param operation The operation
+     * @return How much it allocated, against its budget
+     */
+    private Result measure(Operation operation) {
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < operation.runs * WARMUP_RUNS; i++) {
+            operation.prepare();
+            operation.run();
+        }
+
+        // Reading the counter may itself allocate, so that's taken off every measurement
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 100; i++) {
+            long before = this.threads.getThreadAllocatedBytes(thread);
+            overhead = Math.min(overhead, this.threads.getThreadAllocatedBytes(thread) - before);
+        }
+
+        // One-off allocations, like a recompile or something initialized lazily, only land in one round
+        // Allocating on every run shows in all of them, so the quietest round is the one that counts
+        double lowest = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long total = 0;
+            for (int i = 0; i < operation.runs / ROUNDS; i++) {
+                operation.prepare();
+                long before = this.threads.getThreadAllocatedBytes(thread);
+                operation.run();
+                total += this.threads.getThreadAllocatedBytes(thread) - before - overhead;
+            }
+            lowest = Math.min(lowest, (double) total / (operation.runs / ROUNDS));
+        }
+
+        String budget = this.budgets.getProperty(operation.name);
+        return new Result(operation.name, lowest,
+                budget == null ? -1 : Long.parseLong(budget.trim()));
+    }
+
+    /**
+     * Place the mines for a new game, keeping the middle clear for the first reveal
+     *
+     * @return The minefield
+     */
+    private Minefield newGame() {
+        Minefield field = new Minefield(difficulty.getWidth(), difficulty.getHeight(), difficulty.getMines());
+        field.generate(this.seed++, field.getWidth() / 2, field.getHeight() / 2);
+        return field;
+    }
+
+    /**
+     * Start a game the way the logic thread does, with the first reveal in the middle
+     *
+     * @return The minefield
+     */
+    private Minefield startGame() {
+        Minefield field = this.newGame();
+        field.reveal(field.getWidth() / 2, field.getHeight() / 2);
+        field.drainChanges(null);
+        return field;
+    }
+
+    /**
+     * Find a hidden cell
+     *
+     * @param field The minefield
+     * @param from  The index to start looking from
+     * @param mines Whether mines count
+     * @return The index of the cell, or -1 if there are none left
+     */
+    private static int findHidden(Minefield field, int from, boolean mines) {
+        int cells = field.getWidth() * field.getHeight();
+        for (int i = 0; i < cells; i++) {
+            int index = (from + i) % cells;
+            int state = field.getState(index);
+            if ((state & (Minefield.REVEALED | Minefield.FLAGGED)) == 0 && (mines || (state & Minefield.MINE) == 0)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Something to measure, split into an unmeasured setup and the measured part
+     */
+    private abstract static class Operation {
+        private final String name;
+        private final int runs;
+
+        /**
+         * Create a new operation
+         *
+         * @param name The name its budget is recorded under
+         * @param runs The number of runs to measure
+         */
+        Operation(String name, int runs) {
+            this.name = name;
+            this.runs = runs;
+        }
+
+        /**
+         * Set up for the next run, not measured
+         */
+        abstract void prepare();
+
+        /**
+         * Run the operation once, measured
+         */
+        abstract void run();
+    }
+
+    /**
+     * Placing the mines on a fresh board
+     */
+    private class Generate extends Operation {
+        private Minefield field;
+
+        /**
+         * Create the operation
+         */
+        Generate() {
+            super("generate", RUNS);
+        }
+
+        @Override
+        void prepare() {
+            this.field = new Minefield(difficulty.getWidth(), difficulty.getHeight(), difficulty.getMines());
+        }
+
+        @Override
+        void run() {
+            this.field.generate(seed++, 0, 0);
+        }
+    }
+
+    /**
+     * Revealing safe cells one after another through a game, from the first flood on a fresh board
+     */
+    private class Reveal extends Operation {
+        private Minefield field;
+        private int target = -1;
+
+        /**
+         * Create the operation
+         */
+        Reveal() {
+            super("reveal", RUNS);
+        }
+
+        @Override
+        void prepare() {
+            if (this.field != null) {
+                this.field.drainChanges(null);
+                this.target = findHidden(this.field, this.target + 1, false);
+            }
+            if (this.field == null || this.target < 0 || this.field.getOutcome() != null) {
+                this.field = newGame();
+                this.target = this.field.index(this.field.getWidth() / 2, this.field.getHeight() / 2);
+            }
+        }
+
+        @Override
+        void run() {
+            this.field.reveal(this.target % this.field.getWidth(), this.target / this.field.getWidth());
+        }
+    }
+
+    /**
+     * Chording a revealed number once its mines are flagged
+     */
+    private class Chord extends Operation {
+        private Minefield field;
+        private int target;
+
+        /**
+         * Create the operation
+         */
+        Chord() {
+            super("chord", RUNS);
+        }
+
+        @Override
+        void prepare() {
+            while (true) {
+                if (this.field == null || this.field.getOutcome() != null) {
+                    this.field = startGame();
+                }
+                this.target = this.findTarget();
+                if (this.target >= 0) {
+                    this.field.drainChanges(null);
+                    return;
+                }
+                this.field = null;
+            }
+        }
+
+        /**
+         * Find a revealed number with hidden safe neighbors, and flag the mines around it
+         *
+         * @return The index of the number, or -1 if there are none
+         */
+        private int findTarget() {
+            int width = this.field.getWidth(), height = this.field.getHeight();
+            for (int index = 0; index < width * height; index++) {
+                int state = this.field.getState(index);
+                if ((state & Minefield.REVEALED) == 0 || (state & Minefield.COUNT) == 0) {
+                    continue;
+                }
+                int x = index % width, y = index / width;
+                boolean hidden = false;
+                for (int j = Math.max(0, y - 1); j <= Math.min(height - 1, y + 1); j++) {
+                    for (int i = Math.max(0, x - 1); i <= Math.min(width - 1, x + 1); i++) {
+                        int neighbor = this.field.getState(j * width + i);
+                        hidden |= (neighbor & (Minefield.REVEALED | Minefield.MINE)) == 0;
+                    }
+                }
+                if (!hidden) {
+                    continue;
+                }
+                for (int j = Math.max(0, y - 1); j <= Math.min(height - 1, y + 1); j++) {
+                    for (int i = Math.max(0, x - 1); i <= Math.min(width - 1, x + 1); i++) {
+                        int neighbor = this.field.getState(j * width + i);
+                        if ((neighbor & Minefield.MINE) != 0 && (neighbor & Minefield.FLAGGED) == 0) {
+                            this.field.flag(i, j);
+                        }
+                    }
+                }
+                return index;
+            }
+            return -1;
+        }
+
+        @Override
+        void run() {
+            this.field.chord(this.target % this.field.getWidth(), this.target / this.field.getWidth());
+        }
+    }
+
+    /**
+     * Flagging and unflagging hidden cells
+     */
+    private class Flag extends Operation {
+        private Minefield field;
+        private int target = -1;
+
+        /**
+         * Create the operation
+         */
+        Flag() {
+            super("flag", RUNS);
+        }
+
+        @Override
+        void prepare() {
+            if (this.field == null) {
+                this.field = startGame();
+            }
+            this.field.drainChanges(null);
+            this.target = findHidden(this.field, this.target + 1, true);
+            if (this.target < 0) {
+                this.target = findHidden(this.field, 0, true);
+            }
+        }
+
+        @Override
+        void run() {
+            this.field.flag(this.target % this.field.getWidth(), this.target / this.field.getWidth());
+        }
+    }
+
+    /**
+     * A whole move the way the logic thread makes one, from a queued command to the delta it publishes
+     * That takes in the history snapshot every move checkpoints, and the delta with its arrays
+     */
+    private class Move extends Operation {
+        private final Command.Type type;
+        private final Random random = new Random(0);
+        private Minefield field;
+        private int target = -1;
+        // Kept so the command, its task and the delta escape the way they do through the queue and listener
+        private Runnable task;
+        private BoardDelta delta;
+
+        /**
+         * Create the operation
+         *
+         * @param name The name its budget is recorded under
+         * @param type The kind of command, reveals go through safe cells and flags through any hidden cell
+         */
+        Move(String name, Command.Type type) {
+            super(name, RUNS);
+            this.type = type;
+        }
+
+        @Override
+        void prepare() {
+            boolean reveal = this.type == Command.Type.REVEAL;
+            if (this.field != null) {
+                this.target = findHidden(this.field, this.target + 1, !reveal);
+            }
+            if (this.field == null || this.target < 0 || this.field.getOutcome() != null) {
+                this.field = startGame();
+                this.target = findHidden(this.field, 0, !reveal);
+            }
+        }
+
+        @Override
+        void run() {
+            Command command = new Command(this.type, this.target % this.field.getWidth(),
+                    this.target / this.field.getWidth());
+            this.task = () -> {
+                String sound = GameLogic.apply(this.field, command.getType(), command.getX(), command.getY(), seed,
+                        this.random);
+                this.delta = this.field.drainChanges(sound);
+            };
+            this.task.run();
+        }
+    }
+
+    /**
+     * Painting every cell of a board into an offscreen image
+     */
+    private class Paint extends Operation {
+        private final Minefield field = startGame();
+        private final BufferedImage image = new BufferedImage(difficulty.getWidth() * CELL_SIZE,
+                difficulty.getHeight() * CELL_SIZE, BufferedImage.TYPE_INT_RGB);
+        private final Graphics2D graphics = this.image.createGraphics();
+
+        /**
+         * Create the operation
+         */
+        Paint() {
+            super("paint", PAINT_RUNS);
+        }
+
+        @Override
+        void prepare() {
+        }
+
+        @Override
+        void run() {
+            int width = this.field.getWidth(), height = this.field.getHeight();
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    Cell.paint(this.graphics, this.field.getState(y * width + x), x * CELL_SIZE, y * CELL_SIZE,
+                            CELL_SIZE, CELL_SIZE);
+                }
+            }
+        }
+    }
+
+    /**
+     * How much one operation allocated
+     */
+    public static class Result {
+        private final String name;
+        private final double bytes;
+        private final long budget;
+
+        /**
+         * Create a new result
+         *
+         * @param name   The operation
+         * @param bytes  The bytes allocated per run
+         * @param budget The bytes allowed per run, or -1 if there is no budget
+         */
+        Result(String name, double bytes, long budget) {
+            this.name = name;
+            this.bytes = bytes;
+            this.budget = budget;
+        }
+
+        /**
+         * Check if the operation stayed within its budget
+         *
+         * @return Whether it passed, operations without a budget never do
+         */
+        public boolean isPassed() {
+            return this.budget >= 0 && this.bytes <= this.budget;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-12s %10.1f bytes/op, budget %s: %s", this.name, this.bytes,
+                    this.budget < 0 ? "none" : String.valueOf(this.budget), this.isPassed() ? "ok" : "FAILED");
+        }
+    }
+
+    /**
+     * Run the check from the command line or the build
+     *
+     * @param args Unused
+     * @throws IOException If the budgets can't be read
+     * @throws IllegalStateException If any operation is over budget
+     */
+    public static void main(String[] args) throws IOException {
+        boolean passed = true;
+        for (Result result : new AllocationCheck().run()) {
+            System.out.println("[ALLOC] " + result);
+            passed &= result.isPassed();
+        }
+        if (!passed) {
+            throw new IllegalStateException("Allocation over budget, see " + BUDGETS);
+        }
+    }
+}
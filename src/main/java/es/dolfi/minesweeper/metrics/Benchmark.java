@@ -0,0 +1,325 @@
+package es.dolfi.minesweeper.metrics;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import es.dolfi.minesweeper.components.Cell;
+import es.dolfi.minesweeper.logic.Minefield;
+
+/**
+ * Times the hot paths in-process on a board of any size, for the debug console
+ * Each run gets a fresh board, only the operation itself is timed
+ */
+public class Benchmark {
+    public static final String[] OPERATIONS = { "generate", "reveal", "opening", "paint" };
+    // Runs before timing starts, as a share of the timed runs
+    private static final int WARMUP_DIVISOR = 10;
+    private static final int CELL_SIZE = 30;
+    // Painting goes through an image the size of a screen, however big the board is
+    private static final int VIEWPORT_WIDTH = 1920;
+    private static final int VIEWPORT_HEIGHT = 1080;
+
+    private final int width;
+    private final int height;
+    private final int mines;
+    private final long seed;
+
+    /**
+     * Create a new benchmark
+     *
+     * @param width  The number of columns
+     * @param height The number of rows
+     * @param mines  The number of mines
+     * @param seed   The seed of the first board, each run after uses the next one
+     * @throws IllegalArgumentException If the board is invalid
+     */
+    public Benchmark(int width, int height, int mines, long seed) {
+        // The minefield checks the board, before any time is spent
+        new Minefield(width, height, mines);
+        this.width = width;
+        this.height = height;
+        this.mines = mines;
+        this.seed = seed;
+    }
+
+    /**
+     * Generate the first board and describe it
+     *
+     * @return How long placing the mines took, and the board's 3BV
+     */
+    public String describe() {
+        Minefield field = new Minefield(this.width, this.height, this.mines);
+        long start = System.nanoTime();
+        field.generate(this.seed, this.width / 2, this.height / 2);
+        long took = System.nanoTime() - start;
+        return String.format("Generated %s in %.2fms, 3BV %d", this,
+                took / 1e6, Minefield.countThreeBV(this.width, this.height, field.getMineOrder()));
+    }
+
+    /**
+     * Time one of the operations
+     *
+     * @param operation The operation, one of {@link #OPERATIONS}
+     * @param runs      The number of timed runs
+     * @return The times
+     * @throws IllegalArgumentException If the operation is unknown or there are no runs
+     */
+    public Result run(String operation, int runs) {
+        if (runs <= 0) {
+            throw new IllegalArgumentException("Runs must be positive");
+        }
+        Operation timed;
+        if (operation.equals("generate")) {
+            timed = this::generate;
+        } else if (operation.equals("reveal")) {
+            timed = this::reveal;
+        } else if (operation.equals("opening")) {
+            timed = this::opening;
+        } else if (operation.equals("paint")) {
+            timed = new Paint();
+        } else {
+            throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+
+        for (int i = 0; i < runs / WARMUP_DIVISOR; i++) {
+            timed.run(this.seed + i);
+        }
+        long[] times = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            times[i] = timed.run(this.seed + i);
+        }
+        return new Result(operation + " on " + this, times);
+    }
+
+    /**
+     * Time the worst flood there is, revealing a corner of a board with no mines at all
+     *
+     * @return The time, along with how many cells were revealed
+     */
+    public Result flood() {
+        Minefield field = new Minefield(this.width, this.height, 0);
+        field.generate(this.seed, -1, -1);
+        long start = System.nanoTime();
+        field.reveal(0, 0);
+        long took = System.nanoTime() - start;
+        return new Result(String.format("flood of %d cells on %dx%d", field.getRevealedCount(), this.width,
+                this.height), new long[] { took });
+    }
+
+    /**
+     * Place the mines on a fresh board
+     *
+     * @param seed The seed
+     * @return How long it took, in nanoseconds
+     */
+    private long generate(long seed) {
+        Minefield field = new Minefield(this.width, this.height, this.mines);
+        long start = System.nanoTime();
+        field.generate(seed, this.width / 2, this.height / 2);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Make the first reveal on a fresh board, which always floods
+     *
+     * @param seed The seed
+     * @return How long it took, in nanoseconds
+     */
+    private long reveal(long seed) {
+        Minefield field = new Minefield(this.width, this.height, this.mines);
+        field.generate(seed, this.width / 2, this.height / 2);
+        long start = System.nanoTime();
+        field.reveal(this.width / 2, this.height / 2);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Reveal the largest opening on a fresh board, the worst flood a real game can have
+     *
+     * @param seed The seed
+     * @return How long it took, in nanoseconds
+     */
+    private long opening(long seed) {
+        Minefield field = new Minefield(this.width, this.height, this.mines);
+        field.generate(seed, this.width / 2, this.height / 2);
+        int target = findLargestOpening(field);
+        long start = System.nanoTime();
+        field.reveal(target % this.width, target / this.width);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Find the largest opening, a connected region of cells with no surrounding mines
+     * The safe cell generation keeps clear is always one, so there is at least one
+     *
+     * @param field The minefield, not revealed yet
+     * @return The index of a cell in the largest opening
+     */
+    private static int findLargestOpening(Minefield field) {
+        int width = field.getWidth(), height = field.getHeight();
+        boolean[] seen = new boolean[width * height];
+        int[] stack = new int[width * height];
+        int largest = -1, largestSize = 0;
+        for (int i = 0; i < seen.length; i++) {
+            if (seen[i] || field.getState(i) != 0) {
+                continue;
+            }
+            int size = 0, count = 0;
+            seen[i] = true;
+            stack[size++] = i;
+            while (size > 0) {
+                int index = stack[--size];
+                count++;
+                int x = index % width, y = index / width;
+                for (int j = Math.max(0, y - 1); j <= Math.min(height - 1, y + 1); j++) {
+                    for (int k = Math.max(0, x - 1); k <= Math.min(width - 1, x + 1); k++) {
+                        int neighbor = j * width + k;
+                        if (!seen[neighbor] && field.getState(neighbor) == 0) {
+                            seen[neighbor] = true;
+                            stack[size++] = neighbor;
+                        }
+                    }
+                }
+            }
+            if (count > largestSize) {
+                largest = i;
+                largestSize = count;
+            }
+        }
+        return largest;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%dx%d with %d mines", this.width, this.height, this.mines);
+    }
+
+    /**
+     * Something to time, once per seed
+     */
+    private interface Operation {
+        /**
+         * Run the operation once
+         *
+         * @param seed The seed of the board to run it on
+         * @return How long the timed part took, in nanoseconds
+         */
+        long run(long seed);
+    }
+
+    /**
+     * Painting every cell of a board after the first reveal, a viewport of cells at a time
+     * Each viewport is painted over the same screen-sized offscreen image, shared between runs as the board's would be
+     */
+    private class Paint implements Operation {
+        private final BufferedImage image = new BufferedImage(VIEWPORT_WIDTH, VIEWPORT_HEIGHT,
+                BufferedImage.TYPE_INT_RGB);
+        private final Graphics2D graphics = this.image.createGraphics();
+        private final int columns = VIEWPORT_WIDTH / CELL_SIZE;
+        private final int rows = VIEWPORT_HEIGHT / CELL_SIZE;
+
+        @Override
+        public long run(long seed) {
+            Minefield field = new Minefield(width, height, mines);
+            field.generate(seed, width / 2, height / 2);
+            field.reveal(width / 2, height / 2);
+            long start = System.nanoTime();
+            for (int top = 0; top < height; top += this.rows) {
+                for (int left = 0; left < width; left += this.columns) {
+                    this.paintViewport(field, left, top);
+                }
+            }
+            return System.nanoTime() - start;
+        }
+
+        /**
+         * Paint the cells of one viewport, from its top left cell
+         *
+         * @param field The minefield
+         * @param left  The first column of the viewport
+         * @param top   The first row of the viewport
+         */
+        private void paintViewport(Minefield field, int left, int top) {
+            int bottom = Math.min(height, top + this.rows), right = Math.min(width, left + this.columns);
+            for (int y = top; y < bottom; y++) {
+                for (int x = left; x < right; x++) {
+                    Cell.paint(this.graphics, field.getState(y * width + x), (x - left) * CELL_SIZE,
+                            (y - top) * CELL_SIZE, CELL_SIZE, CELL_SIZE);
+                }
+            }
+        }
+    }
+
+    /**
+     * The times of every run of an operation
+     */
+    public static class Result {
+        private final String name;
+        private final long[] times;
+
+        /**
+         * Create a new result
+         *
+         * @param name  What was timed
+         * @param times The time of each run, in nanoseconds
+         */
+        public Result(String name, long[] times) {
+            this.name = name;
+            this.times = times.clone();
+            Arrays.sort(this.times);
+        }
+
+        /**
+         * Get what was timed
+         *
+         * @return The name
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Get the number of runs
+         *
+         * @return The number of runs
+         */
+        public int getRuns() {
+            return this.times.length;
+        }
+
+        /**
+         * Get the mean time of a run
+         *
+         * @return The mean, in nanoseconds
+         */
+        public double getMean() {
+            long sum = 0;
+            for (long time : this.times) {
+                sum += time;
+            }
+            return (double) sum / this.times.length;
+        }
+
+        /**
+         * Get a percentile of the run times
+         *
+         * @param percentile The percentile, from 0 to 100
+         * @return The time, in nanoseconds
+         */
+        public long getPercentile(double percentile) {
+            int index = (int) Math.ceil(this.times.length * percentile / 100) - 1;
+            return this.times[Math.max(0, Math.min(this.times.length - 1, index))];
+        }
+
+        @Override
+        public String toString() {
+            if (this.times.length == 1) {
+                return String.format("%s: %.3fms", this.name, this.times[0] / 1e6);
+            }
+            return String.format("%s, %d runs: mean %.3fms, p50 %.3fms, p99 %.3fms, max %.3fms", this.name,
+                    this.times.length, this.getMean() / 1e6, this.getPercentile(50) / 1e6,
+                    this.getPercentile(99) / 1e6, this.getPercentile(100) / 1e6);
+        }
+    }
+}
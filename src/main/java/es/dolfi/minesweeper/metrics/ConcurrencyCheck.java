@@ -0,0 +1,278 @@
+package es.dolfi.minesweeper.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import es.dolfi.minesweeper.enums.GameState;
+import es.dolfi.minesweeper.logic.BoardDelta;
+import es.dolfi.minesweeper.logic.Command;
+import es.dolfi.minesweeper.logic.ConcurrentMinefield;
+import es.dolfi.minesweeper.logic.CoopGame;
+import es.dolfi.minesweeper.logic.GameSession;
+import es.dolfi.minesweeper.logic.Minefield;
+
+/**
+ * Plays cooperative games with several players flagging and revealing at once, and checks the board agrees
+ * Every player flags its share of the mines, flips some shared ones on and off, then reveals every safe cell
+ * in its own random order, so floods and flags race for the same cells on every round
+ */
+public class ConcurrencyCheck {
+    private static final int ROUNDS = 20;
+    private static final int PLAYERS = 4;
+    private static final int WIDTH = 120;
+    private static final int HEIGHT = 120;
+    private static final int MINES = 1800;
+    // Mines every player flips on and off twice, so the flag count has to come back to where it was
+    private static final int SHARED_FLAGS = 40;
+    private static final long TIMEOUT = 60;
+
+    /**
+     * Play one round
+     *
+     * @param seed The seed of the board
+     * @return What went wrong, or null if the board agreed
+     * @throws InterruptedException If the check is interrupted
+     */
+    public String round(long seed) throws InterruptedException {
+        CoopGame game = new CoopGame(WIDTH, HEIGHT, MINES, seed);
+        Recorder[] recorders = new Recorder[PLAYERS];
+        GameSession[] sessions = new GameSession[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            recorders[i] = new Recorder();
+            sessions[i] = game.join(recorders[i]::accept);
+        }
+
+        // The first reveal places the mines, after that everyone knows the board
+        sessions[0].submit(new Command(Command.Type.REVEAL, WIDTH / 2, HEIGHT / 2));
+        if (!recorders[0].await(1)) {
+            return "first reveal never published";
+        }
+        ConcurrentMinefield field = game.getField();
+        List<Integer> mines = new ArrayList<>(), safe = new ArrayList<>();
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            ((field.getState(i) & Minefield.MINE) != 0 ? mines : safe).add(i);
+        }
+
+        // Each player flags its own share, and every player flips the shared ones on and off twice
+        int flags = 0;
+        for (int i = 0; i < PLAYERS; i++) {
+            List<Command> commands = new ArrayList<>();
+            for (int j = SHARED_FLAGS + i; j < mines.size(); j += PLAYERS) {
+                commands.add(flag(mines.get(j)));
+            }
+            for (int j = 0; j < SHARED_FLAGS; j++) {
+                for (int k = 0; k < 4; k++) {
+                    commands.add(flag(mines.get(j)));
+                }
+            }
+            flags += commands.size();
+            this.submit(sessions[i], commands, seed + i);
+        }
+        int expectedFlags = mines.size() - SHARED_FLAGS;
+        if (!recorders[0].await(1 + flags)) {
+            return "flags never all published";
+        }
+        if (field.getFlagCount() != expectedFlags) {
+            return "flag count " + field.getFlagCount() + ", expected " + expectedFlags;
+        }
+
+        // Everyone reveals every safe cell, in their own order
+        for (int i = 0; i < PLAYERS; i++) {
+            List<Command> commands = new ArrayList<>();
+            for (int index : safe) {
+                commands.add(new Command(Command.Type.REVEAL, index % WIDTH, index / WIDTH));
+            }
+            this.submit(sessions[i], commands, seed * PLAYERS + i);
+        }
+        // The move that wins can be published before the last floods it waited on, so wait for every cell
+        for (Recorder recorder : recorders) {
+            if (!recorder.awaitOutcome() || !recorder.awaitRevealed(safe.size())) {
+                return "game never ended";
+            }
+        }
+        // Moves still queued behind the winning one change nothing, so the players can leave
+        for (GameSession session : sessions) {
+            session.close();
+        }
+
+        if (field.getOutcome() != GameState.WON) {
+            return "outcome " + field.getOutcome() + ", expected WON";
+        }
+        if (field.getRevealedCount() != safe.size()) {
+            return "revealed count " + field.getRevealedCount() + ", expected " + safe.size();
+        }
+        for (Recorder recorder : recorders) {
+            String problem = recorder.check(field, safe);
+            if (problem != null) {
+                return problem;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Queue commands for a player in a random order, from a thread of their own so players fill up together
+     *
+     * @param session  The player's session
+     * @param commands The commands
+     * @param seed     The seed of the order
+     */
+    private void submit(GameSession session, List<Command> commands, long seed) {
+        Collections.shuffle(commands, new Random(seed));
+        Thread thread = new Thread(() -> {
+            for (Command command : commands) {
+                session.submit(command);
+            }
+        }, "ConcurrencyCheck");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Make a command flipping a cell's flag
+     *
+     * @param index The index of the cell
+     * @return The command
+     */
+    private static Command flag(int index) {
+        return new Command(Command.Type.FLAG, index % WIDTH, index / WIDTH);
+    }
+
+    /**
+     * The deltas one player got, as a board of its own
+     */
+    private static class Recorder {
+        private final byte[] cells = new byte[WIDTH * HEIGHT];
+        // Times each cell was published as revealed, which has to be exactly once for every safe cell
+        private final int[] reveals = new int[WIDTH * HEIGHT];
+        private final AtomicInteger revealed = new AtomicInteger();
+        private final AtomicInteger deltas = new AtomicInteger();
+        private final CountDownLatch ended = new CountDownLatch(1);
+        private int revealedCells = 0;
+        private int outcomes = 0;
+        private int announcements = 0;
+
+        /**
+         * Take in a delta, called for one move at a time
+         *
+         * @param delta The delta
+         */
+        void accept(BoardDelta delta) {
+            for (int i = 0; i < delta.size(); i++) {
+                int cell = delta.getCell(i), state = delta.getState(i);
+                // Only mines are published again once the game is lost, a safe cell only ever changes once
+                if ((state & Minefield.REVEALED) != 0 && (state & Minefield.MINE) == 0 && this.reveals[cell]++ == 0) {
+                    this.revealedCells++;
+                }
+                this.cells[cell] = (byte) state;
+            }
+            if (delta.getMineCount() > 0) {
+                this.announcements++;
+            }
+            if (delta.getOutcome() != null) {
+                this.outcomes++;
+                this.ended.countDown();
+            }
+            // Both are set last, so a thread that sees them also sees the cells
+            this.revealed.set(this.revealedCells);
+            this.deltas.incrementAndGet();
+        }
+
+        /**
+         * Wait for a number of deltas
+         *
+         * @param count The number of deltas
+         * @return Whether they all came in time
+         * @throws InterruptedException If the wait is interrupted
+         */
+        boolean await(int count) throws InterruptedException {
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+            while (this.deltas.get() < count) {
+                if (System.nanoTime() > end) {
+                    return false;
+                }
+                Thread.sleep(1);
+            }
+            return true;
+        }
+
+        /**
+         * Wait for a number of cells to be published as revealed
+         *
+         * @param count The number of cells
+         * @return Whether they all came in time
+         * @throws InterruptedException If the wait is interrupted
+         */
+        boolean awaitRevealed(int count) throws InterruptedException {
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+            while (this.revealed.get() < count) {
+                if (System.nanoTime() > end) {
+                    return false;
+                }
+                Thread.sleep(1);
+            }
+            return true;
+        }
+
+        /**
+         * Wait for the game to end
+         *
+         * @return Whether it ended in time
+         * @throws InterruptedException If the wait is interrupted
+         */
+        boolean awaitOutcome() throws InterruptedException {
+            return this.ended.await(TIMEOUT, TimeUnit.SECONDS);
+        }
+
+        /**
+         * Check the board built from the deltas against the shared one
+         *
+         * @param field The shared board
+         * @param safe  The safe cells
+         * @return What went wrong, or null if they agree
+         */
+        String check(ConcurrentMinefield field, List<Integer> safe) {
+            if (this.announcements != 1) {
+                return "mines announced " + this.announcements + " times";
+            }
+            for (int index : safe) {
+                if (this.reveals[index] != 1) {
+                    return "cell " + index + " revealed " + this.reveals[index] + " times";
+                }
+            }
+            for (int i = 0; i < this.cells.length; i++) {
+                // Mines only went out masked while the game was going, so only the flag has to match
+                int expected = field.getState(i), mask = (expected & Minefield.MINE) != 0 ? Minefield.FLAGGED : 0xFF;
+                if ((this.cells[i] & mask) != (expected & mask)) {
+                    return "cell " + i + " published as " + this.cells[i] + ", board has " + expected;
+                }
+            }
+            return this.outcomes == 0 ? "no delta had the outcome" : null;
+        }
+    }
+
+    /**
+     * Run the check from the command line or the build
+     *
+     * @param args Unused
+     * @throws InterruptedException If the check is interrupted
+     * @throws IllegalStateException If any round disagreed
+     */
+    public static void main(String[] args) throws InterruptedException {
+        ConcurrencyCheck check = new ConcurrencyCheck();
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            String problem = check.round(round);
+            if (problem != null) {
+                throw new IllegalStateException("Round " + round + ": " + problem);
+            }
+        }
+        System.out.printf("[COOP] %d rounds of %d players on %dx%d agreed, %.0fms%n", ROUNDS, PLAYERS, WIDTH,
+                HEIGHT, (System.nanoTime() - start) / 1e6);
+    }
+}
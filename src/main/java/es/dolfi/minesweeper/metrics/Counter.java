@@ -0,0 +1,68 @@
+package es.dolfi.minesweeper.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A running total, cheap to add to from any thread
+ */
+public class Counter {
+    private final String name;
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * Create a new counter, use {@link Metrics#counter(String)} to register one
+     *
+     * @param name The name of the counter
+     */
+    Counter(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the name of the counter
+     *
+     * @return The name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Add one to the counter, if metrics are enabled
+     */
+    public void increment() {
+        this.add(1);
+    }
+
+    /**
+     * Add to the counter, if metrics are enabled
+     *
+     * @param amount The amount to add
+     */
+    public void add(long amount) {
+        if (Metrics.isEnabled()) {
+            this.total.add(amount);
+        }
+    }
+
+    /**
+     * Get the total
+     *
+     * @return The total
+     */
+    public long get() {
+        return this.total.sum();
+    }
+
+    /**
+     * Set the total back to zero
+     */
+    public void reset() {
+        this.total.reset();
+    }
+
+    @Override
+    public String toString() {
+        return this.name + ": " + this.get();
+    }
+}
@@ -0,0 +1,24 @@
+package es.dolfi.minesweeper.metrics;
+
+/**
+ * Somewhere probes can send events besides the metrics, kept apart so the game runs where it isn't available
+ */
+interface EventSink {
+    /**
+     * Check if a probe's events are being recorded
+     *
+     * @param probe The probe's id
+     * @return Whether its events are wanted
+     */
+    boolean isEnabled(int probe);
+
+    /**
+     * Record an event
+     *
+     * @param probe    The probe's id
+     * @param duration How long the operation took, in nanoseconds
+     * @param value    The probe's measure of the operation's size
+     * @param detail   What the operation acted on, or null
+     */
+    void commit(int probe, long duration, long value, String detail);
+}
@@ -0,0 +1,137 @@
+package es.dolfi.minesweeper.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A distribution of values, bucketed by powers of two
+ * Recording never allocates or locks, at the cost of percentiles only being accurate to a factor of two
+ */
+public class Histogram {
+    // Zero, then one bucket per bit length
+    private static final int BUCKETS = 64;
+
+    private final String name;
+    private final String unit;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Create a new histogram, use {@link Metrics#histogram(String, String)} to register one
+     *
+     * @param name The name of the histogram
+     * @param unit The unit of the values, shown when dumped
+     */
+    Histogram(String name, String unit) {
+        this.name = name;
+        this.unit = unit;
+    }
+
+    /**
+     * Get the name of the histogram
+     *
+     * @return The name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Record a value, if metrics are enabled
+     *
+     * @param value The value, negative values count as zero
+     */
+    public void record(long value) {
+        if (!Metrics.isEnabled()) {
+            return;
+        }
+        value = Math.max(0, value);
+        this.buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+        this.count.increment();
+        this.sum.add(value);
+        long max = this.max.get();
+        while (value > max && !this.max.compareAndSet(max, value)) {
+            max = this.max.get();
+        }
+    }
+
+    /**
+     * Get the number of values recorded
+     *
+     * @return The number of values
+     */
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * Get the sum of the values recorded
+     *
+     * @return The sum
+     */
+    public long getSum() {
+        return this.sum.sum();
+    }
+
+    /**
+     * Get the mean of the values recorded
+     *
+     * @return The mean, or 0 if there are none
+     */
+    public double getMean() {
+        long count = this.count.sum();
+        return count == 0 ? 0 : (double) this.sum.sum() / count;
+    }
+
+    /**
+     * Get the largest value recorded
+     *
+     * @return The largest value
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Get a percentile of the values recorded
+     *
+     * @param percentile The percentile, from 0 to 100
+     * @return The upper bound of the bucket the percentile falls in, never above the largest value
+     */
+    public long getPercentile(double percentile) {
+        long count = this.count.sum();
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.buckets.get(i);
+            if (seen >= rank && seen > 0) {
+                // Bucket 0 holds zero, the rest hold [2^(i-1), 2^i)
+                long bound = (1L << i) - 1;
+                return Math.min(bound, this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    /**
+     * Clear every value recorded
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets.set(i, 0);
+        }
+        this.count.reset();
+        this.sum.reset();
+        this.max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d, mean %.0f%s, p50 %d%s, p99 %d%s, max %d%s", this.name, this.getCount(),
+                this.getMean(), this.unit, this.getPercentile(50), this.unit, this.getPercentile(99), this.unit,
+                this.getMax(), this.unit);
+    }
+}
@@ -0,0 +1,86 @@
+package es.dolfi.minesweeper.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The registry of every counter and histogram in the game, dumped by the debug console
+ * Look metrics up once and keep them in a field, recording into one is then only a few adds
+ */
+public final class Metrics {
+    private static final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = true;
+
+    /**
+     * Static helpers only
+     */
+    private Metrics() {
+    }
+
+    /**
+     * Get a counter, registering it the first time
+     *
+     * @param name The name of the counter
+     * @return The counter
+     */
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    /**
+     * Get a histogram, registering it the first time
+     *
+     * @param name The name of the histogram
+     * @param unit The unit of its values
+     * @return The histogram
+     */
+    public static Histogram histogram(String name, String unit) {
+        return histograms.computeIfAbsent(name, key -> new Histogram(key, unit));
+    }
+
+    /**
+     * Check if metrics are being recorded
+     *
+     * @return Whether metrics are enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set whether metrics are recorded, flight recorder events are switched on and off by the recording instead
+     *
+     * @param enabled Whether to enable metrics
+     */
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * Clear every counter and histogram
+     */
+    public static void reset() {
+        counters.values().forEach(Counter::reset);
+        histograms.values().forEach(Histogram::reset);
+    }
+
+    /**
+     * Describe every counter and histogram
+     *
+     * @return The metrics, one per line in name order
+     */
+    public static String dump() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Metrics: ").append(enabled ? "on" : "off").append(", flight recorder events: ")
+                .append(Probe.hasFlightRecorder() ? "available" : "unavailable").append('\n');
+        for (Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()) {
+            builder.append(entry.getValue()).append('\n');
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            builder.append(entry.getValue()).append('\n');
+        }
+        return builder.toString();
+    }
+}
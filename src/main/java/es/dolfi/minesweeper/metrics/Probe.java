@@ -0,0 +1,118 @@
+package es.dolfi.minesweeper.metrics;
+
+/**
+ * Times one kind of operation on a hot path, into a histogram and a flight recorder event
+ * When metrics are off and no recording wants the event, a probe costs two checks and nothing else
+ */
+public final class Probe {
+    // Flight recorder events need Java 11, where it isn't there they're simply never sent
+    private static final EventSink sink = loadSink();
+
+    public static final Probe GENERATE = new Probe(0, "generate", "mines");
+    public static final Probe FLOOD = new Probe(1, "flood", "cells");
+    public static final Probe CHORD = new Probe(2, "chord", "cells");
+    public static final Probe SCREEN = new Probe(3, "screen", null);
+    public static final Probe SOUND = new Probe(4, "sound", null);
+    public static final Probe PAINT = new Probe(5, "paint", null);
+    public static final Probe REDRAW = new Probe(6, "redraw", "cells");
+
+    private final int id;
+    private final Histogram durations;
+    private final Histogram values;
+
+    /**
+     * Create a new probe
+     *
+     * @param id   The id events are sent with
+     * @param name The name its metrics are registered under
+     * @param unit The unit of the size it measures, or null if it only measures time
+     */
+    private Probe(int id, String name, String unit) {
+        this.id = id;
+        this.durations = Metrics.histogram(name + ".time", "us");
+        this.values = unit == null ? null : Metrics.histogram(name + ".size", " " + unit);
+    }
+
+    /**
+     * Load the flight recorder sink, if this Java has a flight recorder
+     *
+     * @return The sink, or null if there isn't one
+     */
+    private static EventSink loadSink() {
+        try {
+            return (EventSink) Class.forName("es.dolfi.minesweeper.metrics.FlightRecorderSink").newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Check if flight recorder events can be sent
+     *
+     * @return Whether there is a flight recorder
+     */
+    public static boolean hasFlightRecorder() {
+        return sink != null;
+    }
+
+    /**
+     * Get how long the operations took
+     *
+     * @return The durations, in microseconds
+     */
+    public Histogram getDurations() {
+        return this.durations;
+    }
+
+    /**
+     * Get how big the operations were
+     *
+     * @return The sizes, or null if the probe only measures time
+     */
+    public Histogram getSizes() {
+        return this.values;
+    }
+
+    /**
+     * Start timing an operation
+     *
+     * @return The start time to pass to {@link #end(long, long, String)}, or 0 if nothing is recording
+     */
+    public long start() {
+        if (Metrics.isEnabled() || (sink != null && sink.isEnabled(this.id))) {
+            return System.nanoTime();
+        }
+        return 0;
+    }
+
+    /**
+     * Finish timing an operation
+     *
+     * @param start The time it started
+     * @param value The size of the operation, in the probe's unit
+     */
+    public void end(long start, long value) {
+        this.end(start, value, null);
+    }
+
+    /**
+     * Finish timing an operation
+     *
+     * @param start  The time it started
+     * @param value  The size of the operation, in the probe's unit
+     * @param detail What the operation acted on, or null
+     */
+    public void end(long start, long value, String detail) {
+        if (start == 0) {
+            return;
+        }
+        long duration = System.nanoTime() - start;
+        this.durations.record(duration / 1000);
+        if (this.values != null) {
+            this.values.record(value);
+        }
+        if (sink != null && sink.isEnabled(this.id)) {
+            sink.commit(this.id, duration, value, detail);
+        }
+    }
+}
@@ -3,13 +3,28 @@ package es.dolfi.minesweeper.screens;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
+import java.net.InetSocketAddress;
 import java.util.*;
+import java.util.function.Consumer;
+import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 
 import es.dolfi.minesweeper.Game;
-import es.dolfi.minesweeper.components.Cell;
+import es.dolfi.minesweeper.components.BoardLayer;
+import es.dolfi.minesweeper.components.CellListener;
+import es.dolfi.minesweeper.components.Minimap;
+import es.dolfi.minesweeper.components.PerformanceOverlay;
 import es.dolfi.minesweeper.enums.*;
+import es.dolfi.minesweeper.logic.BoardDelta;
+import es.dolfi.minesweeper.logic.Command;
+import es.dolfi.minesweeper.logic.GameLogic;
+import es.dolfi.minesweeper.logic.GameSession;
+import es.dolfi.minesweeper.logic.Minefield;
+import es.dolfi.minesweeper.metrics.Probe;
+import es.dolfi.minesweeper.server.GameClient;
+import es.dolfi.minesweeper.server.SpectatorFeed;
+import es.dolfi.minesweeper.stats.GameRecord;
 import es.dolfi.minesweeper.util.*;
 
 /**
@@ -17,15 +32,39 @@ import es.dolfi.minesweeper.util.*;
  */
 public class GameBoard extends Screen {
     private static final Random random = new Random();
-    public static final SpriteSheet minesweeps = SpriteSheet.load("spritresheet.png", 32);
-    public final Cell[][] board;
-
+    // End of game animation timings, in milliseconds
+    private static final int ANIMATION_BUDGET = 3000;
+    private static final int ANIMATION_PACE = 150;
+    private static final int ANIMATION_FRAME = 16;
+    private static final int TRANSITION_DELAY = 400;
+    public static final SpriteSheet minesweeps = SpriteSheet.load("spritesheet.png", 32);
+    private static final Font hudFont = RenderCache.font("Courier", Font.BOLD, 22);
+    private static final Color borderColor = new Color(83, 83, 83);
+    // Space around the board, matching Difficulty.getDimensions()
+    private static final int HORIZONTAL_PADDING = 100;
+    private static final int VERTICAL_PADDING = 175;
+    private static final double ZOOM_STEP = 1.1;
+    private final int columns;
+    private final int rows;
+    // The state of every cell as last published by the logic thread, only touched on the EDT
+    private final byte[] cells;
+    private final GameSession logic;
+
+    private final Camera camera;
+    private final Minimap minimap;
+    private final BoardLayer layer;
+    private final PerformanceOverlay overlay = new PerformanceOverlay();
+    private final ArrayList<CellListener> cellListeners = new ArrayList<>();
+    private final Rectangle area = new Rectangle();
     private TimerComponent ticker;
     private Timer animator;
 
-    // Seperate count for performance reasons
     private int flagCount = 0;
     private int revealedCount = 0;
+    private boolean ended = false;
+    private int clicks = 0;
+    // Games ended from the debug console don't count towards the stats
+    private boolean forced = false;
 
     /**
      * Create a new game board
@@ -34,278 +73,477 @@ public class GameBoard extends Screen {
      */
     public GameBoard(Game game) {
         super(game);
-        this.setLayout(new GridBagLayout());
 
-        // Set size based on difficulty
+        // Set size based on difficulty, big boards are scrolled within the screen
         Difficulty difficulty = game.getDifficulty();
-        board = new Cell[difficulty.getWidth()][difficulty.getHeight()];
-        flagCount = difficulty.getMines();
-        game.setSize(difficulty.getDimensions());
+        this.columns = difficulty.getWidth();
+        this.rows = difficulty.getHeight();
+        this.cells = new byte[this.columns * this.rows];
+        this.flagCount = difficulty.getMines();
+        Dimension size = difficulty.getDimensions();
+        Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+        game.setSize(Math.min(size.width, screen.width * 9 / 10), Math.min(size.height, screen.height * 9 / 10));
+        game.setResizable(true);
+        this.setSize(game.getSize());
+
+        this.camera = new Camera(difficulty.getWidth(), difficulty.getHeight(), difficulty.getCellSize());
+        this.minimap = new Minimap(this, difficulty.getWidth(), difficulty.getHeight());
+        this.layer = new BoardLayer(this);
+        this.addCellListener(this.layer);
+        this.addCellListener(this.minimap);
+        this.add(this.overlay);
+        this.add(this.minimap);
+        this.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                updateView();
+            }
+        });
+        this.updateView();
+        this.camera.setZoom(Math.max(0.5, Math.min(1, this.camera.getFitZoom())), 0, 0);
+        this.cameraMoved();
 
         // Add all the components
-        this.ticker = new TimerComponent(this, difficulty);
-        this.generateCells(difficulty);
-        this.addMouseListener(new MouseInput(this));
+        this.ticker = new TimerComponent(this, this::getTimerArea);
+        this.logic = this.createSession(difficulty);
+        if (game.getSpectatorFeed() != null) {
+            this.broadcastTo(game.getSpectatorFeed());
+        }
+        System.out.printf("[BOARD] Board filled, %s mode%n", difficulty.toString().toLowerCase());
+        this.overlay.setVisible(game.isPerformanceOverlay());
+        MouseInput input = new MouseInput(this);
+        this.addMouseListener(input);
+        this.addMouseMotionListener(input);
+        this.addMouseWheelListener(input);
         this.setVisible(true);
     }
 
+    @Override
+    public boolean supportsActiveRendering() {
+        return true;
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
+        long start = Probe.PAINT.start();
+        long frameStart = this.overlay.isVisible() ? System.nanoTime() : 0;
         super.paintComponent(g);
+        Rectangle view = this.camera.getView();
 
-        // Draw a 2px border around the board itself
-        Difficulty difficulty = this.getGame().getDifficulty();
-        int width = difficulty.getWidth(), height = difficulty.getHeight();
-        int cellSize = difficulty.getCellSize();
-        int boardWidth = width * cellSize, boardHeight = height * cellSize;
-        int windowWidth = this.getWidth(), windowHeight = this.getHeight();
+        // Draw a 2px border around the visible part of the board
+        Rectangle board = this.camera.getBoardArea(this.area);
+        g.setColor(borderColor);
+        g.fillRect(board.x - 2, board.y - 2, board.width + 4, board.height + 4);
 
-        Color darkGrey = new Color(83, 83, 83);
-        g.setColor(darkGrey);
-        g.fillRect((windowWidth - boardWidth) / 2 - 2, (windowHeight - boardHeight) / 2 - 2, boardWidth + 4,
-                boardHeight + 4);
+        // The cells are pre-rendered, so this is a single blit
+        this.layer.paint(g);
 
         // Draw the flag count and timer
+        int windowWidth = this.getWidth();
+        int hudY = view.y + view.height;
         g.setColor(Color.BLACK);
-        BufferedImage sprite = minesweeps.getSprite(0, 2);
-        g.drawImage(sprite, windowWidth - (windowWidth - boardWidth) / 2 - (windowWidth / 5) + 7,
-                windowHeight - (windowHeight - boardHeight) / 2 + 13, 28, 28, null);
-        sprite = minesweeps.getSprite(2, 2);
-        g.drawImage(sprite, boardWidth / 2 - (this.getWidth() / 5) - 28,
-                windowHeight - (windowHeight - boardHeight) / 2 + 13, 28, 28, null);
-
-        g.setFont(new Font("Courier", Font.BOLD, 22));
-        g.drawString(Integer.toString(flagCount),
-                windowWidth - (windowWidth - boardWidth) / 2 - (windowWidth / 5) + 39,
-                windowHeight - (windowHeight - boardHeight) / 2 + 35);
-        g.drawString(Integer.toString(this.ticker.time), boardWidth / 2 - (windowWidth / 5) + 4,
-                windowHeight - (windowHeight - boardHeight) / 2 + 35);
+        BufferedImage sprite = minesweeps.getSprite(0, 2, 28);
+        g.drawImage(sprite, view.x + view.width - (windowWidth / 5) + 7, hudY + 13, 28, 28, null);
+        sprite = minesweeps.getSprite(2, 2, 28);
+        g.drawImage(sprite, view.width / 2 - (windowWidth / 5) - 28, hudY + 13, 28, 28, null);
+
+        g.setFont(hudFont);
+        g.drawString(RenderCache.number(flagCount), view.x + view.width - (windowWidth / 5) + 39, hudY + 35);
+        g.drawString(RenderCache.number(this.ticker.getSeconds()), view.width / 2 - (windowWidth / 5) + 4,
+                hudY + 35);
+        Probe.PAINT.end(start, 0);
+        if (frameStart != 0) {
+            this.overlay.framePainted(System.nanoTime() - frameStart);
+        }
     }
 
     @Override
     public void removeNotify() {
         super.removeNotify();
         this.ticker.cancel();
+        this.logic.close();
+        if (this.getGame().getSpectatorFeed() != null) {
+            this.removeCellListener(this.getGame().getSpectatorFeed());
+        }
+        this.layer.dispose();
         if (this.animator != null) {
             this.animator.stop();
         }
     }
 
     /**
-     * Get a random number between 0 and max
+     * Get the area of the screen the timer is drawn in
      *
-     * @param max The maximum number
-     * @return The random number
+     * @return The timer area
      */
-    public int getRandom(int max) {
-        return getRandom(0, max);
+    private Rectangle getTimerArea() {
+        // Matches where paintComponent draws the timer text
+        Rectangle view = this.camera.getView();
+        int x = view.width / 2 - (this.getWidth() / 5) + 4;
+        int y = view.y + view.height + 35;
+        return new Rectangle(x, y - 24, 100, 30);
     }
 
     /**
-     * Get a random number between min and max
+     * Get the area of the screen the flag count is drawn in
      *
-     * @param min The minimum number
-     * @param max The maximum number
-     * @return The random number
+     * @return The flag count area
      */
-    public int getRandom(int min, int max) {
-        return random.nextInt(max - min) + min;
+    private Rectangle getFlagArea() {
+        // Matches where paintComponent draws the flag count text
+        Rectangle view = this.camera.getView();
+        int x = view.x + view.width - (this.getWidth() / 5) + 39;
+        int y = view.y + view.height + 35;
+        return new Rectangle(x, y - 24, 100, 30);
     }
 
     /**
-     * Sleep for a specified number of milliseconds
+     * Fit the camera view to the screen, leaving room for the HUD
+     */
+    private void updateView() {
+        int width = this.getWidth(), height = this.getHeight();
+        this.camera.setView(HORIZONTAL_PADDING / 2, VERTICAL_PADDING / 2, width - HORIZONTAL_PADDING,
+                height - VERTICAL_PADDING);
+
+        // Keep the minimap in the bottom right corner of the board, and the overlay in the top left
+        Rectangle view = this.camera.getView();
+        this.overlay.setLocation(view.x + 8, view.y + 8);
+        this.minimap.setLocation(view.x + view.width - this.minimap.getWidth() - 8,
+                view.y + view.height - this.minimap.getHeight() - 8);
+        this.cameraMoved();
+    }
+
+    /**
+     * Update the screen after the camera has moved or zoomed
+     */
+    public void cameraMoved() {
+        // The minimap is only useful when the board doesn't fit
+        this.minimap.setVisible(!this.camera.fitsView());
+        this.layer.invalidate();
+        this.repaint();
+    }
+
+    /**
+     * Get the board camera
+     *
+     * @return The camera
+     */
+    public Camera getCamera() {
+        return this.camera;
+    }
+
+    /**
+     * Add a listener for changes to the board's cells
      *
-     * @param millis The number of milliseconds to sleep for
+     * @param listener The listener
      */
-    private void sleep(int millis) {
-        try {
-            Thread.sleep(millis);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+    public void addCellListener(CellListener listener) {
+        this.cellListeners.add(listener);
+    }
+
+    /**
+     * Remove a listener for changes to the board's cells
+     *
+     * @param listener The listener
+     */
+    public void removeCellListener(CellListener listener) {
+        this.cellListeners.remove(listener);
+    }
+
+    /**
+     * Broadcast this game to spectators, starting from the board as it is now
+     *
+     * @param feed The spectator feed
+     */
+    public void broadcastTo(SpectatorFeed feed) {
+        feed.reset(this.columns, this.rows, this.getGame().getDifficulty().getMines());
+        for (int i = 0; i < this.cells.length; i++) {
+            if (this.cells[i] != 0) {
+                feed.cellChanged(i % this.columns, i / this.columns, this.cells[i]);
+            }
         }
+        this.addCellListener(feed);
     }
 
     /**
-     * Fill the board with cells based on the difficulty
+     * Start the game on the server if there is one, otherwise on the logic thread
      *
      * @param difficulty The difficulty
+     * @return The game session
      */
-    public void generateCells(Difficulty difficulty) {
-        // Fill the 2D array with Cell objects
-        for (int i = 0; i < difficulty.getWidth(); i++) {
-            for (int j = 0; j < difficulty.getHeight(); j++) {
-                this.board[i][j] = new Cell(this, difficulty, i, j, false);
-            }
+    private GameSession createSession(Difficulty difficulty) {
+        Consumer<BoardDelta> listener = delta -> SwingUtilities.invokeLater(() -> this.apply(delta));
+        InetSocketAddress server = this.getGame().getServer();
+        if (server != null) {
+            // Connects on its own thread, and falls back to playing locally if the server can't be reached or is lost
+            return new GameClient(server, this.columns, this.rows, difficulty.getMines(), listener,
+                    problem -> SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this.getGame(),
+                            problem, "Server", JOptionPane.WARNING_MESSAGE)));
         }
+        return new GameLogic(new Minefield(this.columns, this.rows, difficulty.getMines()), random.nextLong(),
+                listener);
+    }
 
-        System.out.printf("[BOARD] Board filled, %s mode\n", difficulty.toString().toLowerCase());
-        this.repaint();
+    /**
+     * Apply a delta published by the logic thread
+     *
+     * @param delta The cells changed by one command
+     */
+    private void apply(BoardDelta delta) {
+        if (this.ended) {
+            return;
+        }
+
+        for (int i = 0; i < delta.size(); i++) {
+            this.setState(delta.getCell(i), delta.getState(i));
+        }
+        int flagCount = this.getGame().getDifficulty().getMines() - delta.getFlagCount();
+        if (flagCount != this.flagCount) {
+            this.flagCount = flagCount;
+            this.repaint(this.getFlagArea());
+        }
+        this.revealedCount = delta.getRevealedCount();
+        if (delta.getSound() != null) {
+            this.getGame().getSoundManager().get(delta.getSound()).play();
+        }
+
+        if (delta.getOutcome() == GameState.WON) {
+            this.win(delta);
+        } else if (delta.getOutcome() == GameState.LOST) {
+            this.lose(delta);
+        }
     }
 
     /**
-     * Get the cell at the specified coordinates
-     * Returns an Optional<Cell> because a cell may not exist where clicked
+     * Change the state of a cell and notify the listeners
      *
-     * @param x The x coordinate
-     * @param y The y coordinate
-     * @return The cell at the specified coordinates, if it exists
+     * @param index The index of the cell
+     * @param state The new state bits
      */
-    public Optional<Cell> getCell(int x, int y) {
-        // This is Optional<T> because a cell may not exist at the specified coordinates
-        try {
-            return Optional.of(board[x][y]);
-        } catch (ArrayIndexOutOfBoundsException e) {
-            return Optional.empty();
+    private void setState(int index, int state) {
+        this.cells[index] = (byte) state;
+        // The board layer repaints the cell once it has been redrawn
+        int column = index % this.columns, row = index / this.columns;
+        for (int i = 0; i < this.cellListeners.size(); i++) {
+            this.cellListeners.get(i).cellChanged(column, row, state);
         }
     }
 
     /**
-     * Generate mines on the board, avoiding the clicked cell
+     * Get the state of a cell, as last published by the logic thread
      *
-     * @param clicked The cell that was clicked
+     * @param x The column of the cell
+     * @param y The row of the cell
+     * @return The state bits of the cell
      */
-    public void generateMines(Cell clicked) {
-        Difficulty difficulty = this.getGame().getDifficulty();
-        int mines = difficulty.getMines();
-
-        // Randomly place mines # of mines on the board
-        do {
-            int x = this.getRandom(difficulty.getWidth());
-            int y = this.getRandom(difficulty.getHeight());
-            Cell cell = this.getCell(x, y).get();
-            if (!cell.isMine() && (clicked == null || (cell != clicked && !clicked.isNeighbor(cell)))) {
-                cell.setMine(true);
-                mines--;
-            }
-        } while (mines > 0);
+    public int getState(int x, int y) {
+        return this.cells[y * this.columns + x];
+    }
 
-        System.out.printf("[BOARD] Backfilled mines, %s mode (%d)\n", difficulty.toString().toLowerCase(),
-                difficulty.getMines());
+    /**
+     * Get the number of columns on the board
+     *
+     * @return The number of columns
+     */
+    public int getColumns() {
+        return this.columns;
     }
 
     /**
-     * Get all the mines on the board
+     * Get the number of rows on the board
      *
-     * @return All the mines
+     * @return The number of rows
      */
-    public ArrayList<Cell> getMines() {
-        // Get all the mines on the board
-        ArrayList<Cell> mines = new ArrayList<>();
-        for (Cell[] row : this.board) {
-            for (Cell cell : row) {
-                if (cell.isMine()) {
-                    mines.add(cell);
-                }
-            }
-        }
-        // Randomly shuffle the mines
-        Collections.shuffle(mines);
-        return mines;
+    public int getRows() {
+        return this.rows;
     }
 
     /**
-     * Win the game, play the win animation
+     * Get the game timer
+     *
+     * @return The game timer
      */
-    public void win() {
-        System.out.println("[BOARD] You win!");
-        this.ticker.cancel();
+    public TimerComponent getTicker() {
+        return this.ticker;
+    }
 
-        // As a winning animation, we reveal all the mines, getting faster as we go
-        // We must use a timer to do this, otherwise the UI will not update
-        // The mines revealed should be random
-        Game game = this.getGame();
-        SoundManager soundManager = game.getSoundManager();
-        this.animator = new Timer(200, new ActionListener() {
-            private ArrayList<Cell> mines = getMines();
-            private SoundManager.Sound sound = soundManager.get("revealMine");
-            private boolean lastCycle = false;
+    /**
+     * Get a random number between 0 and max
+     *
+     * @param max The maximum number
+     * @return The random number
+     */
+    public int getRandom(int max) {
+        return getRandom(0, max);
+    }
 
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                // Reveal a random mine
-                if (mines.size() > 0) {
-                    Cell mine = mines.remove(0);
-                    mine.setFlagged(true);
-                    mine.setRevealed(true, false);
-                    sound.play();
-                    animator.setDelay(Math.max(1, animator.getDelay() - 1));
-                }
+    /**
+     * Get a random number between min and max
+     *
+     * @param min The minimum number
+     * @param max The maximum number
+     * @return The random number
+     */
+    public int getRandom(int min, int max) {
+        return random.nextInt(max - min) + min;
+    }
 
-                // If we've reached the end, stop the timer after 50ms
-                if (lastCycle) {
-                    animator.stop();
-                    sleep(400);
-                    game.switchState(GameState.WON);
-                    sound = soundManager.get("win");
-                    sound.play();
-                }
-                if (mines.size() == 0) {
-                    lastCycle = true;
-                }
-            }
-        });
-        this.animator.start();
+    /**
+     * Take back the last move
+     */
+    public void undo() {
+        this.logic.submit(new Command(Command.Type.UNDO));
+    }
+
+    /**
+     * Make the last move that was taken back again
+     */
+    public void redo() {
+        this.logic.submit(new Command(Command.Type.REDO));
+    }
+
+    /**
+     * Reveal all the mines without ending the game
+     */
+    public void revealMines() {
+        this.logic.submit(new Command(Command.Type.REVEAL_MINES));
+    }
+
+    /**
+     * Win the game, play the win animation
+     */
+    public void win() {
+        this.forced = true;
+        this.logic.submit(new Command(Command.Type.WIN));
     }
 
     /**
      * Lose the game, play the lose animation
      */
     public void lose() {
+        this.forced = true;
+        this.logic.submit(new Command(Command.Type.LOSE));
+    }
+
+    /**
+     * Play the win animation once the logic thread has decided the game is won
+     *
+     * @param delta The delta that won the game
+     */
+    private void win(BoardDelta delta) {
+        System.out.println("[BOARD] You win!");
+        this.ended = true;
+        this.ticker.cancel();
+        this.record(delta, true);
+        this.animateMines(delta, true, GameState.WON, "win");
+    }
+
+    /**
+     * Play the lose animation once the logic thread has decided the game is lost
+     *
+     * @param delta The delta that lost the game
+     */
+    private void lose(BoardDelta delta) {
         System.out.println("[BOARD] You lose!");
+        this.ended = true;
         this.ticker.cancel();
+        this.record(delta, false);
+        this.animateMines(delta, false, GameState.LOST, "death");
+    }
+
+    /**
+     * Record the finished game in the stats
+     *
+     * @param delta The delta that ended the game, holding the mines
+     * @param won   Whether the game was won
+     */
+    private void record(BoardDelta delta, boolean won) {
+        if (this.forced) {
+            this.getGame().getStats().skip();
+            return;
+        }
+        int[] mines = new int[delta.getMineCount()];
+        for (int i = 0; i < mines.length; i++) {
+            mines[i] = delta.getMine(i);
+        }
+        GameRecord record = new GameRecord(System.currentTimeMillis(), this.logic.getSeed(),
+                this.getGame().getDifficulty(), won, (int) this.ticker.getElapsedMillis(),
+                Minefield.countThreeBV(this.columns, this.rows, mines), this.clicks);
+        int place = this.getGame().getStats().record(record);
+        System.out.println("[BOARD] Recorded " + record + (place < 0 ? "" : ", place " + (place + 1)));
+    }
 
-        // As a losing animation, we reveal all the mines, getting faster as we go
+    /**
+     * Reveal all the mines, getting faster as we go, then switch to the end screen
+     * The whole animation runs on a fixed time budget, no matter the mine count
+     *
+     * @param delta    The delta that ended the game, holding the mines
+     * @param flag     Whether to flag the mines as they are revealed
+     * @param state    The game state to switch to afterwards
+     * @param endSound The sound to play after switching
+     */
+    private void animateMines(BoardDelta delta, boolean flag, GameState state, String endSound) {
         // We must use a timer to do this, otherwise the UI will not update
-        // The mines revealed should be random
+        // Each frame reveals however many mines are due by now, easing in quadratically
         Game game = this.getGame();
         SoundManager soundManager = game.getSoundManager();
-        this.animator = new Timer(200, new ActionListener() {
-            private ArrayList<Cell> mines = getMines();
-            private SoundManager.Sound sound = soundManager.get("revealMine");
-            private boolean lastCycle = false;
+        int mines = delta.getMineCount();
+        long duration = Math.min(ANIMATION_BUDGET, (long) mines * ANIMATION_PACE) * 1_000_000L;
+
+        this.animator = new Timer(ANIMATION_FRAME, new ActionListener() {
+            private final SoundManager.Sound sound = soundManager.get("revealMine");
+            private long start = -1;
+            private int revealed = 0;
 
             @Override
             public void actionPerformed(ActionEvent e) {
-                // Reveal a random mine
-                if (mines.size() > 0) {
-                    Cell mine = mines.remove(0);
-                    mine.setRevealed(true, false);
-                    sound.play();
-                    animator.setDelay(Math.max(1, animator.getDelay() - 1));
+                long now = System.nanoTime();
+                if (this.start < 0) {
+                    this.start = now;
                 }
-
-                // If we've reached the end, stop the timer after 50ms
-                if (lastCycle) {
-                    animator.stop();
-                    sleep(400);
-                    game.switchState(GameState.LOST);
-                    sound = soundManager.get("death");
-                    sound.play();
+                double progress = duration == 0 ? 1 : Math.min(1, (double) (now - this.start) / duration);
+                int due = (int) Math.ceil(mines * progress * progress);
+
+                if (due > this.revealed) {
+                    // The game is over, so the mines are only revealed on screen
+                    // Hidden cells never came with their mine bit, so it's added here
+                    for (; this.revealed < due; this.revealed++) {
+                        int mine = delta.getMine(this.revealed);
+                        int reveal = Minefield.MINE | Minefield.REVEALED | (flag ? Minefield.FLAGGED : 0);
+                        if ((cells[mine] & reveal) != reveal) {
+                            setState(mine, cells[mine] | reveal);
+                        }
+                    }
+                    // One sound per frame, however many mines it revealed
+                    this.sound.play();
                 }
-                if (mines.size() == 0) {
-                    lastCycle = true;
+                // Once done, let the last mines show for a moment before switching screens
+                if (this.revealed >= mines) {
+                    animator.stop();
+                    game.queueState(state, TRANSITION_DELAY).then(0, () -> soundManager.get(endSound).play());
                 }
             }
         });
+        this.animator.setInitialDelay(0);
         this.animator.start();
     }
 
     /**
-     * Get the number of flags placed
+     * Get the performance overlay
      *
-     * @return The number of flags placed
+     * @return The overlay
      */
-    public int getFlagCount() {
-        return this.flagCount;
+    public PerformanceOverlay getPerformanceOverlay() {
+        return this.overlay;
     }
 
     /**
-     * Update the number of flags placed
+     * Get the number of flags left to place
      *
-     * @param change The amount to change the flag count by
+     * @return The number of flags left
      */
-    public void updateFlagCount(int change) {
-        this.flagCount += change;
+    public int getFlagCount() {
+        return this.flagCount;
     }
 
     /**
@@ -317,33 +555,18 @@ public class GameBoard extends Screen {
         return this.revealedCount;
     }
 
-    /**
-     * Increase the number of cells revealed by 1
-     */
-    public void updateRevealedCount() {
-        this.updateRevealedCount(1);
-    }
-
-    /**
-     * Update the number of cells revealed
-     *
-     * @param change The amount to change the revealed count by
-     */
-    public void updateRevealedCount(int change) {
-        this.revealedCount += change;
-        Difficulty difficulty = this.getGame().getDifficulty();
-        int cells = difficulty.getCells() - difficulty.getMines();
-        if (this.revealedCount >= cells) {
-            this.win();
-        }
-    }
-
     /**
      * Handles mouse input
+     * Dragging pans the board, the wheel scrolls it and holding control zooms
      */
-    private class MouseInput implements MouseListener {
+    private class MouseInput extends MouseAdapter {
+        // How far the mouse must move before a press becomes a drag
+        private static final int DRAG_THRESHOLD = 4;
+
         private final GameBoard board;
-        private boolean firstClick = false;
+        private Point pressed;
+        private Point last;
+        private boolean dragging = false;
 
         /**
          * Create a new mouse input handler
@@ -355,84 +578,75 @@ public class GameBoard extends Screen {
             this.board = board;
         }
 
-        /**
-         * Get the row of the cell at the specified x coordinate
-         *
-         * @param cord The x coordinate
-         * @return The row of the cell
-         */
-        private int rowOf(int cord) {
-            Difficulty difficulty = this.board.getGame().getDifficulty();
-            int cellSize = difficulty.getCellSize();
-            int gridWidth = difficulty.getWidth() * cellSize;
-            int bufferX = (board.getWidth() - gridWidth) / 2;
-            return (cord - bufferX) / cellSize;
-        }
-
-        /**
-         * Get the column of the cell at the specified y coordinate
-         *
-         * @param cord The y coordinate
-         * @return The column of the cell
-         */
-        private int colOf(int cord) {
-            Difficulty difficulty = this.board.getGame().getDifficulty();
-            int cellSize = difficulty.getCellSize();
-            int gridHeight = difficulty.getHeight() * cellSize;
-            int bufferY = (board.getHeight() - gridHeight) / 2;
-            return (cord - bufferY) / cellSize;
-        }
-
         @Override
         public void mouseClicked(MouseEvent e) {
-            SoundManager soundManager = this.board.getGame().getSoundManager();
-            int mouseX = this.rowOf(e.getX());
-            int mouseY = this.colOf(e.getY());
+            Camera camera = this.board.getCamera();
+            int mouseX = camera.columnAt(e.getX());
+            int mouseY = camera.rowAt(e.getY());
 
-            if (animator != null) {
+            if (ended || this.dragging) {
                 return;
             }
 
-            Optional<Cell> maybeCell = this.board.getCell(mouseX, mouseY);
-            if (!maybeCell.isPresent()) {
+            if (mouseX < 0 || mouseY < 0 || mouseX >= columns || mouseY >= rows) {
                 return;
             }
-            Cell cell = maybeCell.get();
 
-            if (SwingUtilities.isLeftMouseButton(e) && !this.firstClick) {
-                this.board.generateMines(cell);
-                this.firstClick = true;
-            }
-
-            if (SwingUtilities.isRightMouseButton(e) && !cell.isRevealed() && this.firstClick) {
-                cell.setFlagged(!cell.isFlagged());
-            } else if (SwingUtilities.isLeftMouseButton(e) && !cell.isFlagged() && !cell.isRevealed()) {
-                cell.setRevealed(true);
-                SoundManager.Sound sound = soundManager.get("click");
-                sound.play();
-            } else if (SwingUtilities.isMiddleMouseButton(e) && cell.isRevealed()) {
-                cell.revealNeighbors();
+            // The rules run on the logic thread, these only queue commands
+            // Clicks read the packed state directly rather than wrapping the cell, the command is all that's allocated
+            int state = this.board.getState(mouseX, mouseY);
+            boolean revealed = (state & Minefield.REVEALED) != 0;
+            if (SwingUtilities.isRightMouseButton(e) && !revealed) {
+                logic.submit(new Command(Command.Type.FLAG, mouseX, mouseY));
+                clicks++;
+            } else if (SwingUtilities.isLeftMouseButton(e) && (state & Minefield.FLAGGED) == 0 && !revealed) {
+                logic.submit(new Command(Command.Type.REVEAL, mouseX, mouseY));
+                clicks++;
+            } else if (SwingUtilities.isMiddleMouseButton(e) && revealed) {
+                logic.submit(new Command(Command.Type.CHORD, mouseX, mouseY));
+                clicks++;
             }
         }
 
         @Override
         public void mousePressed(MouseEvent e) {
-
+            this.pressed = e.getPoint();
+            this.last = this.pressed;
+            this.dragging = false;
         }
 
         @Override
-        public void mouseReleased(MouseEvent e) {
+        public void mouseDragged(MouseEvent e) {
+            if (this.pressed == null) {
+                return;
+            }
+            if (!this.dragging && this.pressed.distance(e.getPoint()) < DRAG_THRESHOLD) {
+                return;
+            }
 
+            this.dragging = true;
+            this.board.getCamera().pan(this.last.x - e.getX(), this.last.y - e.getY());
+            this.last = e.getPoint();
+            this.board.cameraMoved();
         }
 
         @Override
-        public void mouseEntered(MouseEvent e) {
-
+        public void mouseReleased(MouseEvent e) {
+            this.pressed = null;
         }
 
         @Override
-        public void mouseExited(MouseEvent e) {
-
+        public void mouseWheelMoved(MouseWheelEvent e) {
+            Camera camera = this.board.getCamera();
+            double rotation = e.getPreciseWheelRotation();
+            if (e.isControlDown()) {
+                camera.setZoom(camera.getZoom() * Math.pow(ZOOM_STEP, -rotation), e.getX(), e.getY());
+            } else if (e.isShiftDown()) {
+                camera.pan(rotation * e.getScrollAmount() * 10, 0);
+            } else {
+                camera.pan(0, rotation * e.getScrollAmount() * 10);
+            }
+            this.board.cameraMoved();
         }
     }
 }
@@ -9,6 +9,8 @@ import javax.swing.Timer;
 
 import es.dolfi.minesweeper.Game;
 import es.dolfi.minesweeper.enums.*;
+import es.dolfi.minesweeper.stats.StatsStore;
+import es.dolfi.minesweeper.util.RenderCache;
 import es.dolfi.minesweeper.util.SpriteSheet;
 
 /**
@@ -16,7 +18,9 @@ import es.dolfi.minesweeper.util.SpriteSheet;
  */
 public class LoseScreen extends Screen {
     private final JButton playButton;
-    public static final SpriteSheet minesweeps = SpriteSheet.load("spritresheet.png", 32);
+    public static final SpriteSheet minesweeps = SpriteSheet.load("spritesheet.png", 32);
+    private static final Font titleFont = RenderCache.font("Arial", Font.BOLD, 48);
+    private static final Font resultFont = RenderCache.font("Arial", Font.BOLD, 18);
 
     private Timer animator;
     private Timer boatShaker;
@@ -24,6 +28,7 @@ public class LoseScreen extends Screen {
     private int spriteCol = 7;
     private int boatY = 125;
     private int boatX = 230;
+    private final String result;
 
     /**
      * Create a new lose screen
@@ -46,10 +51,19 @@ public class LoseScreen extends Screen {
         this.playButton.setFont(new Font(font.getName(), Font.BOLD, 24));
 
         this.components = new Component[] { this.playButton };
+        StatsStore stats = game.getStats();
+        Difficulty difficulty = game.getDifficulty();
+        this.result = String.format("Won %d of %d on %s", stats.getWon(difficulty), stats.getPlayed(difficulty),
+                difficulty.toString().toLowerCase());
         this.animate();
         this.boatShaker();
     }
 
+    @Override
+    public boolean supportsActiveRendering() {
+        return true;
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
@@ -78,8 +92,10 @@ public class LoseScreen extends Screen {
         if (this.spriteRow >= 4 && this.spriteCol >= 4) {
             this.addComponents();
             g.setColor(Color.WHITE);
-            g.setFont(new Font("Arial", Font.BOLD, 48));
+            g.setFont(titleFont);
             g.drawString("You Lose!", 175, 100);
+            g.setFont(resultFont);
+            g.drawString(this.result, (this.getWidth() - g.getFontMetrics().stringWidth(this.result)) / 2, 135);
         }
     }
 
@@ -5,6 +5,8 @@ import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
 
 import es.dolfi.minesweeper.Game;
+import es.dolfi.minesweeper.util.RenderCache;
+import es.dolfi.minesweeper.util.StartupTimer;
 
 /**
  * Game screen interface
@@ -20,22 +22,17 @@ public class Screen extends JPanel {
     public Screen(Game game) {
         super();
         this.setLayout(null);
+        game.setResizable(false);
         this.setSize(game.getSize());
     }
 
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        final Graphics2D g2d = (Graphics2D) g;
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-
-        int width = this.getWidth();
-        int height = this.getHeight();
-        Color color1 = new Color(0xCCCCCC);
-        Color color2 = new Color(0x6666FF);
-        GradientPaint gp = new GradientPaint(0, 0, color1, width, height, color2);
-        g2d.setPaint(gp);
-        g2d.fillRect(0, 0, width, height);
+
+        // The gradient is pre-rendered once per screen size
+        g.drawImage(RenderCache.background(this.getWidth(), this.getHeight()), 0, 0, null);
+        StartupTimer.firstFrame();
     }
 
     @Override
@@ -43,6 +40,16 @@ public class Screen extends JPanel {
         return this.getGame().getSize();
     }
 
+    /**
+     * Check if the screen can be actively rendered
+     * Screens with components that need to be showing (such as popups) can't be
+     *
+     * @return Whether the screen supports active rendering
+     */
+    public boolean supportsActiveRendering() {
+        return false;
+    }
+
     /**
      * Add all defined components to the screen
      */
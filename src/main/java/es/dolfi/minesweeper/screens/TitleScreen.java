@@ -1,23 +1,24 @@
 package es.dolfi.minesweeper.screens;
 
 import java.awt.*;
-import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JComboBox;
 
 import es.dolfi.minesweeper.Game;
 import es.dolfi.minesweeper.components.MuteToggle;
 import es.dolfi.minesweeper.enums.*;
+import es.dolfi.minesweeper.util.RenderCache;
 import es.dolfi.minesweeper.util.SoundManager;
 
 /**
  * Initial title screen
  */
 public class TitleScreen extends Screen {
+    private static final Font titleFont = RenderCache.font("Arial", Font.BOLD, 48);
     private final JComboBox<String> difficultyBox;
     private final JButton playButton;
     private final MuteToggle muteButton;
-    private final SoundManager.Sound sound;
+    private final SoundManager.Stream sound;
 
     /**
      * Create a new title screen
@@ -49,7 +50,7 @@ public class TitleScreen extends Screen {
         this.addComponents();
 
         SoundManager soundManager = game.getSoundManager();
-        this.sound = soundManager.get("shipbg");
+        this.sound = soundManager.stream("shipbg");
         this.sound.play(-1);
     }
 
@@ -59,16 +60,16 @@ public class TitleScreen extends Screen {
         g.setColor(Color.BLACK);
         g.fillRect(0, 0, this.getWidth(), this.getHeight());
         g.setColor(Color.WHITE);
-        g.setFont(new Font("Arial", Font.BOLD, 48));
+        g.setFont(titleFont);
         g.drawString("MineSweeper", 140, 100);
 
-        Image funnyGIF = new ImageIcon("res/rotat.gif").getImage();
+        Image funnyGIF = RenderCache.image("rotat.gif");
         g.drawImage(funnyGIF, 260, 275, this);
     }
 
     @Override
     public void removeNotify() {
         super.removeNotify();
-        this.sound.stop();
+        this.sound.close();
     }
 }
@@ -10,6 +10,9 @@ import javax.swing.Timer;
 
 import es.dolfi.minesweeper.Game;
 import es.dolfi.minesweeper.enums.GameState;
+import es.dolfi.minesweeper.stats.GameRecord;
+import es.dolfi.minesweeper.stats.StatsStore;
+import es.dolfi.minesweeper.util.RenderCache;
 import es.dolfi.minesweeper.util.SpriteSheet;
 
 /**
@@ -17,11 +20,14 @@ import es.dolfi.minesweeper.util.SpriteSheet;
  */
 public class WinScreen extends Screen {
     private final JButton playButton;
-    public static final SpriteSheet minesweeps = SpriteSheet.load("spritresheet.png", 32);
+    public static final SpriteSheet minesweeps = SpriteSheet.load("spritesheet.png", 32);
+    private static final Font titleFont = RenderCache.font("Arial", Font.BOLD, 48);
+    private static final Font resultFont = RenderCache.font("Arial", Font.BOLD, 18);
 
     private Timer boatShaker;
     private int boatY = 145;
     private int boatX = 230;
+    private final String result;
 
     /**
      * Create a new win screen
@@ -44,9 +50,15 @@ public class WinScreen extends Screen {
         this.playButton.setFont(new Font(font.getName(), Font.BOLD, 24));
 
         this.components = new Component[] { this.playButton };
+        this.result = describe(game.getStats());
         this.boatShaker();
     }
 
+    @Override
+    public boolean supportsActiveRendering() {
+        return true;
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
@@ -72,9 +84,29 @@ public class WinScreen extends Screen {
             this.addComponents();
 
             g.setColor(Color.BLACK);
-            g.setFont(new Font("Arial", Font.BOLD, 48));
+            g.setFont(titleFont);
             g.drawString("You Win!", 190, 100);
+            if (this.result != null) {
+                g.setFont(resultFont);
+                g.drawString(this.result, (this.getWidth() - g.getFontMetrics().stringWidth(this.result)) / 2, 135);
+            }
+        }
+    }
+
+    /**
+     * Describe the game just won
+     *
+     * @param stats The stats it was recorded in
+     * @return The time and leaderboard place, or null if it wasn't recorded
+     */
+    private static String describe(StatsStore stats) {
+        GameRecord last = stats.getLast();
+        if (last == null || !last.isWon()) {
+            return null;
         }
+        String time = String.format("%.2fs, 3BV %d", last.getTime() / 1000.0, last.getThreeBV());
+        int place = stats.getLastPlace();
+        return place < 0 ? time : time + ", #" + (place + 1) + " on " + last.getDifficulty().toString().toLowerCase();
     }
 
     private void boatShaker() {
@@ -0,0 +1,263 @@
+package es.dolfi.minesweeper.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+import es.dolfi.minesweeper.logic.BoardDelta;
+import es.dolfi.minesweeper.logic.Command;
+import es.dolfi.minesweeper.logic.GameLogic;
+import es.dolfi.minesweeper.logic.GameSession;
+import es.dolfi.minesweeper.logic.Minefield;
+
+/**
+ * Plays a game on a server, which applies the rules and sends back deltas
+ * Connecting and writing happen on the client's own thread, commands are only queued by the caller
+ * If the server can't be reached, or is lost before the game ends, the game is played locally instead
+ */
+public class GameClient implements GameSession {
+    private static final int CONNECT_TIMEOUT = 3000;
+    // Commands past this many are dropped, input can't usefully get that far ahead
+    private static final int QUEUE_SIZE = 256;
+    private static final Random random = new Random();
+
+    private final InetSocketAddress address;
+    private final int width;
+    private final int height;
+    private final int mines;
+    private final Consumer<BoardDelta> listener;
+    private final Consumer<String> problems;
+    private final BlockingQueue<Command> commands = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final ByteBuffer request = ByteBuffer.allocate(Protocol.MAX_REQUEST);
+    private final Thread writer;
+    private volatile SocketChannel channel;
+    private volatile GameSession local;
+    private volatile long seed;
+    private volatile boolean closed = false;
+
+    // Guarded by the client, so a delta from the server is never published after the switch to a local game
+    private boolean started = false;
+    private boolean ended = false;
+
+    /**
+     * Start a new game on a server, connecting in the background
+     *
+     * @param address  The server's address
+     * @param width    The number of columns
+     * @param height   The number of rows
+     * @param mines    The number of mines
+     * @param listener Called on the client's threads with each delta
+     * @param problems Called on the client's threads with what went wrong, when the game switches to local play
+     */
+    public GameClient(InetSocketAddress address, int width, int height, int mines, Consumer<BoardDelta> listener,
+            Consumer<String> problems) {
+        this.address = address;
+        this.width = width;
+        this.height = height;
+        this.mines = mines;
+        this.listener = listener;
+        this.problems = problems;
+        this.writer = new Thread(this::write, "GameClient");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Get the seed the server placed the mines with, which it only tells once the game has ended
+     *
+     * @return The seed, or 0 while the game is still going
+     */
+    @Override
+    public long getSeed() {
+        GameSession local = this.local;
+        return local != null ? local.getSeed() : this.seed;
+    }
+
+    @Override
+    public boolean submit(Command command) {
+        if (this.closed || !this.commands.offer(command)) {
+            System.out.println("[CLIENT] Dropped " + command);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        this.writer.interrupt();
+        GameSession local = this.local;
+        if (local != null) {
+            local.close();
+        }
+        this.close(this.channel);
+    }
+
+    /**
+     * Close the channel to the server, if it was ever opened
+     *
+     * @param channel The channel, or null
+     */
+    private void close(SocketChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("[CLIENT] Failed to close: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Connect to the server and start the game, or fall back to playing locally
+     */
+    private void connect() {
+        try {
+            SocketChannel channel = SocketChannel.open();
+            this.channel = channel;
+            // Addresses are kept unresolved until a game is actually played
+            channel.socket().connect(new InetSocketAddress(this.address.getHostString(), this.address.getPort()),
+                    CONNECT_TIMEOUT);
+            channel.socket().setTcpNoDelay(true);
+            this.request.clear();
+            Protocol.putNewGame(this.request, this.width, this.height, this.mines);
+            this.send();
+        } catch (IOException e) {
+            this.fallBack("Couldn't reach " + Protocol.formatAddress(this.address) + ": " + e.getMessage());
+            return;
+        }
+
+        Thread reader = new Thread(this::read, "GameClientReader");
+        reader.setDaemon(true);
+        reader.start();
+        System.out.println("[CLIENT] Connected to " + Protocol.formatAddress(this.address));
+    }
+
+    /**
+     * Switch to playing locally, on a new board, unless the game is already over or the client closed
+     * The board as the server left it is cleared first, the local game has its own mines
+     *
+     * @param problem What went wrong with the server
+     */
+    private synchronized void fallBack(String problem) {
+        this.close(this.channel);
+        if (this.closed || this.local != null || this.ended) {
+            return;
+        }
+
+        System.out.println("[CLIENT] " + problem + ", playing locally");
+        if (this.started) {
+            int[] cells = new int[this.width * this.height];
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = i;
+            }
+            this.listener.accept(new BoardDelta(cells, new byte[cells.length], 0, 0, null, null, null));
+        }
+        this.local = new GameLogic(new Minefield(this.width, this.height, this.mines), random.nextLong(),
+                this.listener);
+        this.problems.accept(problem + (this.started ? ", starting again locally" : ", playing locally"));
+    }
+
+    /**
+     * Connect, then send each queued command in order until the client is closed
+     */
+    private void write() {
+        this.connect();
+        try {
+            while (!this.closed) {
+                Command command = this.commands.take();
+                GameSession local = this.local;
+                if (local != null) {
+                    local.submit(command);
+                    continue;
+                }
+                this.request.clear();
+                Protocol.putCommand(this.request, command.getType(), command.getX(), command.getY());
+                try {
+                    this.send();
+                } catch (IOException e) {
+                    this.fallBack("Failed to send " + command + ": " + e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closed while waiting for a command
+        }
+    }
+
+    /**
+     * Write the pending request, only called on the client's thread
+     */
+    private void send() throws IOException {
+        this.request.flip();
+        while (this.request.hasRemaining()) {
+            this.channel.write(this.request);
+        }
+    }
+
+    /**
+     * Read deltas from the server until the connection closes or breaks the protocol
+     */
+    private void read() {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        try {
+            while (!this.closed) {
+                header.clear();
+                this.readFully(header);
+                // The length is checked before it's trusted with an allocation
+                int length = header.getInt(0);
+                if (length <= 0 || length > Protocol.MAX_DELTA - 4) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                ByteBuffer frame = ByteBuffer.allocate(length);
+                this.readFully(frame);
+                frame.flip();
+                byte type = frame.get();
+                if (type != Protocol.DELTA) {
+                    throw new IOException("Unexpected frame " + type);
+                }
+                BoardDelta delta = Protocol.decode(frame);
+                if (delta.getOutcome() != null) {
+                    this.seed = Protocol.getSeed(frame);
+                }
+                this.publish(delta);
+            }
+        } catch (IOException | RuntimeException e) {
+            // A delta that doesn't decode is as broken as a dropped connection
+            this.fallBack("Lost the server: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Publish a delta from the server, unless the game has already switched to local play
+     *
+     * @param delta The delta
+     */
+    private synchronized void publish(BoardDelta delta) {
+        if (this.local != null) {
+            return;
+        }
+        this.started = true;
+        this.ended |= delta.getOutcome() != null;
+        this.listener.accept(delta);
+    }
+
+    /**
+     * Fill a buffer from the server
+     *
+     * @param buffer The buffer to fill
+     */
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer) < 0) {
+                throw new EOFException("Server closed the connection");
+            }
+        }
+    }
+}
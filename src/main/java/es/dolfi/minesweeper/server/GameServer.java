@@ -0,0 +1,463 @@
+package es.dolfi.minesweeper.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import es.dolfi.minesweeper.logic.BoardDelta;
+import es.dolfi.minesweeper.logic.Command;
+import es.dolfi.minesweeper.logic.GameLogic;
+import es.dolfi.minesweeper.logic.Minefield;
+
+/**
+ * Hosts many games at once, applying the rules headlessly for every connected client
+ * Each thread runs a selector loop over its share of the sessions, so no session ever gets a thread of its own
+ * Moves are applied on a pool of workers, so a big flood or a huge new board never holds up the rest of a loop
+ */
+public class GameServer {
+    // A session is dropped once this many bytes are waiting to be written to it, which leaves room for the
+    // largest delta a legal board can make, a flood over every cell, and everything queued behind it
+    private static final long MAX_PENDING = 2L * Protocol.MAX_DELTA;
+    // Requests waiting for a worker past this many mean the client isn't waiting for its replies
+    private static final int MAX_REQUESTS = 1024;
+    // Moves each session can undo, older ones are forgotten so a long game doesn't grow without end
+    private static final int MAX_HISTORY = 256;
+    private static final SecureRandom seeds = new SecureRandom();
+
+    private final ServerSocketChannel server;
+    private final Loop[] loops;
+    private final ExecutorService workers;
+    private volatile boolean running = true;
+    private int next = 0;
+
+    /**
+     * Create a new server, bound but not yet running
+     *
+     * @param address The address to listen on
+     * @param threads The number of selector loops, and of workers
+     * @throws IOException If the address can't be bound
+     */
+    public GameServer(InetSocketAddress address, int threads) throws IOException {
+        AtomicInteger workers = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "ServerWorker-" + workers.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = ServerSocketChannel.open();
+        this.server.configureBlocking(false);
+        this.server.bind(address, 1024);
+        this.loops = new Loop[Math.max(1, threads)];
+        for (int i = 0; i < this.loops.length; i++) {
+            this.loops[i] = new Loop(Selector.open());
+        }
+        // The first loop accepts connections and hands them out to all of them
+        this.server.register(this.loops[0].selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Start the selector loops
+     */
+    public void start() {
+        for (int i = 0; i < this.loops.length; i++) {
+            Thread thread = new Thread(this.loops[i], "ServerLoop-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        System.out.printf("[SERVER] Listening on port %d with %d loops%n", this.getPort(), this.loops.length);
+    }
+
+    /**
+     * Get the port the server is listening on
+     *
+     * @return The port
+     */
+    public int getPort() {
+        return this.server.socket().getLocalPort();
+    }
+
+    /**
+     * Stop the server and drop every session
+     */
+    public void close() {
+        this.running = false;
+        this.workers.shutdownNow();
+        for (Loop loop : this.loops) {
+            loop.selector.wakeup();
+        }
+        try {
+            this.server.close();
+        } catch (IOException e) {
+            System.out.println("[SERVER] Failed to close: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Accept every pending connection and hand each to a loop
+     */
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = this.server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Loop loop = this.loops[this.next++ % this.loops.length];
+            loop.incoming.add(channel);
+            loop.selector.wakeup();
+        }
+    }
+
+    /**
+     * Run a server from the command line
+     *
+     * @param args The port and number of loops, both optional
+     * @throws IOException          If the port can't be bound
+     * @throws InterruptedException If interrupted while serving
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Protocol.DEFAULT_PORT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        GameServer server = new GameServer(new InetSocketAddress(port), threads);
+        server.start();
+        Thread.currentThread().join();
+    }
+
+    /**
+     * A selector loop, serving the sessions handed to it
+     */
+    private class Loop implements Runnable {
+        private final Selector selector;
+        private final ConcurrentLinkedQueue<SocketChannel> incoming = new ConcurrentLinkedQueue<>();
+        // Sessions a worker has queued output for
+        private final ConcurrentLinkedQueue<Session> flushing = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Create a new loop
+         *
+         * @param selector The loop's selector
+         */
+        public Loop(Selector selector) {
+            this.selector = selector;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    this.selector.select();
+                    SocketChannel channel;
+                    while ((channel = this.incoming.poll()) != null) {
+                        channel.register(this.selector, SelectionKey.OP_READ, new Session(channel, this));
+                    }
+                    Session session;
+                    while ((session = this.flushing.poll()) != null) {
+                        this.flush(session);
+                    }
+
+                    Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        this.handle(key);
+                    }
+                } catch (IOException e) {
+                    System.out.println("[SERVER] Selector failed: " + e.getMessage());
+                }
+            }
+
+            for (SelectionKey key : this.selector.keys()) {
+                closeQuietly(key.channel());
+            }
+            closeQuietly(this.selector);
+        }
+
+        /**
+         * Have the loop write a session's output, from any thread
+         *
+         * @param session The session
+         */
+        public void flushLater(Session session) {
+            this.flushing.add(session);
+            this.selector.wakeup();
+        }
+
+        /**
+         * Write a session's output, if it's still connected
+         *
+         * @param session The session
+         */
+        private void flush(Session session) {
+            SelectionKey key = session.channel.keyFor(this.selector);
+            if (key == null || !key.isValid()) {
+                return;
+            }
+            try {
+                session.flush(key);
+            } catch (IOException e) {
+                key.cancel();
+                closeQuietly(session.channel);
+            }
+        }
+
+        /**
+         * Handle a key the selector picked
+         *
+         * @param key The key
+         */
+        private void handle(SelectionKey key) throws IOException {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isAcceptable()) {
+                accept();
+                return;
+            }
+
+            Session session = (Session) key.attachment();
+            try {
+                if (key.isReadable()) {
+                    session.read(key);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    session.flush(key);
+                }
+            } catch (IOException | RuntimeException e) {
+                // One broken client never takes the loop down with it
+                key.cancel();
+                closeQuietly(session.channel);
+            }
+        }
+    }
+
+    /**
+     * A connected client and the game it is playing
+     * The loop reads its requests and writes its replies, a worker applies them one at a time and in order
+     */
+    private class Session {
+        private final SocketChannel channel;
+        private final Loop loop;
+        // Only touched on the loop's thread
+        private final ByteBuffer input = ByteBuffer.allocate(Protocol.MAX_REQUEST * 4);
+        // Handed from the loop to a worker, guarded by the session
+        private final ArrayDeque<Request> requests = new ArrayDeque<>();
+        private boolean scheduled = false;
+        // Handed from a worker to the loop, guarded by the session
+        private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+        private long pending = 0;
+        // Only touched by the worker applying the session's requests
+        private final Random random = new Random();
+        private Minefield field;
+        private long seed;
+
+        /**
+         * Create a new session
+         *
+         * @param channel The client's channel
+         * @param loop    The loop serving it
+         */
+        public Session(SocketChannel channel, Loop loop) {
+            this.channel = channel;
+            this.loop = loop;
+        }
+
+        /**
+         * Read what the client sent and queue every complete frame for a worker
+         *
+         * @param key The session's key
+         */
+        public void read(SelectionKey key) throws IOException {
+            if (this.channel.read(this.input) < 0) {
+                throw new ClosedChannelException();
+            }
+
+            this.input.flip();
+            while (this.input.remaining() >= 4) {
+                int length = this.input.getInt(this.input.position());
+                if (length <= 0 || length > Protocol.MAX_REQUEST) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                if (this.input.remaining() < 4 + length) {
+                    break;
+                }
+                // A short frame would read its fields out of the next one, so every type has its exact length
+                byte type = this.input.get(this.input.position() + 4);
+                if (length != Protocol.getRequestLength(type)) {
+                    throw new IOException("Bad frame length " + length + " for type " + type);
+                }
+                this.input.getInt();
+                this.input.get();
+                if (type == Protocol.NEW_GAME) {
+                    this.queue(new Request(type, this.input.getInt(), this.input.getInt(), this.input.getInt()));
+                } else {
+                    this.queue(new Request(type, this.input.get(), this.input.getInt(), this.input.getInt()));
+                }
+            }
+            this.input.compact();
+        }
+
+        /**
+         * Queue a request, starting a worker on the session if none is on it
+         *
+         * @param request The request
+         */
+        private void queue(Request request) throws IOException {
+            synchronized (this) {
+                if (this.requests.size() >= MAX_REQUESTS) {
+                    throw new IOException("Client is sending too fast");
+                }
+                this.requests.add(request);
+                if (this.scheduled) {
+                    return;
+                }
+                this.scheduled = true;
+            }
+            workers.execute(this::process);
+        }
+
+        /**
+         * Apply the queued requests in order, on a worker
+         */
+        private void process() {
+            while (true) {
+                Request request;
+                synchronized (this) {
+                    request = this.requests.poll();
+                    if (request == null) {
+                        this.scheduled = false;
+                        return;
+                    }
+                }
+                try {
+                    this.handle(request);
+                } catch (IOException | RuntimeException e) {
+                    // The loop finds the channel closed and drops its key
+                    closeQuietly(this.channel);
+                    return;
+                }
+                this.loop.flushLater(this);
+            }
+        }
+
+        /**
+         * Handle one request, replying with a delta
+         *
+         * @param request The request
+         */
+        private void handle(Request request) throws IOException {
+            if (request.type == Protocol.NEW_GAME) {
+                int width = request.a, height = request.b, mines = request.c;
+                if ((long) width * height > Protocol.MAX_CELLS) {
+                    throw new IOException("Board too large");
+                }
+                // Rejects any other impossible board
+                this.field = new Minefield(width, height, mines);
+                this.field.setHistoryLimit(MAX_HISTORY);
+                // The server picks the seed, so no client can choose its own board
+                this.seed = seeds.nextLong();
+                this.send(this.field.drainChanges(null));
+                return;
+            }
+            if (request.type != Protocol.COMMAND || this.field == null) {
+                throw new IOException("Unexpected frame " + request.type);
+            }
+
+            Command.Type command = Protocol.getType(request.a);
+            if (command == null) {
+                throw new IOException("Unknown command " + request.a);
+            }
+            String sound = null;
+            // The server is authoritative, so clients only get to make moves
+            if (command == Command.Type.REVEAL || command == Command.Type.FLAG || command == Command.Type.CHORD
+                    || command == Command.Type.UNDO || command == Command.Type.REDO) {
+                sound = GameLogic.apply(this.field, command, request.b, request.c, this.seed, this.random);
+            }
+            this.send(this.field.drainChanges(sound));
+        }
+
+        /**
+         * Queue a delta for the client, every command gets one even if nothing changed
+         *
+         * @param delta The delta, or null if nothing changed
+         */
+        private void send(BoardDelta delta) throws IOException {
+            if (delta == null) {
+                delta = new BoardDelta(new int[0], new byte[0], this.field.getFlagCount(),
+                        this.field.getRevealedCount(), null, null, null);
+            }
+            ByteBuffer frame = Protocol.encode(delta, this.seed);
+            synchronized (this) {
+                this.pending += frame.remaining();
+                if (this.pending > MAX_PENDING) {
+                    throw new IOException("Client is not reading");
+                }
+                this.output.add(frame);
+            }
+        }
+
+        /**
+         * Write as much of the queued output as the channel takes, on the loop's thread
+         *
+         * @param key The session's key
+         */
+        public synchronized void flush(SelectionKey key) throws IOException {
+            ByteBuffer frame;
+            while ((frame = this.output.peek()) != null) {
+                this.pending -= this.channel.write(frame);
+                if (frame.hasRemaining()) {
+                    break;
+                }
+                this.output.poll();
+            }
+            // Only wait for the channel to be writable while there is something to write
+            key.interestOps(this.output.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * A frame from a client, parsed on the loop for a worker to apply
+     */
+    private static final class Request {
+        private final byte type;
+        // The width, height and mines of a new game, or the command type, column and row of a command
+        private final int a;
+        private final int b;
+        private final int c;
+
+        /**
+         * Create a new request
+         *
+         * @param type The frame type
+         * @param a    The first field
+         * @param b    The second field
+         * @param c    The third field
+         */
+        Request(byte type, int a, int b, int c) {
+            this.type = type;
+            this.a = a;
+            this.b = b;
+            this.c = c;
+        }
+    }
+
+    /**
+     * Close something, ignoring any failure
+     *
+     * @param closeable The thing to close
+     */
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing left to do with it
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package es.dolfi.minesweeper.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Random;
+
+import es.dolfi.minesweeper.enums.Difficulty;
+import es.dolfi.minesweeper.logic.BoardDelta;
+import es.dolfi.minesweeper.logic.Command;
+import es.dolfi.minesweeper.logic.Minefield;
+
+/**
+ * Plays many games against a server at once, to see how much load it takes
+ * Every session reveals random hidden cells until its game ends, then starts another
+ */
+public class LoadGenerator {
+    private final Selector selector;
+    private final Difficulty difficulty;
+    private final Random random = new Random();
+
+    // Totals since the last report
+    private long responses = 0;
+    private long latency = 0;
+    private long maxLatency = 0;
+    private long games = 0;
+    private int connected = 0;
+
+    /**
+     * Create a new load generator
+     *
+     * @param difficulty The difficulty of the games to play
+     * @throws IOException If a selector can't be opened
+     */
+    public LoadGenerator(Difficulty difficulty) throws IOException {
+        this.selector = Selector.open();
+        this.difficulty = difficulty;
+    }
+
+    /**
+     * Open sessions to a server and play until the time is up
+     *
+     * @param address  The server's address
+     * @param sessions The number of sessions to open
+     * @param seconds  How long to play for
+     * @throws IOException If the selector fails
+     */
+    public void run(InetSocketAddress address, int sessions, int seconds) throws IOException {
+        for (int i = 0; i < sessions; i++) {
+            SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.connect(address);
+            channel.register(this.selector, SelectionKey.OP_CONNECT, new Session());
+        }
+
+        long start = System.nanoTime(), lastReport = start;
+        long end = start + seconds * 1_000_000_000L;
+        long total = 0;
+        while (System.nanoTime() < end) {
+            this.selector.select(100);
+            Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                try {
+                    this.handle(key);
+                } catch (IOException e) {
+                    System.out.println("[LOAD] Session failed: " + e.getMessage());
+                    key.cancel();
+                    key.channel().close();
+                    this.connected--;
+                }
+            }
+
+            long now = System.nanoTime();
+            if (now - lastReport >= 1_000_000_000L) {
+                total += this.responses;
+                this.report(now - lastReport);
+                lastReport = now;
+            }
+        }
+
+        System.out.printf("[LOAD] Done, %d commands in %ds, %.0f commands/s%n", total, seconds,
+                total / (double) seconds);
+        for (SelectionKey key : this.selector.keys()) {
+            key.channel().close();
+        }
+        this.selector.close();
+    }
+
+    /**
+     * Print and reset the totals
+     *
+     * @param elapsed The time since the last report, in nanoseconds
+     */
+    private void report(long elapsed) {
+        double perSecond = this.responses * 1e9 / elapsed;
+        double average = this.responses == 0 ? 0 : this.latency / 1e6 / this.responses;
+        System.out.printf("[LOAD] %d sessions, %.0f commands/s, %d games, latency avg %.2fms max %.2fms%n",
+                this.connected, perSecond, this.games, average, this.maxLatency / 1e6);
+        this.responses = 0;
+        this.latency = 0;
+        this.maxLatency = 0;
+        this.games = 0;
+    }
+
+    /**
+     * Handle a key the selector picked
+     *
+     * @param key The key
+     */
+    private void handle(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Session session = (Session) key.attachment();
+        if (key.isConnectable()) {
+            channel.finishConnect();
+            key.interestOps(SelectionKey.OP_READ);
+            this.connected++;
+            session.newGame(channel);
+            return;
+        }
+
+        if (channel.read(session.input) < 0) {
+            throw new IOException("Server closed the connection");
+        }
+        session.input.flip();
+        while (session.input.remaining() >= 4) {
+            int length = session.input.getInt(session.input.position());
+            if (session.input.remaining() < 4 + length) {
+                // Grow the buffer if the frame wouldn't fit
+                if (4 + length > session.input.capacity()) {
+                    ByteBuffer input = ByteBuffer.allocate(4 + length);
+                    input.put(session.input);
+                    input.flip();
+                    session.input = input;
+                }
+                break;
+            }
+            session.input.getInt();
+            int end = session.input.position() + length;
+            session.input.get();
+            BoardDelta delta = Protocol.decode(session.input);
+            session.input.position(end);
+
+            long latency = System.nanoTime() - session.sent;
+            this.responses++;
+            this.latency += latency;
+            this.maxLatency = Math.max(this.maxLatency, latency);
+            session.respond(channel, delta);
+        }
+        session.input.compact();
+    }
+
+    /**
+     * Run the load generator from the command line
+     *
+     * @param args The host, port, number of sessions, seconds and difficulty, all optional
+     * @throws IOException If the selector fails
+     */
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : Protocol.DEFAULT_PORT;
+        int sessions = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        Difficulty difficulty = args.length > 4 ? Difficulty.valueOf(args[4].toUpperCase()) : Difficulty.EASY;
+
+        System.out.printf("[LOAD] Playing %d %s sessions against %s:%d for %ds%n", sessions,
+                difficulty.toString().toLowerCase(), host, port, seconds);
+        new LoadGenerator(difficulty).run(new InetSocketAddress(host, port), sessions, seconds);
+    }
+
+    /**
+     * One simulated player
+     */
+    private class Session {
+        private final ByteBuffer output = ByteBuffer.allocate(Protocol.MAX_REQUEST);
+        private ByteBuffer input = ByteBuffer.allocate(1024);
+        private byte[] known;
+        private long sent;
+
+        /**
+         * Start a new game
+         *
+         * @param channel The session's channel
+         */
+        public void newGame(SocketChannel channel) throws IOException {
+            this.known = new byte[difficulty.getCells()];
+            this.output.clear();
+            Protocol.putNewGame(this.output, difficulty.getWidth(), difficulty.getHeight(), difficulty.getMines());
+            this.send(channel);
+        }
+
+        /**
+         * Take in a delta and make the next move
+         *
+         * @param channel The session's channel
+         * @param delta   The delta
+         */
+        public void respond(SocketChannel channel, BoardDelta delta) throws IOException {
+            for (int i = 0; i < delta.size(); i++) {
+                this.known[delta.getCell(i)] = (byte) delta.getState(i);
+            }
+            if (delta.getOutcome() != null) {
+                games++;
+                this.newGame(channel);
+                return;
+            }
+
+            // Probe at random, then fall back to the first hidden cell
+            int cell = -1;
+            for (int i = 0; i < 16 && cell < 0; i++) {
+                int probe = random.nextInt(this.known.length);
+                if ((this.known[probe] & Minefield.REVEALED) == 0) {
+                    cell = probe;
+                }
+            }
+            for (int i = 0; i < this.known.length && cell < 0; i++) {
+                if ((this.known[i] & Minefield.REVEALED) == 0) {
+                    cell = i;
+                }
+            }
+
+            this.output.clear();
+            int width = difficulty.getWidth();
+            Protocol.putCommand(this.output, Command.Type.REVEAL, cell % width, cell / width);
+            this.send(channel);
+        }
+
+        /**
+         * Write the pending request
+         *
+         * @param channel The session's channel
+         */
+        private void send(SocketChannel channel) throws IOException {
+            this.output.flip();
+            this.sent = System.nanoTime();
+            // Requests are far smaller than the socket buffer, so this never has to wait
+            while (this.output.hasRemaining()) {
+                channel.write(this.output);
+            }
+        }
+    }
+}
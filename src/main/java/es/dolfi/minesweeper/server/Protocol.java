@@ -0,0 +1,198 @@
+package es.dolfi.minesweeper.server;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import es.dolfi.minesweeper.enums.GameState;
+import es.dolfi.minesweeper.logic.BoardDelta;
+import es.dolfi.minesweeper.logic.Command;
+
+/**
+ * The binary protocol between game clients and the server
+ * Every frame is an int length, then a type byte and the payload the length covers
+ * Clients send one new game frame, then command frames, and get back exactly one delta frame for each
+ */
+public final class Protocol {
+    public static final int DEFAULT_PORT = 7777;
+
+    // Client to server, width, height and mines as ints, the server picks the seed itself
+    public static final byte NEW_GAME = 1;
+    // Client to server, the command type as a byte then the column and row as ints
+    public static final byte COMMAND = 2;
+    // Server to client, a board delta, followed by the seed as a long once the game has ended
+    public static final byte DELTA = 3;
+
+    // Requests are tiny, anything longer is a broken or hostile client
+    public static final int MAX_REQUEST = 32;
+    // The exact length of each request, counting the type byte
+    public static final int NEW_GAME_LENGTH = 1 + 4 + 4 + 4;
+    public static final int COMMAND_LENGTH = 1 + 1 + 4 + 4;
+    // Keeps one session from taking the whole server's memory
+    public static final int MAX_CELLS = 1 << 22;
+    // The largest delta frame there is, with every cell changed, a board's worth of mines, the longest sound
+    // and the seed, so five bytes a cell and four a mine
+    public static final int MAX_DELTA = 4 + 1 + 4 + 4 + 1 + 1 + 255 + 4 + MAX_CELLS * 5 + 4 + MAX_CELLS * 4 + 8;
+
+    private static final GameState[] outcomes = { null, GameState.WON, GameState.LOST };
+    private static final Command.Type[] types = Command.Type.values();
+
+    /**
+     * Static helpers only
+     */
+    private Protocol() {
+    }
+
+    /**
+     * Parse a server address
+     *
+     * @param address The address, as host or host:port
+     * @return The address
+     * @throws IllegalArgumentException If the port isn't a number
+     */
+    public static InetSocketAddress parseAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) {
+            return InetSocketAddress.createUnresolved(address, DEFAULT_PORT);
+        }
+        try {
+            return InetSocketAddress.createUnresolved(address.substring(0, colon),
+                    Integer.parseInt(address.substring(colon + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid port in " + address);
+        }
+    }
+
+    /**
+     * Format a server address the way it was typed
+     *
+     * @param address The address
+     * @return The address as host:port
+     */
+    public static String formatAddress(InetSocketAddress address) {
+        return address.getHostString() + ":" + address.getPort();
+    }
+
+    /**
+     * Write a new game frame
+     *
+     * @param buffer The buffer to write to
+     * @param width  The number of columns
+     * @param height The number of rows
+     * @param mines  The number of mines
+     */
+    public static void putNewGame(ByteBuffer buffer, int width, int height, int mines) {
+        buffer.putInt(NEW_GAME_LENGTH).put(NEW_GAME).putInt(width).putInt(height).putInt(mines);
+    }
+
+    /**
+     * Write a command frame
+     *
+     * @param buffer The buffer to write to
+     * @param type   The kind of command
+     * @param x      The column it applies to
+     * @param y      The row it applies to
+     */
+    public static void putCommand(ByteBuffer buffer, Command.Type type, int x, int y) {
+        buffer.putInt(COMMAND_LENGTH).put(COMMAND).put((byte) type.ordinal()).putInt(x).putInt(y);
+    }
+
+    /**
+     * Get the length a request of some type has to be
+     *
+     * @param type The frame type
+     * @return The length, counting the type byte, or -1 if clients can't send the type
+     */
+    public static int getRequestLength(byte type) {
+        switch (type) {
+            case NEW_GAME:
+                return NEW_GAME_LENGTH;
+            case COMMAND:
+                return COMMAND_LENGTH;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Get a command type from its wire value
+     *
+     * @param value The wire value
+     * @return The command type, or null if there is none
+     */
+    public static Command.Type getType(int value) {
+        return value >= 0 && value < types.length ? types[value] : null;
+    }
+
+    /**
+     * Encode a delta as a complete frame, ready to write
+     *
+     * @param delta The delta
+     * @param seed  The seed the mines were placed with, only sent if the delta ends the game
+     * @return The frame, flipped for reading
+     */
+    public static ByteBuffer encode(BoardDelta delta, long seed) {
+        byte[] sound = delta.getSound() == null ? new byte[0] : delta.getSound().getBytes(StandardCharsets.US_ASCII);
+        int length = 1 + 4 + 4 + 1 + 1 + sound.length + 4 + delta.size() * 5 + 4 + delta.getMineCount() * 4
+                + (delta.getOutcome() != null ? 8 : 0);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + length);
+
+        buffer.putInt(length).put(DELTA);
+        buffer.putInt(delta.getFlagCount()).putInt(delta.getRevealedCount());
+        GameState outcome = delta.getOutcome();
+        buffer.put((byte) (outcome == GameState.WON ? 1 : outcome == GameState.LOST ? 2 : 0));
+        buffer.put((byte) sound.length).put(sound);
+        buffer.putInt(delta.size());
+        for (int i = 0; i < delta.size(); i++) {
+            buffer.putInt(delta.getCell(i)).put((byte) delta.getState(i));
+        }
+        buffer.putInt(delta.getMineCount());
+        for (int i = 0; i < delta.getMineCount(); i++) {
+            buffer.putInt(delta.getMine(i));
+        }
+        if (outcome != null) {
+            buffer.putLong(seed);
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decode a delta frame's payload, after the type byte
+     * The seed that follows a game-ending delta is left in the buffer, see {@link #getSeed(ByteBuffer)}
+     *
+     * @param buffer The payload
+     * @return The delta
+     */
+    public static BoardDelta decode(ByteBuffer buffer) {
+        int flagCount = buffer.getInt(), revealedCount = buffer.getInt();
+        GameState outcome = outcomes[buffer.get()];
+        byte[] sound = new byte[buffer.get()];
+        buffer.get(sound);
+
+        int[] cells = new int[buffer.getInt()];
+        byte[] states = new byte[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = buffer.getInt();
+            states[i] = buffer.get();
+        }
+        int[] mines = new int[buffer.getInt()];
+        for (int i = 0; i < mines.length; i++) {
+            mines[i] = buffer.getInt();
+        }
+
+        return new BoardDelta(cells, states, flagCount, revealedCount, outcome, outcome == null ? null : mines,
+                sound.length == 0 ? null : new String(sound, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Read the seed that follows a game-ending delta
+     *
+     * @param buffer The payload, just past the decoded delta
+     * @return The seed the server placed the mines with
+     */
+    public static long getSeed(ByteBuffer buffer) {
+        return buffer.getLong();
+    }
+}
@@ -0,0 +1,185 @@
+package es.dolfi.minesweeper.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import es.dolfi.minesweeper.logic.Minefield;
+
+/**
+ * Watches a game from a spectator feed, keeping a copy of the board up to date
+ * Run from the command line, it prints each update and draws small boards as text
+ */
+public class SpectatorClient {
+    // Boards wider than this are only summarized
+    private static final int MAX_DRAWN_WIDTH = 40;
+
+    private final SocketChannel channel;
+    private final Inflater inflater = new Inflater();
+    private int width, height, mines;
+    private byte[] cells = new byte[0];
+    private int flagCount, revealedCount;
+    private long frames = 0, bytes = 0;
+
+    /**
+     * Connect to a spectator feed
+     *
+     * @param address The feed's address
+     * @throws IOException If the feed can't be reached
+     */
+    public SpectatorClient(InetSocketAddress address) throws IOException {
+        this.channel = SocketChannel.open(address);
+    }
+
+    /**
+     * Read the next frame and apply it to the board
+     *
+     * @return The frame type
+     * @throws IOException If the feed closed or sent something broken
+     */
+    public byte next() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        this.readFully(header);
+        ByteBuffer frame = ByteBuffer.allocate(header.getInt(0));
+        this.readFully(frame);
+        frame.flip();
+        this.frames++;
+        this.bytes += 4 + frame.remaining();
+
+        byte type = frame.get();
+        if (type == SpectatorFeed.KEYFRAME) {
+            this.width = frame.getInt();
+            this.height = frame.getInt();
+            this.mines = frame.getInt();
+            this.flagCount = frame.getInt();
+            this.revealedCount = frame.getInt();
+            this.cells = new byte[this.width * this.height];
+            byte[] compressed = new byte[frame.remaining()];
+            frame.get(compressed);
+            this.inflater.reset();
+            this.inflater.setInput(compressed);
+            try {
+                this.inflater.inflate(this.cells);
+            } catch (DataFormatException e) {
+                throw new IOException("Broken keyframe", e);
+            }
+        } else if (type == SpectatorFeed.DELTA) {
+            this.flagCount = frame.getInt();
+            this.revealedCount = frame.getInt();
+            int runs = SpectatorFeed.getVarint(frame);
+            int end = 0;
+            for (int i = 0; i < runs; i++) {
+                int start = end + SpectatorFeed.getVarint(frame);
+                int length = SpectatorFeed.getVarint(frame);
+                byte state = frame.get();
+                for (int j = start; j < start + length; j++) {
+                    this.cells[j] = state;
+                }
+                end = start + length;
+            }
+        }
+        return type;
+    }
+
+    /**
+     * Get the state of a cell
+     *
+     * @param index The index of the cell
+     * @return The state bits of the cell
+     */
+    public int getState(int index) {
+        return this.cells[index];
+    }
+
+    /**
+     * Get the number of cells revealed
+     *
+     * @return The number of cells revealed
+     */
+    public int getRevealedCount() {
+        return this.revealedCount;
+    }
+
+    /**
+     * Stop watching
+     */
+    public void close() {
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            System.out.println("[SPECTATE] Failed to close: " + e.getMessage());
+        }
+        this.inflater.end();
+    }
+
+    /**
+     * Draw the board as text
+     *
+     * @return The board, one line per row
+     */
+    private String draw() {
+        StringBuilder builder = new StringBuilder();
+        for (int y = 0; y < this.height; y++) {
+            for (int x = 0; x < this.width; x++) {
+                int state = this.cells[y * this.width + x];
+                if ((state & Minefield.FLAGGED) != 0) {
+                    builder.append('F');
+                } else if ((state & Minefield.REVEALED) == 0) {
+                    builder.append('#');
+                } else if ((state & Minefield.MINE) != 0) {
+                    builder.append('*');
+                } else {
+                    int count = state & Minefield.COUNT;
+                    builder.append(count == 0 ? '.' : (char) ('0' + count));
+                }
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Fill a buffer from the feed
+     *
+     * @param buffer The buffer to fill
+     */
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer) < 0) {
+                throw new EOFException("Feed closed");
+            }
+        }
+    }
+
+    /**
+     * Watch a feed from the command line
+     *
+     * @param args The host and port, both optional
+     * @throws IOException If the feed can't be reached
+     */
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : SpectatorFeed.DEFAULT_PORT;
+        SpectatorClient client = new SpectatorClient(new InetSocketAddress(host, port));
+        try {
+            while (true) {
+                byte type = client.next();
+                System.out.printf("[SPECTATE] %s, %dx%d, %d/%d revealed, %d flags, %d frames, %d bytes%n",
+                        type == SpectatorFeed.KEYFRAME ? "Keyframe" : "Delta", client.width, client.height,
+                        client.revealedCount, client.cells.length - client.mines, client.flagCount, client.frames,
+                        client.bytes);
+                if (client.width <= MAX_DRAWN_WIDTH) {
+                    System.out.print(client.draw());
+                }
+            }
+        } catch (EOFException e) {
+            System.out.println("[SPECTATE] " + e.getMessage());
+        } finally {
+            client.close();
+        }
+    }
+}
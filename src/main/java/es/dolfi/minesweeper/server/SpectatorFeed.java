@@ -0,0 +1,493 @@
+package es.dolfi.minesweeper.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.zip.Deflater;
+
+import es.dolfi.minesweeper.components.CellListener;
+import es.dolfi.minesweeper.logic.Minefield;
+
+/**
+ * Broadcasts a running game to read-only spectators
+ * New spectators get a compressed keyframe of the whole board, then batches of run-length encoded changes
+ * Each frame is encoded once and shared by every spectator, and one that falls behind skips ahead to a keyframe
+ */
+public class SpectatorFeed implements CellListener {
+    public static final int DEFAULT_PORT = 7778;
+    // Frame types, each frame is an int length then the type byte and payload
+    public static final byte KEYFRAME = 1;
+    public static final byte DELTA = 2;
+
+    // Changes are sent in batches this often, in milliseconds
+    private static final int BATCH_INTERVAL = 50;
+    // A spectator this far behind gets a keyframe instead of everything it missed
+    private static final int MAX_BACKLOG = 256 * 1024;
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final ArrayList<Spectator> spectators = new ArrayList<>();
+    private volatile boolean running = true;
+
+    // Changes from the game, handed from the EDT to the feed thread
+    // Every reset starts a new generation, and the pending changes only ever belong to the current one
+    private final Object lock = new Object();
+    private int[] pendingCells = new int[256];
+    private byte[] pendingStates = new byte[256];
+    private int pendingCount = 0;
+    private int newWidth, newHeight, newMines;
+    private int generation = 0;
+
+    // The board as spectators see it, only touched on the feed thread
+    private int sentGeneration = 0;
+    private int width = 0, height = 0, mines = 0;
+    private byte[] cells = new byte[0];
+    private int flagCount = 0, revealedCount = 0;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    /**
+     * Create a new feed, bound but not yet running
+     *
+     * @param address The address to listen on
+     * @throws IOException If the address can't be bound
+     */
+    public SpectatorFeed(InetSocketAddress address) throws IOException {
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        this.server.configureBlocking(false);
+        this.server.bind(address);
+        this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Start broadcasting
+     */
+    public void start() {
+        Thread thread = new Thread(this::run, "SpectatorFeed");
+        thread.setDaemon(true);
+        thread.start();
+        System.out.println("[SPECTATE] Broadcasting on port " + this.getPort());
+    }
+
+    /**
+     * Get the port spectators connect to
+     *
+     * @return The port
+     */
+    public int getPort() {
+        return this.server.socket().getLocalPort();
+    }
+
+    /**
+     * Get the number of connected spectators
+     *
+     * @return The number of spectators
+     */
+    public int getSpectators() {
+        synchronized (this.spectators) {
+            return this.spectators.size();
+        }
+    }
+
+    /**
+     * Stop broadcasting and disconnect every spectator
+     */
+    public void close() {
+        this.running = false;
+        this.selector.wakeup();
+    }
+
+    /**
+     * Start broadcasting a new game, every spectator gets a fresh keyframe
+     * Changes still pending from the game before are dropped, they belong to a board that's gone
+     *
+     * @param width  The number of columns
+     * @param height The number of rows
+     * @param mines  The number of mines
+     */
+    public void reset(int width, int height, int mines) {
+        synchronized (this.lock) {
+            this.newWidth = width;
+            this.newHeight = height;
+            this.newMines = mines;
+            this.generation++;
+            this.pendingCount = 0;
+        }
+    }
+
+    /**
+     * Queue a change for the next batch, ignored until a game is being broadcast
+     * The cell is placed with the board of the latest reset, one that doesn't fit on it is from an older game
+     *
+     * @param column The column of the cell
+     * @param row    The row of the cell
+     * @param state  The new state bits
+     */
+    @Override
+    public void cellChanged(int column, int row, int state) {
+        // Spectators only ever see what's been revealed, a hidden cell is flagged or not
+        if ((state & Minefield.REVEALED) == 0) {
+            state &= Minefield.FLAGGED;
+        }
+        synchronized (this.lock) {
+            if (this.generation == 0 || column < 0 || column >= this.newWidth || row < 0 || row >= this.newHeight) {
+                return;
+            }
+            if (this.pendingCount == this.pendingCells.length) {
+                this.pendingCells = Arrays.copyOf(this.pendingCells, this.pendingCount * 2);
+                this.pendingStates = Arrays.copyOf(this.pendingStates, this.pendingCount * 2);
+            }
+            this.pendingCells[this.pendingCount] = row * this.newWidth + column;
+            this.pendingStates[this.pendingCount++] = (byte) state;
+        }
+    }
+
+    /**
+     * Accept spectators, write to them and send a batch every interval
+     */
+    private void run() {
+        long nextBatch = System.nanoTime();
+        while (this.running) {
+            try {
+                long wait = Math.max(1, (nextBatch - System.nanoTime()) / 1_000_000);
+                this.selector.select(wait);
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isAcceptable()) {
+                        this.accept();
+                    } else if (key.isValid() && key.isWritable()) {
+                        Spectator spectator = (Spectator) key.attachment();
+                        if (!this.write(spectator)) {
+                            synchronized (this.spectators) {
+                                this.spectators.remove(spectator);
+                            }
+                        }
+                    }
+                }
+
+                if (System.nanoTime() - nextBatch >= 0) {
+                    this.broadcast();
+                    nextBatch = System.nanoTime() + BATCH_INTERVAL * 1_000_000L;
+                }
+            } catch (IOException e) {
+                System.out.println("[SPECTATE] Feed failed: " + e.getMessage());
+            }
+        }
+
+        synchronized (this.spectators) {
+            for (Spectator spectator : this.spectators) {
+                closeQuietly(spectator.channel);
+            }
+            this.spectators.clear();
+        }
+        closeQuietly(this.server);
+        closeQuietly(this.selector);
+        this.deflater.end();
+    }
+
+    /**
+     * Accept every pending spectator, each starts with a keyframe
+     */
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = this.server.accept()) != null) {
+            channel.configureBlocking(false);
+            Spectator spectator = new Spectator(channel);
+            spectator.key = channel.register(this.selector, 0, spectator);
+            synchronized (this.spectators) {
+                this.spectators.add(spectator);
+            }
+        }
+    }
+
+    /**
+     * Apply the pending changes and send them to every spectator
+     */
+    private void broadcast() {
+        int[] changed;
+        byte[] states;
+        int count;
+        synchronized (this.lock) {
+            // The pending changes were all made after the latest reset, so the new board is set up first
+            if (this.sentGeneration != this.generation) {
+                this.sentGeneration = this.generation;
+                this.width = this.newWidth;
+                this.height = this.newHeight;
+                this.mines = this.newMines;
+                this.cells = new byte[this.width * this.height];
+                this.flagCount = 0;
+                this.revealedCount = 0;
+                for (Spectator spectator : this.spectators) {
+                    spectator.needsKeyframe = true;
+                }
+            }
+            changed = Arrays.copyOf(this.pendingCells, this.pendingCount);
+            states = Arrays.copyOf(this.pendingStates, this.pendingCount);
+            count = this.pendingCount;
+            this.pendingCount = 0;
+        }
+
+        for (int i = 0; i < count; i++) {
+            this.apply(changed[i], states[i]);
+        }
+
+        // Both frames are encoded at most once, however many spectators there are
+        ByteBuffer delta = count > 0 ? this.encodeDelta(changed) : null;
+        ByteBuffer keyframe = null;
+        synchronized (this.spectators) {
+            Iterator<Spectator> iterator = this.spectators.iterator();
+            while (iterator.hasNext()) {
+                Spectator spectator = iterator.next();
+                if (spectator.needsKeyframe && this.cells.length > 0) {
+                    if (keyframe == null) {
+                        keyframe = this.encodeKeyframe();
+                    }
+                    spectator.needsKeyframe = false;
+                    spectator.queue(keyframe.duplicate(), true);
+                } else if (delta != null && !spectator.needsKeyframe) {
+                    spectator.queue(delta.duplicate(), false);
+                }
+
+                if (!this.write(spectator)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply a change to the spectators' copy of the board
+     *
+     * @param index The index of the cell
+     * @param state The new state bits
+     */
+    private void apply(int index, int state) {
+        if (index >= this.cells.length) {
+            return;
+        }
+        int old = this.cells[index];
+        this.cells[index] = (byte) state;
+        if ((old & Minefield.FLAGGED) != (state & Minefield.FLAGGED)) {
+            this.flagCount += (state & Minefield.FLAGGED) != 0 ? 1 : -1;
+        }
+        // Revealed mines are shown at the end, but don't count as revealed cells
+        if ((old & Minefield.REVEALED) == 0 && (state & Minefield.REVEALED) != 0 && (state & Minefield.MINE) == 0) {
+            this.revealedCount++;
+        }
+    }
+
+    /**
+     * Encode the whole board, compressed
+     *
+     * @return The frame, shared read-only between spectators
+     */
+    private ByteBuffer encodeKeyframe() {
+        this.deflater.reset();
+        this.deflater.setInput(this.cells);
+        this.deflater.finish();
+        byte[] compressed = new byte[64 + this.cells.length / 4];
+        int size = 0;
+        while (!this.deflater.finished()) {
+            if (size == compressed.length) {
+                compressed = Arrays.copyOf(compressed, size * 2);
+            }
+            size += this.deflater.deflate(compressed, size, compressed.length - size);
+        }
+
+        ByteBuffer frame = ByteBuffer.allocateDirect(4 + 1 + 20 + size);
+        frame.putInt(1 + 20 + size).put(KEYFRAME);
+        frame.putInt(this.width).putInt(this.height).putInt(this.mines);
+        frame.putInt(this.flagCount).putInt(this.revealedCount);
+        frame.put(compressed, 0, size);
+        frame.flip();
+        return frame.asReadOnlyBuffer();
+    }
+
+    /**
+     * Encode a batch of changes as runs of neighboring cells with the same state
+     * A flood reveals whole stretches of rows, so most batches are a handful of runs
+     *
+     * @param changed The indices of the changed cells, in any order and possibly repeated
+     * @return The frame, shared read-only between spectators
+     */
+    private ByteBuffer encodeDelta(int[] changed) {
+        Arrays.sort(changed);
+        // Worst case every cell is its own run of three five-byte varints
+        ByteBuffer frame = ByteBuffer.allocate(4 + 1 + 8 + 5 + changed.length * 11);
+        frame.position(4 + 1 + 8 + 5);
+
+        int runs = 0, end = 0;
+        for (int i = 0; i < changed.length;) {
+            int start = changed[i];
+            byte state = this.cells[start];
+            int length = 1;
+            i++;
+            while (i < changed.length && changed[i] <= start + length) {
+                // Repeated indices collapse into the run they are already in
+                if (changed[i] == start + length) {
+                    if (this.cells[changed[i]] != state) {
+                        break;
+                    }
+                    length++;
+                }
+                i++;
+            }
+            putVarint(frame, start - end);
+            putVarint(frame, length);
+            frame.put(state);
+            end = start + length;
+            runs++;
+        }
+
+        int size = frame.position();
+        frame.putInt(0, size - 4);
+        frame.position(4);
+        frame.put(DELTA).putInt(this.flagCount).putInt(this.revealedCount);
+        // The run count gets a fixed five bytes so it can be filled in afterwards
+        putFixedVarint(frame, runs);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(size);
+        frame.limit(size);
+        frame.position(0);
+        direct.put(frame);
+        direct.flip();
+        return direct.asReadOnlyBuffer();
+    }
+
+    /**
+     * Write an unsigned varint, seven bits per byte
+     *
+     * @param buffer The buffer to write to
+     * @param value  The value, not negative
+     */
+    static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Write an unsigned varint padded to five bytes
+     *
+     * @param buffer The buffer to write to
+     * @param value  The value, not negative
+     */
+    private static void putFixedVarint(ByteBuffer buffer, int value) {
+        for (int i = 0; i < 4; i++) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Read an unsigned varint
+     *
+     * @param buffer The buffer to read from
+     * @return The value
+     */
+    static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Write as much of a spectator's queue as its channel takes
+     *
+     * @param spectator The spectator
+     * @return Whether the spectator is still connected, otherwise it should be removed
+     */
+    private boolean write(Spectator spectator) {
+        try {
+            ByteBuffer frame;
+            while ((frame = spectator.frames.peek()) != null) {
+                spectator.queued -= spectator.channel.write(frame);
+                if (frame.hasRemaining()) {
+                    break;
+                }
+                spectator.frames.poll();
+            }
+            spectator.key.interestOps(spectator.frames.isEmpty() ? 0 : SelectionKey.OP_WRITE);
+            return true;
+        } catch (IOException | CancelledKeyException e) {
+            spectator.key.cancel();
+            closeQuietly(spectator.channel);
+            return false;
+        }
+    }
+
+    /**
+     * Close something, ignoring any failure
+     *
+     * @param closeable The thing to close
+     */
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing left to do with it
+        }
+    }
+
+    /**
+     * A connected spectator and the frames waiting to be written to it
+     */
+    private static class Spectator {
+        private final SocketChannel channel;
+        private final ArrayDeque<ByteBuffer> frames = new ArrayDeque<>();
+        private SelectionKey key;
+        private int queued = 0;
+        private boolean needsKeyframe = true;
+
+        /**
+         * Create a new spectator
+         *
+         * @param channel The spectator's channel
+         */
+        public Spectator(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Queue a frame, dropping the backlog if the spectator has fallen too far behind
+         *
+         * @param frame    The frame
+         * @param keyframe Whether the frame is a keyframe, which the spectator can always catch up from
+         */
+        public void queue(ByteBuffer frame, boolean keyframe) {
+            if (this.queued + frame.remaining() > MAX_BACKLOG && !this.frames.isEmpty()) {
+                // A frame already being written has to finish, or the stream would break
+                ByteBuffer current = this.frames.peek();
+                boolean started = current.position() > 0;
+                this.frames.clear();
+                this.queued = 0;
+                if (started) {
+                    this.frames.add(current);
+                    this.queued = current.remaining();
+                }
+                if (!keyframe) {
+                    this.needsKeyframe = true;
+                    return;
+                }
+            }
+            this.frames.add(frame);
+            this.queued += frame.remaining();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package es.dolfi.minesweeper.stats;
+
+import java.nio.ByteBuffer;
+
+import es.dolfi.minesweeper.enums.Difficulty;
+
+/**
+ * One finished game, as kept in the stats log
+ * Records have a fixed size on disk, so the log can be read back in bulk
+ */
+public final class GameRecord {
+    // When, seed, difficulty, won, padding, time, 3BV, clicks
+    public static final int SIZE = 8 + 8 + 1 + 1 + 2 + 4 + 4 + 4;
+
+    private static final Difficulty[] difficulties = Difficulty.values();
+
+    private final long timestamp;
+    private final long seed;
+    private final Difficulty difficulty;
+    private final boolean won;
+    private final int time;
+    private final int threeBV;
+    private final int clicks;
+
+    /**
+     * Create a new record
+     *
+     * @param timestamp  When the game ended, in milliseconds since the epoch
+     * @param seed       The seed the mines were placed with
+     * @param difficulty The difficulty
+     * @param won        Whether the game was won
+     * @param time       How long the game took, in milliseconds
+     * @param threeBV    The fewest clicks the board can be cleared in
+     * @param clicks     The clicks actually made
+     */
+    public GameRecord(long timestamp, long seed, Difficulty difficulty, boolean won, int time, int threeBV,
+            int clicks) {
+        this.timestamp = timestamp;
+        this.seed = seed;
+        this.difficulty = difficulty;
+        this.won = won;
+        this.time = time;
+        this.threeBV = threeBV;
+        this.clicks = clicks;
+    }
+
+    /**
+     * Read a record
+     *
+     * @param buffer The buffer to read from
+     * @return The record, or null if its difficulty is unknown
+     */
+    public static GameRecord read(ByteBuffer buffer) {
+        long timestamp = buffer.getLong();
+        long seed = buffer.getLong();
+        int difficulty = buffer.get();
+        boolean won = buffer.get() != 0;
+        buffer.getShort();
+        int time = buffer.getInt();
+        int threeBV = buffer.getInt();
+        int clicks = buffer.getInt();
+        if (difficulty < 0 || difficulty >= difficulties.length) {
+            return null;
+        }
+        return new GameRecord(timestamp, seed, difficulties[difficulty], won, time, threeBV, clicks);
+    }
+
+    /**
+     * Write the record
+     *
+     * @param buffer The buffer to write to
+     */
+    public void write(ByteBuffer buffer) {
+        buffer.putLong(this.timestamp).putLong(this.seed);
+        buffer.put((byte) this.difficulty.ordinal()).put((byte) (this.won ? 1 : 0)).putShort((short) 0);
+        buffer.putInt(this.time).putInt(this.threeBV).putInt(this.clicks);
+    }
+
+    /**
+     * Get when the game ended
+     *
+     * @return The time, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     * Get the seed the mines were placed with
+     *
+     * @return The seed
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Get the difficulty
+     *
+     * @return The difficulty
+     */
+    public Difficulty getDifficulty() {
+        return this.difficulty;
+    }
+
+    /**
+     * Check if the game was won
+     *
+     * @return Whether the game was won
+     */
+    public boolean isWon() {
+        return this.won;
+    }
+
+    /**
+     * Get how long the game took
+     *
+     * @return The time, in milliseconds
+     */
+    public int getTime() {
+        return this.time;
+    }
+
+    /**
+     * Get the board's 3BV, the fewest clicks it can be cleared in
+     *
+     * @return The 3BV
+     */
+    public int getThreeBV() {
+        return this.threeBV;
+    }
+
+    /**
+     * Get the clicks made
+     *
+     * @return The number of clicks
+     */
+    public int getClicks() {
+        return this.clicks;
+    }
+
+    /**
+     * Check if this record ranks above another on a leaderboard
+     * Faster wins rank higher, ties go to whoever got there first
+     *
+     * @param other The other record
+     * @return Whether this record ranks higher
+     */
+    public boolean beats(GameRecord other) {
+        if (this.time != other.time) {
+            return this.time < other.time;
+        }
+        return this.timestamp < other.timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s in %.3fs, 3BV %d, %d clicks, seed %d",
+                this.difficulty.toString().toLowerCase(), this.won ? "won" : "lost", this.time / 1000.0,
+                this.threeBV, this.clicks, this.seed);
+    }
+}
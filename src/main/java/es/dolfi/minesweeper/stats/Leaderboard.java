@@ -0,0 +1,92 @@
+package es.dolfi.minesweeper.stats;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The fastest wins on one difficulty, best first
+ * Kept as a small sorted array, so most games are turned away by a single comparison with the last place
+ */
+public class Leaderboard {
+    private final GameRecord[] records;
+    private int size = 0;
+
+    /**
+     * Create a new, empty leaderboard
+     *
+     * @param capacity The number of places
+     */
+    public Leaderboard(int capacity) {
+        this.records = new GameRecord[capacity];
+    }
+
+    /**
+     * Offer a finished game a place
+     *
+     * @param record The game
+     * @return The place it took, from 0, or -1 if it didn't make it
+     */
+    public int offer(GameRecord record) {
+        if (!record.isWon()) {
+            return -1;
+        }
+        if (this.size == this.records.length && !record.beats(this.records[this.size - 1])) {
+            return -1;
+        }
+
+        int place = this.size == this.records.length ? this.size - 1 : this.size++;
+        while (place > 0 && record.beats(this.records[place - 1])) {
+            this.records[place] = this.records[place - 1];
+            place--;
+        }
+        this.records[place] = record;
+        return place;
+    }
+
+    /**
+     * Check if a game holds a place
+     *
+     * @param record The game
+     * @return Whether it's on the leaderboard
+     */
+    public boolean contains(GameRecord record) {
+        for (int i = 0; i < this.size; i++) {
+            if (this.records[i] == record) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get a place
+     *
+     * @param place The place, from 0
+     * @return The game in that place
+     */
+    public GameRecord get(int place) {
+        if (place >= this.size) {
+            throw new IndexOutOfBoundsException("Place " + place + " of " + this.size);
+        }
+        return this.records[place];
+    }
+
+    /**
+     * Get the number of places taken
+     *
+     * @return The number of places taken
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Get every place taken
+     *
+     * @return The games, best first
+     */
+    public List<GameRecord> toList() {
+        return Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(this.records, this.size)));
+    }
+}
@@ -0,0 +1,335 @@
+package es.dolfi.minesweeper.stats;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import es.dolfi.minesweeper.enums.Difficulty;
+
+/**
+ * Keeps every finished game in an append-only log, with a leaderboard per difficulty held in memory
+ * The log starts with a header of totals for games no longer in it, then fixed-size records
+ * Once the log grows long enough it's compacted, folding every game off the leaderboards into the totals
+ */
+public class StatsStore {
+    public static final int LEADERBOARD_SIZE = 10;
+    // Records appended before the log is compacted, about 2MB
+    private static final int COMPACT_THRESHOLD = 1 << 16;
+    private static final int MAGIC = 0x4A535354;
+    private static final int VERSION = 1;
+    private static final int READ_CHUNK = GameRecord.SIZE * 2048;
+
+    private static final Difficulty[] difficulties = Difficulty.values();
+
+    private final Path path;
+    private FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(GameRecord.SIZE);
+    private int logged = 0;
+
+    private final Leaderboard[] leaderboards = new Leaderboard[difficulties.length];
+    private final long[] played = new long[difficulties.length];
+    private final long[] won = new long[difficulties.length];
+    private final long[] winTime = new long[difficulties.length];
+    private GameRecord last;
+    private int lastPlace = -1;
+
+    /**
+     * Open a stats log, creating it if needed
+     * If it can't be opened, games are still ranked but only kept until the game closes
+     *
+     * @param path The log file
+     */
+    public StatsStore(Path path) {
+        this.path = path;
+        for (int i = 0; i < difficulties.length; i++) {
+            this.leaderboards[i] = new Leaderboard(LEADERBOARD_SIZE);
+        }
+
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.load();
+            System.out.printf("[STATS] Loaded %d games in %.1fms%n", this.logged,
+                    (System.nanoTime() - start) / 1e6);
+            if (this.logged >= COMPACT_THRESHOLD) {
+                this.compact();
+            }
+        } catch (IOException e) {
+            System.out.println("[STATS] Failed to open " + path + ", stats won't be saved: " + e.getMessage());
+            this.close();
+        }
+    }
+
+    /**
+     * Get where stats are kept by default
+     *
+     * @return The log file, in the user's home directory
+     */
+    public static Path defaultPath() {
+        return Paths.get(System.getProperty("user.home"), ".javasweeper", "stats.dat");
+    }
+
+    /**
+     * Get the size of the header
+     *
+     * @return The size, in bytes
+     */
+    private static int headerSize() {
+        return 4 + 4 + 4 + difficulties.length * 3 * 8;
+    }
+
+    /**
+     * Read the header and replay the log into memory
+     * A record cut short by a crash is dropped
+     */
+    private void load() throws IOException {
+        long size = this.channel.size();
+        if (size == 0) {
+            this.writeHeader(this.channel);
+            return;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(headerSize());
+        int read = 0;
+        while (header.hasRemaining() && read >= 0) {
+            read = this.channel.read(header, header.position());
+        }
+        header.flip();
+        if (header.remaining() < 12 || header.getInt() != MAGIC || header.getInt() != VERSION
+                || header.getInt() != difficulties.length) {
+            throw new IOException("Not a stats log");
+        }
+        for (int i = 0; i < difficulties.length; i++) {
+            this.played[i] = header.getLong();
+            this.won[i] = header.getLong();
+            this.winTime[i] = header.getLong();
+        }
+
+        // Read in big chunks, a leaderboard turns most records away with one comparison
+        ByteBuffer chunk = ByteBuffer.allocateDirect(READ_CHUNK);
+        long position = headerSize();
+        while (true) {
+            read = this.channel.read(chunk, position);
+            if (read <= 0) {
+                break;
+            }
+            position += read;
+            chunk.flip();
+            while (chunk.remaining() >= GameRecord.SIZE) {
+                GameRecord record = GameRecord.read(chunk);
+                if (record != null) {
+                    this.add(record);
+                }
+                this.logged++;
+            }
+            chunk.compact();
+        }
+
+        long end = headerSize() + (long) this.logged * GameRecord.SIZE;
+        if (end < size) {
+            System.out.printf("[STATS] Dropped %d bytes of a partly written game%n", size - end);
+            this.channel.truncate(end);
+        }
+    }
+
+    /**
+     * Write the header at the start of a log
+     *
+     * @param channel The log
+     */
+    private void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(headerSize());
+        header.putInt(MAGIC).putInt(VERSION).putInt(difficulties.length);
+        // Totals only cover games that aren't in the log, so subtract the ones that stay
+        for (int i = 0; i < difficulties.length; i++) {
+            long played = this.played[i], won = this.won[i], winTime = this.winTime[i];
+            for (int j = 0; j < this.leaderboards[i].size(); j++) {
+                GameRecord record = this.leaderboards[i].get(j);
+                played--;
+                won--;
+                winTime -= record.getTime();
+            }
+            header.putLong(played).putLong(won).putLong(winTime);
+        }
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    /**
+     * Count a game in the totals and offer it a place
+     *
+     * @param record The game
+     * @return The place it took, from 0, or -1 if it didn't make the leaderboard
+     */
+    private int add(GameRecord record) {
+        int difficulty = record.getDifficulty().ordinal();
+        this.played[difficulty]++;
+        if (record.isWon()) {
+            this.won[difficulty]++;
+            this.winTime[difficulty] += record.getTime();
+        }
+        return this.leaderboards[difficulty].offer(record);
+    }
+
+    /**
+     * Record a finished game
+     *
+     * @param record The game
+     * @return The place it took, from 0, or -1 if it didn't make the leaderboard
+     */
+    public synchronized int record(GameRecord record) {
+        this.last = record;
+        this.lastPlace = this.add(record);
+        if (this.channel == null) {
+            return this.lastPlace;
+        }
+
+        try {
+            this.buffer.clear();
+            record.write(this.buffer);
+            this.buffer.flip();
+            long position = headerSize() + (long) this.logged * GameRecord.SIZE;
+            while (this.buffer.hasRemaining()) {
+                position += this.channel.write(this.buffer, position);
+            }
+            this.logged++;
+            if (this.logged >= COMPACT_THRESHOLD) {
+                this.compact();
+            }
+        } catch (IOException e) {
+            System.out.println("[STATS] Failed to save game, stats won't be saved: " + e.getMessage());
+            this.close();
+        }
+        return this.lastPlace;
+    }
+
+    /**
+     * Note a game that ended without being recorded, so it isn't mistaken for the last one
+     */
+    public synchronized void skip() {
+        this.last = null;
+        this.lastPlace = -1;
+    }
+
+    /**
+     * Rewrite the log with only the leaderboard games, folding the rest into the header's totals
+     * The new log is written beside the old one and moved over it, so a crash leaves one or the other
+     */
+    private void compact() throws IOException {
+        long start = System.nanoTime();
+        List<GameRecord> kept = new ArrayList<>();
+        for (Leaderboard leaderboard : this.leaderboards) {
+            kept.addAll(leaderboard.toList());
+        }
+        kept.sort(Comparator.comparingLong(GameRecord::getTimestamp));
+
+        Path temporary = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            this.writeHeader(channel);
+            ByteBuffer records = ByteBuffer.allocate(kept.size() * GameRecord.SIZE);
+            for (GameRecord record : kept) {
+                record.write(records);
+            }
+            records.flip();
+            long position = headerSize();
+            while (records.hasRemaining()) {
+                position += channel.write(records, position);
+            }
+            channel.force(true);
+        }
+
+        this.channel.close();
+        Files.move(temporary, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.channel = FileChannel.open(this.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        System.out.printf("[STATS] Compacted %d games down to %d in %.1fms%n", this.logged, kept.size(),
+                (System.nanoTime() - start) / 1e6);
+        this.logged = kept.size();
+    }
+
+    /**
+     * Get the fastest wins on a difficulty
+     *
+     * @param difficulty The difficulty
+     * @return The games, best first
+     */
+    public synchronized List<GameRecord> getLeaderboard(Difficulty difficulty) {
+        return this.leaderboards[difficulty.ordinal()].toList();
+    }
+
+    /**
+     * Get the number of games played on a difficulty
+     *
+     * @param difficulty The difficulty
+     * @return The number of games played
+     */
+    public synchronized long getPlayed(Difficulty difficulty) {
+        return this.played[difficulty.ordinal()];
+    }
+
+    /**
+     * Get the number of games won on a difficulty
+     *
+     * @param difficulty The difficulty
+     * @return The number of games won
+     */
+    public synchronized long getWon(Difficulty difficulty) {
+        return this.won[difficulty.ordinal()];
+    }
+
+    /**
+     * Get the average time of the games won on a difficulty
+     *
+     * @param difficulty The difficulty
+     * @return The average time, in milliseconds, or 0 if none were won
+     */
+    public synchronized long getAverageTime(Difficulty difficulty) {
+        int i = difficulty.ordinal();
+        return this.won[i] == 0 ? 0 : this.winTime[i] / this.won[i];
+    }
+
+    /**
+     * Get the game recorded last
+     *
+     * @return The game, or null if none have been recorded since opening
+     */
+    public synchronized GameRecord getLast() {
+        return this.last;
+    }
+
+    /**
+     * Get the place the game recorded last took
+     *
+     * @return The place, from 0, or -1 if it didn't make the leaderboard
+     */
+    public synchronized int getLastPlace() {
+        return this.lastPlace;
+    }
+
+    /**
+     * Stop saving to the log
+     */
+    public synchronized void close() {
+        if (this.channel == null) {
+            return;
+        }
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            System.out.println("[STATS] Failed to close: " + e.getMessage());
+        }
+        this.channel = null;
+    }
+}
@@ -0,0 +1,340 @@
+package es.dolfi.minesweeper.util;
+
+import java.awt.image.*;
+import java.io.*;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+/**
+ * A pack of pre-decoded assets, memory-mapped at startup
+ * Images are stored as raw ARGB pixels and sounds as raw PCM frames, so nothing is decoded when loading
+ */
+public class AssetPack {
+    public static final String NAME = "assets.pack";
+    private static final int MAGIC = 0x4B50534A; // "JSPK"
+    private static final int VERSION = 1;
+    private static final byte IMAGE = 1;
+    private static final byte SOUND = 2;
+
+    private static AssetPack instance;
+    private static boolean loaded = false;
+
+    private final ByteBuffer buffer;
+    private final HashMap<String, Entry> entries = new HashMap<>();
+
+    /**
+     * An asset stored in the pack
+     */
+    private static class Entry {
+        private final byte type;
+        private final int offset;
+        private final int length;
+        private final int[] info;
+
+        /**
+         * Create a new entry
+         *
+         * @param type   The asset type
+         * @param offset The offset of the asset data
+         * @param length The length of the asset data, in bytes
+         * @param info   The asset metadata (image size, audio format)
+         */
+        private Entry(byte type, int offset, int length, int[] info) {
+            this.type = type;
+            this.offset = offset;
+            this.length = length;
+            this.info = info;
+        }
+    }
+
+    /**
+     * Read the table of contents of a pack
+     *
+     * @param buffer The pack contents
+     */
+    private AssetPack(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new RuntimeException("Unsupported asset pack");
+        }
+
+        ByteBuffer toc = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        toc.position(8);
+        int count = toc.getInt();
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[toc.getShort()];
+            toc.get(name);
+            byte type = toc.get();
+            int offset = toc.getInt(), length = toc.getInt();
+            int[] info = new int[toc.get()];
+            for (int j = 0; j < info.length; j++) {
+                info[j] = toc.getInt();
+            }
+            this.entries.put(new String(name, StandardCharsets.UTF_8), new Entry(type, offset, length, info));
+        }
+    }
+
+    /**
+     * Get the game's asset pack, mapping it on first use
+     *
+     * @return The asset pack, or null if the game was built without one
+     */
+    public static synchronized AssetPack get() {
+        if (!loaded) {
+            loaded = true;
+            URL url = AssetPack.class.getResource("/" + NAME);
+            if (url != null) {
+                try {
+                    instance = new AssetPack(map(url));
+                } catch (Exception e) {
+                    // The original assets still work, just slower
+                    e.printStackTrace();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Memory-map a pack, extracting it to a cache file first if it is inside a jar
+     *
+     * @param url The pack location
+     * @return The mapped pack
+     * @throws IOException If the pack can't be read
+     */
+    private static ByteBuffer map(URL url) throws IOException {
+        Path path;
+        if (url.getProtocol().equals("file")) {
+            try {
+                path = Paths.get(url.toURI());
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        } else {
+            // Name the cache after the pack itself, so a new build never reuses an old one
+            URLConnection connection = url.openConnection();
+            String name = "javasweeper-" + connection.getContentLengthLong() + "-" + connection.getLastModified()
+                    + ".pack";
+            path = Paths.get(System.getProperty("java.io.tmpdir"), name);
+            if (!Files.exists(path)) {
+                Path temp = Files.createTempFile(path.getParent(), "javasweeper", ".tmp");
+                try (InputStream in = connection.getInputStream()) {
+                    Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Get the contents of an entry
+     *
+     * @param entry The entry
+     * @return A buffer over just the entry's data
+     */
+    private ByteBuffer slice(Entry entry) {
+        ByteBuffer data = this.buffer.duplicate();
+        data.position(entry.offset).limit(entry.offset + entry.length);
+        return data.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Get an image from the pack
+     *
+     * @param name The image name
+     * @return The image, or null if it isn't packed
+     */
+    public BufferedImage getImage(String name) {
+        Entry entry = this.entries.get(name);
+        if (entry == null || entry.type != IMAGE) {
+            return null;
+        }
+
+        // The pixels are copied straight into the image's raster, with no decoding
+        int width = entry.info[0], height = entry.info[1];
+        int[] pixels = new int[width * height];
+        this.slice(entry).asIntBuffer().get(pixels);
+        DirectColorModel model = (DirectColorModel) ColorModel.getRGBdefault();
+        WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(pixels, pixels.length), width, height,
+                width, model.getMasks(), null);
+        return new BufferedImage(model, raster, false, null);
+    }
+
+    /**
+     * Get a sound from the pack
+     *
+     * @param name The sound name
+     * @return The sound, or null if it isn't packed
+     */
+    public AudioInputStream getSound(String name) {
+        Entry entry = this.entries.get(name);
+        if (entry == null || entry.type != SOUND) {
+            return null;
+        }
+
+        AudioFormat format = new AudioFormat(Float.intBitsToFloat(entry.info[0]), entry.info[1], entry.info[2],
+                (entry.info[3] & 1) != 0, (entry.info[3] & 2) != 0);
+        long frames = entry.length / Math.max(1, format.getFrameSize());
+        return new AudioInputStream(new BufferInputStream(this.slice(entry)), format, frames);
+    }
+
+    /**
+     * Reads straight from a (mapped) buffer
+     */
+    private static class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        /**
+         * Create a new buffer stream
+         *
+         * @param buffer The buffer to read
+         */
+        private BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!this.buffer.hasRemaining()) {
+                return -1;
+            }
+            length = Math.min(length, this.buffer.remaining());
+            this.buffer.get(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return this.buffer.remaining();
+        }
+    }
+
+    /**
+     * Builds an asset pack
+     */
+    public static class Writer {
+        private final ArrayList<String> names = new ArrayList<>();
+        private final ArrayList<Byte> types = new ArrayList<>();
+        private final ArrayList<int[]> infos = new ArrayList<>();
+        private final ArrayList<byte[]> data = new ArrayList<>();
+
+        /**
+         * Add an image to the pack
+         *
+         * @param name  The image name
+         * @param image The image
+         */
+        public void addImage(String name, BufferedImage image) {
+            int width = image.getWidth(), height = image.getHeight();
+            int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+            ByteBuffer bytes = ByteBuffer.allocate(pixels.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+            bytes.asIntBuffer().put(pixels);
+            this.add(name, IMAGE, new int[] { width, height }, bytes.array());
+        }
+
+        /**
+         * Add a sound to the pack
+         *
+         * @param name   The sound name
+         * @param stream The sound, which must already be PCM
+         * @throws IOException If the sound can't be read
+         */
+        public void addSound(String name, AudioInputStream stream) throws IOException {
+            AudioFormat format = stream.getFormat();
+            ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read; (read = stream.read(buffer)) > 0;) {
+                pcm.write(buffer, 0, read);
+            }
+
+            int flags = (format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED ? 1 : 0)
+                    | (format.isBigEndian() ? 2 : 0);
+            this.add(name, SOUND, new int[] { Float.floatToIntBits(format.getSampleRate()),
+                    format.getSampleSizeInBits(), format.getChannels(), flags }, pcm.toByteArray());
+        }
+
+        /**
+         * Add an entry to the pack
+         *
+         * @param name The entry name
+         * @param type The entry type
+         * @param info The entry metadata
+         * @param data The entry data
+         */
+        private void add(String name, byte type, int[] info, byte[] data) {
+            this.names.add(name);
+            this.types.add(type);
+            this.infos.add(info);
+            this.data.add(data);
+        }
+
+        /**
+         * Write the pack to a file
+         *
+         * @param path The file to write
+         * @throws IOException If the file can't be written
+         */
+        public void write(Path path) throws IOException {
+            // Table of contents first, then the data, each entry aligned for int access
+            int tocSize = 12;
+            for (int i = 0; i < this.names.size(); i++) {
+                tocSize += 2 + this.names.get(i).getBytes(StandardCharsets.UTF_8).length + 1 + 8 + 1
+                        + 4 * this.infos.get(i).length;
+            }
+            int offset = align(tocSize);
+            int[] offsets = new int[this.names.size()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = offset;
+                offset = align(offset + this.data.get(i).length);
+            }
+
+            ByteBuffer pack = ByteBuffer.allocate(offset).order(ByteOrder.LITTLE_ENDIAN);
+            pack.putInt(MAGIC).putInt(VERSION).putInt(this.names.size());
+            for (int i = 0; i < offsets.length; i++) {
+                byte[] name = this.names.get(i).getBytes(StandardCharsets.UTF_8);
+                pack.putShort((short) name.length).put(name).put(this.types.get(i));
+                pack.putInt(offsets[i]).putInt(this.data.get(i).length);
+                int[] info = this.infos.get(i);
+                pack.put((byte) info.length);
+                for (int value : info) {
+                    pack.putInt(value);
+                }
+            }
+            for (int i = 0; i < offsets.length; i++) {
+                pack.position(offsets[i]);
+                pack.put(this.data.get(i));
+            }
+
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            Files.write(path, pack.array());
+        }
+
+        /**
+         * Round an offset up to the next multiple of 8
+         *
+         * @param offset The offset
+         * @return The aligned offset
+         */
+        private static int align(int offset) {
+            return (offset + 7) & ~7;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package es.dolfi.minesweeper.util;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.TreeSet;
+import javax.imageio.ImageIO;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import es.dolfi.minesweeper.enums.Difficulty;
+
+/**
+ * Builds the asset pack from the resources folder, run as part of the build
+ */
+public class AssetPacker {
+    public static final String SPRITESHEET = "spritesheet.png";
+    public static final int TILE_SIZE = 32;
+    // The HUD icons are drawn at this size
+    private static final int HUD_SIZE = 28;
+
+    /**
+     * Pack the game assets
+     *
+     * @param args The resources folder and the pack file to write
+     * @throws Exception If an asset can't be read or the pack can't be written
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: AssetPacker <resources folder> <output file>");
+            System.exit(1);
+        }
+        File resources = new File(args[0]);
+        AssetPack.Writer pack = new AssetPack.Writer();
+
+        pack.addImage("bomb.png", ImageIO.read(new File(resources, "bomb.png")));
+
+        // The sprite sheet is stored as is, and pre-scaled to the sizes it is commonly drawn at
+        BufferedImage sheet = ImageIO.read(new File(resources, SPRITESHEET));
+        pack.addImage(SPRITESHEET, sheet);
+        TreeSet<Integer> sizes = new TreeSet<>();
+        sizes.add(HUD_SIZE);
+        for (Difficulty difficulty : Difficulty.values()) {
+            sizes.add(difficulty.getCellSize());
+        }
+        sizes.remove(TILE_SIZE);
+        for (int size : sizes) {
+            pack.addImage(SPRITESHEET + "@" + size, scale(sheet, size / (double) TILE_SIZE));
+        }
+
+        File[] sounds = new File(resources, "sound").listFiles((dir, name) -> name.endsWith(".wav"));
+        if (sounds != null) {
+            for (File sound : sounds) {
+                try (AudioInputStream stream = toPCM(AudioSystem.getAudioInputStream(sound))) {
+                    pack.addSound("sound/" + sound.getName(), stream);
+                }
+            }
+        }
+
+        pack.write(Paths.get(args[1]));
+        System.out.println("[PACK] Wrote " + args[1]);
+    }
+
+    /**
+     * Scale an image with nearest neighbor sampling, like the game draws sprites
+     *
+     * @param image The image
+     * @param scale The scale factor
+     * @return The scaled image
+     */
+    private static BufferedImage scale(BufferedImage image, double scale) {
+        int width = (int) Math.round(image.getWidth() * scale), height = (int) Math.round(image.getHeight() * scale);
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = scaled.createGraphics();
+        g2d.drawImage(image, 0, 0, width, height, null);
+        g2d.dispose();
+        return scaled;
+    }
+
+    /**
+     * Convert a sound to signed PCM, if it isn't PCM already
+     *
+     * @param stream The sound
+     * @return The PCM sound
+     */
+    private static AudioInputStream toPCM(AudioInputStream stream) {
+        AudioFormat format = stream.getFormat();
+        if (format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED
+                || format.getEncoding() == AudioFormat.Encoding.PCM_UNSIGNED) {
+            return stream;
+        }
+        return AudioSystem.getAudioInputStream(AudioFormat.Encoding.PCM_SIGNED, stream);
+    }
+}
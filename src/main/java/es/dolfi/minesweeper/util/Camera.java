@@ -0,0 +1,293 @@
+package es.dolfi.minesweeper.util;
+
+import java.awt.Rectangle;
+
+/**
+ * Maps between board and screen coordinates, with zoom and pan
+ * The board is drawn inside a viewport rectangle on the screen
+ */
+public class Camera {
+    public static final double MIN_ZOOM = 0.1;
+    public static final double MAX_ZOOM = 4;
+
+    private final int columns;
+    private final int rows;
+    private final int cellSize;
+    private final Rectangle view = new Rectangle();
+
+    private double zoom = 1;
+    // The board pixel (at zoom 1) shown at the top left of the view
+    private double x = 0;
+    private double y = 0;
+
+    /**
+     * Create a new camera
+     *
+     * @param columns  The number of columns on the board
+     * @param rows     The number of rows on the board
+     * @param cellSize The size of a cell at zoom 1, in pixels
+     */
+    public Camera(int columns, int rows, int cellSize) {
+        this.columns = columns;
+        this.rows = rows;
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Set the area of the screen the board is drawn in
+     *
+     * @param x      The x position of the view
+     * @param y      The y position of the view
+     * @param width  The width of the view
+     * @param height The height of the view
+     */
+    public void setView(int x, int y, int width, int height) {
+        if (this.view.x == x && this.view.y == y && this.view.width == width && this.view.height == height) {
+            return;
+        }
+        this.view.setBounds(x, y, Math.max(0, width), Math.max(0, height));
+        this.clamp();
+    }
+
+    /**
+     * Get the area of the screen the board is drawn in
+     *
+     * @return The view, which must not be modified
+     */
+    public Rectangle getView() {
+        return this.view;
+    }
+
+    /**
+     * Get the zoom level
+     *
+     * @return The zoom level, where 1 is the cell's natural size
+     */
+    public double getZoom() {
+        return this.zoom;
+    }
+
+    /**
+     * Get the zoom level at which the whole board fits the view
+     *
+     * @return The zoom level
+     */
+    public double getFitZoom() {
+        double fit = Math.min(this.view.width / (double) (this.columns * this.cellSize),
+                this.view.height / (double) (this.rows * this.cellSize));
+        return Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, fit));
+    }
+
+    /**
+     * Set the zoom level, keeping the given screen point over the same spot
+     *
+     * @param zoom    The new zoom level
+     * @param anchorX The x position on screen to zoom around
+     * @param anchorY The y position on screen to zoom around
+     */
+    public void setZoom(double zoom, int anchorX, int anchorY) {
+        zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+        double boardX = this.toBoardX(anchorX), boardY = this.toBoardY(anchorY);
+        this.zoom = zoom;
+        this.x = boardX - (anchorX - this.view.x) / zoom;
+        this.y = boardY - (anchorY - this.view.y) / zoom;
+        this.clamp();
+    }
+
+    /**
+     * Move the camera by a distance on screen
+     *
+     * @param dx The horizontal distance, in screen pixels
+     * @param dy The vertical distance, in screen pixels
+     */
+    public void pan(double dx, double dy) {
+        this.x += dx / this.zoom;
+        this.y += dy / this.zoom;
+        this.clamp();
+    }
+
+    /**
+     * Center the camera on a point of the board
+     *
+     * @param column The (fractional) column to center on
+     * @param row    The (fractional) row to center on
+     */
+    public void centerOn(double column, double row) {
+        this.x = column * this.cellSize - this.view.width / this.zoom / 2;
+        this.y = row * this.cellSize - this.view.height / this.zoom / 2;
+        this.clamp();
+    }
+
+    /**
+     * Keep the board within the view, centering it when it is smaller
+     */
+    private void clamp() {
+        double visibleWidth = this.view.width / this.zoom, visibleHeight = this.view.height / this.zoom;
+        double boardWidth = this.columns * this.cellSize, boardHeight = this.rows * this.cellSize;
+
+        if (boardWidth <= visibleWidth) {
+            this.x = (boardWidth - visibleWidth) / 2;
+        } else {
+            this.x = Math.max(0, Math.min(boardWidth - visibleWidth, this.x));
+        }
+        if (boardHeight <= visibleHeight) {
+            this.y = (boardHeight - visibleHeight) / 2;
+        } else {
+            this.y = Math.max(0, Math.min(boardHeight - visibleHeight, this.y));
+        }
+    }
+
+    /**
+     * Convert a screen x position to a board pixel position at zoom 1
+     *
+     * @param screenX The x position on screen
+     * @return The x position on the board
+     */
+    private double toBoardX(int screenX) {
+        return this.x + (screenX - this.view.x) / this.zoom;
+    }
+
+    /**
+     * Convert a screen y position to a board pixel position at zoom 1
+     *
+     * @param screenY The y position on screen
+     * @return The y position on the board
+     */
+    private double toBoardY(int screenY) {
+        return this.y + (screenY - this.view.y) / this.zoom;
+    }
+
+    /**
+     * Get the column under a screen position
+     *
+     * @param screenX The x position on screen
+     * @return The column, or -1 if there is no cell there
+     */
+    public int columnAt(int screenX) {
+        if (screenX < this.view.x || screenX >= this.view.x + this.view.width) {
+            return -1;
+        }
+        double column = Math.floor(this.toBoardX(screenX) / this.cellSize);
+        return column >= 0 && column < this.columns ? (int) column : -1;
+    }
+
+    /**
+     * Get the row under a screen position
+     *
+     * @param screenY The y position on screen
+     * @return The row, or -1 if there is no cell there
+     */
+    public int rowAt(int screenY) {
+        if (screenY < this.view.y || screenY >= this.view.y + this.view.height) {
+            return -1;
+        }
+        double row = Math.floor(this.toBoardY(screenY) / this.cellSize);
+        return row >= 0 && row < this.rows ? (int) row : -1;
+    }
+
+    /**
+     * Get the first column that is at least partly right of a screen position
+     *
+     * @param screenX The x position on screen
+     * @return The column, clamped to the board
+     */
+    public int firstColumn(int screenX) {
+        int column = (int) Math.floor(this.toBoardX(Math.max(screenX, this.view.x)) / this.cellSize);
+        return Math.max(0, Math.min(this.columns - 1, column));
+    }
+
+    /**
+     * Get the last column that is at least partly left of a screen position
+     *
+     * @param screenX The x position on screen (exclusive)
+     * @return The column, clamped to the board
+     */
+    public int lastColumn(int screenX) {
+        int end = Math.min(screenX, this.view.x + this.view.width);
+        int column = (int) Math.ceil(this.toBoardX(end) / this.cellSize) - 1;
+        return Math.max(-1, Math.min(this.columns - 1, column));
+    }
+
+    /**
+     * Get the first row that is at least partly below a screen position
+     *
+     * @param screenY The y position on screen
+     * @return The row, clamped to the board
+     */
+    public int firstRow(int screenY) {
+        int row = (int) Math.floor(this.toBoardY(Math.max(screenY, this.view.y)) / this.cellSize);
+        return Math.max(0, Math.min(this.rows - 1, row));
+    }
+
+    /**
+     * Get the last row that is at least partly above a screen position
+     *
+     * @param screenY The y position on screen (exclusive)
+     * @return The row, clamped to the board
+     */
+    public int lastRow(int screenY) {
+        int end = Math.min(screenY, this.view.y + this.view.height);
+        int row = (int) Math.ceil(this.toBoardY(end) / this.cellSize) - 1;
+        return Math.max(-1, Math.min(this.rows - 1, row));
+    }
+
+    /**
+     * Get the screen x position of a column's left edge
+     * Edges are rounded consistently, so neighboring cells never overlap or gap
+     *
+     * @param column The column, or the column count for the board's right edge
+     * @return The x position on screen
+     */
+    public int columnX(int column) {
+        return (int) Math.floor(this.view.x + (column * this.cellSize - this.x) * this.zoom);
+    }
+
+    /**
+     * Get the screen y position of a row's top edge
+     *
+     * @param row The row, or the row count for the board's bottom edge
+     * @return The y position on screen
+     */
+    public int rowY(int row) {
+        return (int) Math.floor(this.view.y + (row * this.cellSize - this.y) * this.zoom);
+    }
+
+    /**
+     * Get the area of the screen a cell is drawn in
+     *
+     * @param column The cell column
+     * @param row    The cell row
+     * @param area   The rectangle to store the area in
+     * @return The area
+     */
+    public Rectangle getCellArea(int column, int row, Rectangle area) {
+        int x = this.columnX(column), y = this.rowY(row);
+        area.setBounds(x, y, this.columnX(column + 1) - x, this.rowY(row + 1) - y);
+        return area;
+    }
+
+    /**
+     * Check if the whole board is visible in the view
+     *
+     * @return Whether the board fits the view
+     */
+    public boolean fitsView() {
+        return this.columns * this.cellSize * this.zoom <= this.view.width
+                && this.rows * this.cellSize * this.zoom <= this.view.height;
+    }
+
+    /**
+     * Get the visible part of the board on screen
+     *
+     * @param area The rectangle to store the area in
+     * @return The area
+     */
+    public Rectangle getBoardArea(Rectangle area) {
+        int left = Math.max(this.view.x, this.columnX(0));
+        int top = Math.max(this.view.y, this.rowY(0));
+        int right = Math.min(this.view.x + this.view.width, this.columnX(this.columns));
+        int bottom = Math.min(this.view.y + this.view.height, this.rowY(this.rows));
+        area.setBounds(left, top, Math.max(0, right - left), Math.max(0, bottom - top));
+        return area;
+    }
+}
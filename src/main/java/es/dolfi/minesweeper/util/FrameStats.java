@@ -0,0 +1,109 @@
+package es.dolfi.minesweeper.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects frame pacing and paint cost metrics for a render loop
+ */
+public class FrameStats {
+    private long frames = 0;
+    private long dropped = 0;
+    private long lastFrameTime = 0;
+    private long totalFrameTime = 0;
+    private long maxFrameTime = 0;
+    private long totalPaintTime = 0;
+    private long maxPaintTime = 0;
+
+    /**
+     * Record a rendered frame
+     *
+     * @param frameTime The time since the previous frame, in nanoseconds
+     * @param paintTime The time spent painting the frame, in nanoseconds
+     */
+    public synchronized void frame(long frameTime, long paintTime) {
+        this.frames++;
+        this.lastFrameTime = frameTime;
+        this.totalFrameTime += frameTime;
+        this.maxFrameTime = Math.max(this.maxFrameTime, frameTime);
+        this.totalPaintTime += paintTime;
+        this.maxPaintTime = Math.max(this.maxPaintTime, paintTime);
+    }
+
+    /**
+     * Record frames that were skipped because the loop fell behind
+     *
+     * @param count The number of frames dropped
+     */
+    public synchronized void drop(long count) {
+        this.dropped += count;
+    }
+
+    /**
+     * Get the number of frames rendered
+     *
+     * @return The number of frames
+     */
+    public synchronized long getFrames() {
+        return this.frames;
+    }
+
+    /**
+     * Get the number of frames dropped
+     *
+     * @return The number of dropped frames
+     */
+    public synchronized long getDropped() {
+        return this.dropped;
+    }
+
+    /**
+     * Get the average time between frames
+     *
+     * @return The average frame time, in milliseconds
+     */
+    public synchronized double getAverageFrameTime() {
+        return this.frames == 0 ? 0 : toMillis(this.totalFrameTime / (double) this.frames);
+    }
+
+    /**
+     * Get the average time spent painting a frame
+     *
+     * @return The average paint time, in milliseconds
+     */
+    public synchronized double getAveragePaintTime() {
+        return this.frames == 0 ? 0 : toMillis(this.totalPaintTime / (double) this.frames);
+    }
+
+    /**
+     * Reset all the metrics
+     */
+    public synchronized void reset() {
+        this.frames = 0;
+        this.dropped = 0;
+        this.lastFrameTime = 0;
+        this.totalFrameTime = 0;
+        this.maxFrameTime = 0;
+        this.totalPaintTime = 0;
+        this.maxPaintTime = 0;
+    }
+
+    /**
+     * Convert nanoseconds to fractional milliseconds
+     *
+     * @param nanos The time, in nanoseconds
+     * @return The time, in milliseconds
+     */
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Frames: %d (%d dropped)%n" +
+                "Frame time: %.2fms last, %.2fms avg, %.2fms max%n" +
+                "Paint time: %.2fms avg, %.2fms max",
+                this.frames, this.dropped,
+                toMillis(this.lastFrameTime), this.getAverageFrameTime(), toMillis(this.maxFrameTime),
+                this.getAveragePaintTime(), toMillis(this.maxPaintTime));
+    }
+}
@@ -0,0 +1,114 @@
+package es.dolfi.minesweeper.util;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.swing.ImageIcon;
+
+/**
+ * Caches resources used while painting, so paint methods don't allocate
+ * Should only be used from the event dispatch thread
+ */
+public class RenderCache {
+    private static final HashMap<String, Font> fonts = new HashMap<>();
+    private static final HashMap<String, Image> images = new HashMap<>();
+    private static final String[] numbers = new String[1000];
+
+    private static final Color gradientStart = new Color(0xCCCCCC);
+    private static final Color gradientEnd = new Color(0x6666FF);
+    // Only the most recently used sizes are kept, resizing a window passes through a new size every frame
+    private static final int MAX_BACKGROUNDS = 4;
+    private static final Map<Dimension, BufferedImage> backgrounds
+            = new LinkedHashMap<Dimension, BufferedImage>(MAX_BACKGROUNDS * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Dimension, BufferedImage> eldest) {
+            return this.size() > MAX_BACKGROUNDS;
+        }
+    };
+    private static BufferedImage lastBackground;
+
+    /**
+     * Get a font, creating it only once
+     *
+     * @param name  The font name
+     * @param style The font style
+     * @param size  The font size
+     * @return The font
+     */
+    public static Font font(String name, int style, int size) {
+        String key = name + "-" + style + "-" + size;
+        Font font = fonts.get(key);
+        if (font == null) {
+            font = new Font(name, style, size);
+            fonts.put(key, font);
+        }
+        return font;
+    }
+
+    /**
+     * Get an image from the resources folder, decoding it only once
+     * Animated images keep animating, as long as they are drawn with an observer
+     *
+     * @param filename The image file name
+     * @return The image
+     */
+    public static Image image(String filename) {
+        Image image = images.get(filename);
+        if (image == null) {
+            image = new ImageIcon(Resources.get(filename)).getImage();
+            images.put(filename, image);
+        }
+        return image;
+    }
+
+    /**
+     * Get the text of a number, only creating the text of small numbers once
+     *
+     * @param number The number
+     * @return The number as text
+     */
+    public static String number(int number) {
+        if (number < 0 || number >= numbers.length) {
+            return Integer.toString(number);
+        }
+
+        String text = numbers[number];
+        if (text == null) {
+            text = Integer.toString(number);
+            numbers[number] = text;
+        }
+        return text;
+    }
+
+    /**
+     * Get the screen background gradient, pre-rendered at the given size
+     * Only the last few sizes stay cached
+     *
+     * @param width  The background width
+     * @param height The background height
+     * @return The background
+     */
+    public static BufferedImage background(int width, int height) {
+        // Screens are usually the same size frame to frame, so check that first
+        BufferedImage background = lastBackground;
+        if (background != null && background.getWidth() == width && background.getHeight() == height) {
+            return background;
+        }
+
+        Dimension size = new Dimension(width, height);
+        background = backgrounds.get(size);
+        if (background == null) {
+            background = new BufferedImage(Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = background.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g2d.setPaint(new GradientPaint(0, 0, gradientStart, width, height, gradientEnd));
+            g2d.fillRect(0, 0, width, height);
+            g2d.dispose();
+            backgrounds.put(size, background);
+        }
+        lastBackground = background;
+        return background;
+    }
+}
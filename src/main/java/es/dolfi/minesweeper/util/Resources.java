@@ -0,0 +1,22 @@
+package es.dolfi.minesweeper.util;
+
+import java.net.URL;
+
+/**
+ * Locates game assets on the classpath, so the game runs from a single jar
+ */
+public class Resources {
+    /**
+     * Get the location of an asset
+     *
+     * @param path The asset path, relative to the resources folder
+     * @return The asset location
+     */
+    public static URL get(String path) {
+        URL url = Resources.class.getResource("/res/" + path);
+        if (url == null) {
+            throw new RuntimeException("Missing resource: " + path);
+        }
+        return url;
+    }
+}
@@ -0,0 +1,122 @@
+package es.dolfi.minesweeper.util;
+
+import java.util.ArrayList;
+import javax.swing.Timer;
+
+/**
+ * Schedules delayed and chained actions on the event dispatch thread
+ * Waiting happens on the Swing timer thread, so the UI never blocks
+ */
+public class Scheduler {
+    private final ArrayList<Task> pending = new ArrayList<>();
+
+    /**
+     * Represents a scheduled action, which can be chained with further actions
+     */
+    public class Task {
+        private final Timer timer;
+        private final Runnable action;
+        private Task next;
+        private boolean done = false;
+        private boolean cancelled = false;
+
+        /**
+         * Create a new task
+         *
+         * @param delay  The delay before running, in milliseconds
+         * @param action The action to run
+         */
+        private Task(int delay, Runnable action) {
+            this.action = action;
+            this.timer = new Timer(Math.max(0, delay), e -> this.run());
+            this.timer.setRepeats(false);
+        }
+
+        /**
+         * Start waiting for the task
+         */
+        private void start() {
+            if (this.cancelled) {
+                return;
+            }
+            pending.add(this);
+            this.timer.start();
+        }
+
+        /**
+         * Run the task, then start the next task in the chain
+         */
+        private void run() {
+            pending.remove(this);
+            if (this.cancelled) {
+                return;
+            }
+
+            this.done = true;
+            this.action.run();
+            if (this.next != null) {
+                this.next.start();
+            }
+        }
+
+        /**
+         * Chain another action to run after this one
+         *
+         * @param delay  The delay after this task runs, in milliseconds
+         * @param action The action to run
+         * @return The chained task
+         */
+        public Task then(int delay, Runnable action) {
+            this.next = new Task(delay, action);
+            if (this.done) {
+                this.next.start();
+            } else if (this.cancelled) {
+                this.next.cancel();
+            }
+            return this.next;
+        }
+
+        /**
+         * Check if the task is still waiting to run
+         *
+         * @return Whether the task is pending
+         */
+        public boolean isPending() {
+            return !this.done && !this.cancelled;
+        }
+
+        /**
+         * Cancel the task and everything chained after it
+         */
+        public void cancel() {
+            this.cancelled = true;
+            this.timer.stop();
+            pending.remove(this);
+            if (this.next != null) {
+                this.next.cancel();
+            }
+        }
+    }
+
+    /**
+     * Run an action after a delay
+     *
+     * @param delay  The delay, in milliseconds
+     * @param action The action to run
+     * @return The scheduled task
+     */
+    public Task after(int delay, Runnable action) {
+        Task task = new Task(delay, action);
+        task.start();
+        return task;
+    }
+
+    /**
+     * Cancel all pending tasks
+     */
+    public void cancelAll() {
+        for (Task task : new ArrayList<>(this.pending)) {
+            task.cancel();
+        }
+    }
+}
@@ -1,20 +1,23 @@
 package es.dolfi.minesweeper.util;
 
 import java.util.HashMap;
-import java.io.File;
 import javax.sound.sampled.*;
 
+import es.dolfi.minesweeper.metrics.Probe;
+
 /**
  * Provides an interface for loading and playing sounds
  */
 public class SoundManager {
     private final HashMap<String, Sound> currentSounds = new HashMap<>();
+    private final HashMap<String, Stream> currentStreams = new HashMap<>();
     private boolean muted = false;
 
     /**
      * Represents a sound
      */
     public class Sound implements LineListener {
+        private final String name;
         private AudioInputStream stream;
         private Clip clip;
         private boolean playing = false;
@@ -22,11 +25,12 @@ public class SoundManager {
         /**
          * Create a new sound
          *
-         * @param file The sound file
+         * @param filename The sound file name
          */
-        public Sound(File file) {
+        public Sound(String filename) {
+            this.name = filename;
             try {
-                this.stream = AudioSystem.getAudioInputStream(file);
+                this.stream = open(filename);
                 this.clip = AudioSystem.getClip();
                 this.clip.open(stream);
                 this.clip.addLineListener(this);
@@ -69,8 +73,10 @@ public class SoundManager {
          */
         public void play() {
             if (!muted) {
+                long start = Probe.SOUND.start();
                 this.assertStatus();
                 this.clip.start();
+                Probe.SOUND.end(start, 0, this.name);
             }
         }
 
@@ -81,8 +87,10 @@ public class SoundManager {
          */
         public void play(int loopCount) {
             if (!muted) {
+                long start = Probe.SOUND.start();
                 this.assertStatus();
                 this.clip.loop(loopCount);
+                Probe.SOUND.end(start, 0, this.name);
             }
         }
 
@@ -119,6 +127,182 @@ public class SoundManager {
         }
     }
 
+    /**
+     * Represents a long sound that is streamed as it plays instead of being fully
+     * loaded into memory, used for background music
+     */
+    public class Stream {
+        // Roughly a quarter of a second of 44.1kHz 16-bit stereo audio
+        private static final int BUFFER_SIZE = 44100;
+
+        private final String name;
+        private Playback playback;
+
+        /**
+         * Create a new stream
+         *
+         * @param name The sound file name
+         */
+        public Stream(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Check if the stream is playing
+         *
+         * @return Whether the stream is playing
+         */
+        public boolean isPlaying() {
+            return this.playback != null && this.playback.running;
+        }
+
+        /**
+         * Play the stream once
+         */
+        public void play() {
+            this.play(0);
+        }
+
+        /**
+         * Play the stream a specified number of extra times, restarting it if it
+         * is already playing
+         *
+         * @param loopCount The number of times to loop, -1 to loop forever
+         */
+        public void play(int loopCount) {
+            if (muted) {
+                return;
+            }
+
+            long start = Probe.SOUND.start();
+            this.stop();
+            this.playback = new Playback(loopCount);
+            Thread thread = new Thread(this.playback, "SoundStream-" + this.name);
+            thread.setDaemon(true);
+            thread.start();
+            Probe.SOUND.end(start, 0, this.name);
+        }
+
+        /**
+         * Stop the stream, releasing its audio line
+         */
+        public void stop() {
+            if (this.playback != null) {
+                this.playback.cancel();
+                this.playback = null;
+            }
+        }
+
+        /**
+         * Stop the stream and forget about it
+         */
+        public void close() {
+            this.stop();
+            currentStreams.remove(this.name);
+        }
+
+        /**
+         * A single run of the stream on its own thread
+         */
+        private class Playback implements Runnable {
+            private final int loopCount;
+            private volatile boolean running = true;
+            private volatile SourceDataLine line;
+
+            /**
+             * Create a new playback
+             *
+             * @param loopCount The number of times to loop, -1 to loop forever
+             */
+            public Playback(int loopCount) {
+                this.loopCount = loopCount;
+            }
+
+            /**
+             * Stop the playback, unblocking the writer thread
+             */
+            public void cancel() {
+                this.running = false;
+                SourceDataLine line = this.line;
+                if (line != null) {
+                    line.stop();
+                    line.flush();
+                }
+            }
+
+            @Override
+            public void run() {
+                AudioInputStream stream = null;
+                try {
+                    stream = open(name);
+                    AudioFormat format = stream.getFormat();
+                    int frameSize = Math.max(1, format.getFrameSize());
+                    byte[] buffer = new byte[BUFFER_SIZE - BUFFER_SIZE % frameSize];
+
+                    // The line's own buffer is the ring we stream through, so keep it small
+                    SourceDataLine line = AudioSystem.getSourceDataLine(format);
+                    line.open(format, buffer.length * 2);
+                    this.line = line;
+                    if (!this.running) {
+                        line.close();
+                        return;
+                    }
+                    line.start();
+
+                    int loops = 0;
+                    while (this.running) {
+                        int read = stream.read(buffer, 0, buffer.length);
+                        if (read < 0) {
+                            if (this.loopCount >= 0 && loops >= this.loopCount) {
+                                break;
+                            }
+
+                            // Reopen without draining the line, so the loop is gapless
+                            loops++;
+                            stream.close();
+                            stream = open(name);
+                            continue;
+                        }
+                        line.write(buffer, 0, read - read % frameSize);
+                    }
+
+                    if (this.running) {
+                        line.drain();
+                    }
+                    line.close();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    this.running = false;
+                    if (stream != null) {
+                        try {
+                            stream.close();
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Open a sound's audio, preferring the pre-decoded copy in the asset pack
+     *
+     * @param filename The sound file name
+     * @return The audio
+     * @throws Exception If the sound can't be opened
+     */
+    private static AudioInputStream open(String filename) throws Exception {
+        String path = "sound/" + filename + ".wav";
+        AssetPack pack = AssetPack.get();
+        AudioInputStream stream = pack == null ? null : pack.getSound(path);
+        if (stream == null) {
+            stream = AudioSystem.getAudioInputStream(Resources.get(path));
+        }
+        return stream;
+    }
+
     /**
      * Get a sound from the sound manager
      *
@@ -128,12 +312,28 @@ public class SoundManager {
     public Sound get(String filename) {
         Sound sound = this.currentSounds.get(filename);
         if (sound == null) {
-            sound = new Sound(new File("res/sound/" + filename + ".wav"));
+            sound = new Sound(filename);
             this.currentSounds.put(filename, sound);
         }
         return sound;
     }
 
+    /**
+     * Get a streamed sound from the sound manager
+     * Streams hold no audio data while stopped, and should be closed once unused
+     *
+     * @param filename The sound file name
+     * @return The stream
+     */
+    public Stream stream(String filename) {
+        Stream stream = this.currentStreams.get(filename);
+        if (stream == null) {
+            stream = new Stream(filename);
+            this.currentStreams.put(filename, stream);
+        }
+        return stream;
+    }
+
     /**
      * Close all sound resources
      */
@@ -142,6 +342,10 @@ public class SoundManager {
             sound.close();
         }
         this.currentSounds.clear();
+        for (Stream stream : this.currentStreams.values()) {
+            stream.stop();
+        }
+        this.currentStreams.clear();
     }
 
     /**
@@ -162,6 +366,9 @@ public class SoundManager {
             for (Sound sound : this.currentSounds.values()) {
                 sound.stop();
             }
+            for (Stream stream : this.currentStreams.values()) {
+                stream.stop();
+            }
         }
     }
 }
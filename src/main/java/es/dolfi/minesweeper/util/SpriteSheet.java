@@ -1,7 +1,8 @@
 package es.dolfi.minesweeper.util;
 
-import java.io.File;
 import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
 import java.awt.image.BufferedImage;
 import javax.imageio.ImageIO;
 
@@ -9,34 +10,77 @@ import javax.imageio.ImageIO;
  * Provides an interface for selecting sprites from a sprite sheet
  */
 public class SpriteSheet {
+    private static final HashMap<String, SpriteSheet> sheets = new HashMap<>();
+    // Pre-scaled sheets are only looked up for sizes up to this
+    private static final int MAX_SCALED_SIZE = 64;
     private final BufferedImage sheet;
     private final int tileSize;
+    private final BufferedImage[][] sprites;
+
+    // Pre-scaled copies of the sheet from the asset pack, indexed by tile size
+    private final AssetPack pack;
+    private final String name;
+    private final BufferedImage[][][] scaled = new BufferedImage[MAX_SCALED_SIZE + 1][][];
+    private final BufferedImage[] scaledSheets = new BufferedImage[MAX_SCALED_SIZE + 1];
+    private final boolean[] scaledChecked = new boolean[MAX_SCALED_SIZE + 1];
 
     /**
      * Create a new sprite sheet
      *
-     * @param file The sprite sheet file
+     * @param url  The sprite sheet location
      * @param size The size of each sprite
      */
-    public SpriteSheet(File file, int size) {
+    public SpriteSheet(URL url, int size) {
         this.tileSize = size;
         try {
-            this.sheet = ImageIO.read(file);
+            this.sheet = ImageIO.read(url);
         } catch (IOException e) {
             e.printStackTrace();
             throw new RuntimeException("Failed to load spritesheet");
         }
+        this.sprites = new BufferedImage[this.sheet.getWidth() / size][this.sheet.getHeight() / size];
+        this.pack = null;
+        this.name = null;
     }
 
     /**
-     * Load a sprite sheet from a file
+     * Create a new sprite sheet from an asset pack
+     *
+     * @param pack  The asset pack
+     * @param name  The sprite sheet name in the pack
+     * @param sheet The sprite sheet image
+     * @param size  The size of each sprite
+     */
+    public SpriteSheet(AssetPack pack, String name, BufferedImage sheet, int size) {
+        this.tileSize = size;
+        this.sheet = sheet;
+        this.sprites = new BufferedImage[sheet.getWidth() / size][sheet.getHeight() / size];
+        this.pack = pack;
+        this.name = name;
+    }
+
+    /**
+     * Load a sprite sheet from a file, only decoding each sheet once
      *
      * @param filename The sprite sheet file name
      * @param size     The size of each sprite
      * @return The sprite sheet
      */
-    public static SpriteSheet load(String filename, int size) {
-        return new SpriteSheet(new File("res/" + filename), size);
+    public static synchronized SpriteSheet load(String filename, int size) {
+        String key = filename + "@" + size;
+        SpriteSheet sheet = sheets.get(key);
+        if (sheet == null) {
+            // Prefer the pre-decoded copy, if the game was built with an asset pack
+            AssetPack pack = AssetPack.get();
+            BufferedImage image = pack == null ? null : pack.getImage(filename);
+            if (image != null) {
+                sheet = new SpriteSheet(pack, filename, image, size);
+            } else {
+                sheet = new SpriteSheet(Resources.get(filename), size);
+            }
+            sheets.put(key, sheet);
+        }
+        return sheet;
     }
 
     /**
@@ -47,6 +91,49 @@ public class SpriteSheet {
      * @return The sprite
      */
     public BufferedImage getSprite(int xGrid, int yGrid) {
-        return sheet.getSubimage(xGrid * this.tileSize, yGrid * this.tileSize, this.tileSize, this.tileSize);
+        // Sub images share the sheet's pixels, but are still worth creating only once
+        BufferedImage sprite = this.sprites[xGrid][yGrid];
+        if (sprite == null) {
+            sprite = sheet.getSubimage(xGrid * this.tileSize, yGrid * this.tileSize, this.tileSize, this.tileSize);
+            this.sprites[xGrid][yGrid] = sprite;
+        }
+        return sprite;
+    }
+
+    /**
+     * Get a sprite to be drawn at a given size
+     * If the asset pack has the sheet pre-scaled to that size, the sprite needs no scaling when drawn
+     *
+     * @param xGrid The x grid position of the sprite
+     * @param yGrid The y grid position of the sprite
+     * @param size  The size the sprite will be drawn at
+     * @return The sprite, at that size if possible
+     */
+    public BufferedImage getSprite(int xGrid, int yGrid, int size) {
+        if (size == this.tileSize || size <= 0 || size > MAX_SCALED_SIZE || this.pack == null) {
+            return this.getSprite(xGrid, yGrid);
+        }
+
+        BufferedImage[][] sprites = this.scaled[size];
+        if (sprites == null) {
+            if (this.scaledChecked[size]) {
+                return this.getSprite(xGrid, yGrid);
+            }
+            this.scaledChecked[size] = true;
+            BufferedImage sheet = this.pack.getImage(this.name + "@" + size);
+            if (sheet == null) {
+                return this.getSprite(xGrid, yGrid);
+            }
+            this.scaledSheets[size] = sheet;
+            sprites = new BufferedImage[this.sprites.length][this.sprites[0].length];
+            this.scaled[size] = sprites;
+        }
+
+        BufferedImage sprite = sprites[xGrid][yGrid];
+        if (sprite == null) {
+            sprite = this.scaledSheets[size].getSubimage(xGrid * size, yGrid * size, size, size);
+            sprites[xGrid][yGrid] = sprite;
+        }
+        return sprite;
     }
 }
@@ -0,0 +1,69 @@
+package es.dolfi.minesweeper.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long each phase of launching the game takes
+ */
+public class StartupTimer {
+    private static final LinkedHashMap<String, Long> phases = new LinkedHashMap<>();
+    private static long last = 0;
+    private static boolean finished = false;
+
+    /**
+     * Start timing, counting everything before this as JVM and class initialization
+     */
+    public static synchronized void start() {
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        phases.put("jvm and class init", TimeUnit.MILLISECONDS.toNanos(uptime));
+        last = System.nanoTime();
+    }
+
+    /**
+     * Record the end of a startup phase, timed from the end of the previous one
+     *
+     * @param phase The phase name
+     */
+    public static synchronized void mark(String phase) {
+        if (finished || last == 0) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        phases.put(phase, now - last);
+        last = now;
+    }
+
+    /**
+     * Record the first frame being painted, ending startup
+     */
+    public static synchronized void firstFrame() {
+        if (finished || last == 0) {
+            return;
+        }
+
+        mark("first frame");
+        finished = true;
+        System.out.println("[STARTUP] " + report().replace("\n", "\n[STARTUP] "));
+    }
+
+    /**
+     * Get a summary of the startup phases
+     *
+     * @return The summary
+     */
+    public static synchronized String report() {
+        StringBuilder report = new StringBuilder();
+        long total = 0;
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(phase.getValue());
+            total += millis;
+            report.append(phase.getKey()).append(": ").append(millis).append("ms\n");
+        }
+        report.append("time to first frame: ").append(total).append("ms");
+        return report.toString();
+    }
+}
@@ -1,38 +1,130 @@
 package es.dolfi.minesweeper.util;
 
-import java.util.Timer;
-import java.util.TimerTask;
-
-import es.dolfi.minesweeper.enums.Difficulty;
-import es.dolfi.minesweeper.screens.GameBoard;
+import java.awt.Component;
+import java.awt.Rectangle;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.swing.SwingUtilities;
 
 /**
- * A thread for keeping track of the time
+ * A monotonic game clock, displayed in a component's HUD
+ * All clocks share a single ticking thread
  */
 public class TimerComponent {
-    private Timer timer = new Timer();
-    public int time = 0;
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "GameClock");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Component component;
+    private final Supplier<Rectangle> area;
+    private ScheduledFuture<?> tick;
+
+    // Elapsed time is accumulated across pauses, in nanoseconds
+    private long elapsed = 0;
+    private long resumedAt = 0;
+    private boolean running = false;
+    private boolean cancelled = false;
+    private volatile int seconds = 0;
+
+    /**
+     * Create and start a new timer
+     *
+     * @param component The component displaying the timer
+     * @param area      The area of the component the timer is drawn in
+     */
+    public TimerComponent(Component component, Supplier<Rectangle> area) {
+        this.component = component;
+        this.area = area;
+        this.resume();
+    }
+
+    /**
+     * Get the elapsed time
+     *
+     * @return The elapsed time, in milliseconds
+     */
+    public synchronized long getElapsedMillis() {
+        long elapsed = this.elapsed;
+        if (this.running) {
+            elapsed += System.nanoTime() - this.resumedAt;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(elapsed);
+    }
+
+    /**
+     * Get the elapsed time as displayed, safe to call from any thread
+     *
+     * @return The elapsed time, in whole seconds
+     */
+    public int getSeconds() {
+        return this.seconds;
+    }
 
     /**
-     * Create a new timer
+     * Check if the timer is running
      *
-     * @param board      The game board
-     * @param difficulty The game difficulty
+     * @return Whether the timer is running
      */
-    public TimerComponent(GameBoard board, Difficulty difficulty) {
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                time++;
-                board.repaint();
-            }
-        }, 0, 1000);
+    public synchronized boolean isRunning() {
+        return this.running;
     }
 
     /**
-     * Cancel the timer
+     * Pause the timer
      */
-    public void cancel() {
-        timer.cancel();
+    public synchronized void pause() {
+        if (!this.running) {
+            return;
+        }
+
+        this.elapsed += System.nanoTime() - this.resumedAt;
+        this.running = false;
+        this.tick.cancel(false);
+        this.tick = null;
+    }
+
+    /**
+     * Resume the timer
+     */
+    public synchronized void resume() {
+        if (this.running || this.cancelled) {
+            return;
+        }
+
+        this.resumedAt = System.nanoTime();
+        this.running = true;
+
+        // Line the ticks up with the second boundaries of the elapsed time
+        long untilNextSecond = 1000 - TimeUnit.NANOSECONDS.toMillis(this.elapsed) % 1000;
+        this.tick = scheduler.scheduleAtFixedRate(this::update, untilNextSecond, 1000, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cancel the timer, it can't be resumed afterwards
+     */
+    public synchronized void cancel() {
+        this.pause();
+        this.cancelled = true;
+    }
+
+    /**
+     * Publish the displayed time, only repainting the timer itself
+     */
+    private void update() {
+        int seconds = (int) (this.getElapsedMillis() / 1000);
+        if (seconds == this.seconds) {
+            return;
+        }
+
+        this.seconds = seconds;
+        SwingUtilities.invokeLater(() -> {
+            Rectangle area = this.area.get();
+            this.component.repaint(area.x, area.y, area.width, area.height);
+        });
     }
 }
@@ -0,0 +1,113 @@
+package es.dolfi.minesweeper.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Sends probe events to the flight recorder
+ * Built for Java 11 apart from the rest of the game, and only loaded if the running Java can
+ */
+class FlightRecorderSink implements EventSink {
+    private final EventType[] types = {
+            EventType.getEventType(GenerateEvent.class),
+            EventType.getEventType(FloodEvent.class),
+            EventType.getEventType(ChordEvent.class),
+            EventType.getEventType(ScreenEvent.class),
+            EventType.getEventType(SoundEvent.class),
+            EventType.getEventType(PaintEvent.class),
+            EventType.getEventType(RedrawEvent.class),
+    };
+
+    @Override
+    public boolean isEnabled(int probe) {
+        return this.types[probe].isEnabled();
+    }
+
+    @Override
+    public void commit(int probe, long duration, long value, String detail) {
+        ProbeEvent event;
+        switch (probe) {
+            case 0:
+                event = new GenerateEvent();
+                break;
+            case 1:
+                event = new FloodEvent();
+                break;
+            case 2:
+                event = new ChordEvent();
+                break;
+            case 3:
+                event = new ScreenEvent();
+                break;
+            case 4:
+                event = new SoundEvent();
+                break;
+            case 5:
+                event = new PaintEvent();
+                break;
+            default:
+                event = new RedrawEvent();
+                break;
+        }
+        event.took = duration;
+        event.value = value;
+        event.detail = detail;
+        event.commit();
+    }
+
+    /**
+     * The fields every probe event has
+     * Events are committed once the operation is over, so the time it took is a field of its own
+     */
+    @Category("JavaSweeper")
+    abstract static class ProbeEvent extends Event {
+        @Label("Took")
+        @Timespan(Timespan.NANOSECONDS)
+        long took;
+
+        @Label("Size")
+        long value;
+
+        @Label("Detail")
+        String detail;
+    }
+
+    @Name("es.dolfi.minesweeper.Generate")
+    @Label("Mine Generation")
+    static class GenerateEvent extends ProbeEvent {
+    }
+
+    @Name("es.dolfi.minesweeper.Flood")
+    @Label("Flood Fill")
+    static class FloodEvent extends ProbeEvent {
+    }
+
+    @Name("es.dolfi.minesweeper.Chord")
+    @Label("Chord Reveal")
+    static class ChordEvent extends ProbeEvent {
+    }
+
+    @Name("es.dolfi.minesweeper.Screen")
+    @Label("Screen Switch")
+    static class ScreenEvent extends ProbeEvent {
+    }
+
+    @Name("es.dolfi.minesweeper.Sound")
+    @Label("Sound Playback")
+    static class SoundEvent extends ProbeEvent {
+    }
+
+    @Name("es.dolfi.minesweeper.Paint")
+    @Label("Board Paint")
+    static class PaintEvent extends ProbeEvent {
+    }
+
+    @Name("es.dolfi.minesweeper.Redraw")
+    @Label("Cell Redraw")
+    static class RedrawEvent extends ProbeEvent {
+    }
+}